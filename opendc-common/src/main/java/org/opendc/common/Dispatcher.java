@@ -23,6 +23,7 @@
 package org.opendc.common;
 
 import java.time.InstantSource;
+import org.opendc.common.trace.EventRecorder;
 
 /**
  * A {@link Dispatcher} is used in OpenDC to schedule the execution of future tasks over potentially multiple threads.
@@ -60,4 +61,24 @@ public interface Dispatcher {
      * @return A {@link DispatcherHandle} representing pending completion of the task.
      */
     DispatcherHandle scheduleCancellable(long delayMs, Runnable command);
+
+    /**
+     * Schedule the specified {@link Runnable} to run at the current time, but after the tasks that are already due.
+     * <p>
+     * Dispatchers that run the tasks of a timestamp in batches use this method to let components coalesce their work
+     * into a single invocation per timestamp. By default, the task is scheduled to run as soon as possible.
+     *
+     * @param command The task to execute.
+     */
+    default void scheduleDeferred(Runnable command) {
+        schedule(0, command);
+    }
+
+    /**
+     * Return the {@link EventRecorder} to which the components running on this dispatcher should record their events,
+     * or <code>null</code> if events are not recorded.
+     */
+    default EventRecorder getEventRecorder() {
+        return null;
+    }
 }
@@ -30,4 +30,16 @@ public interface DispatcherHandle {
      * Attempt to cancel execution of the task.
      */
     void cancel();
+
+    /**
+     * Attempt to move the task to run after the specified delay from now, as if it was cancelled and scheduled again.
+     * Hence, the task runs after the other tasks that are already scheduled for the same time.
+     *
+     * @param delayMs The time from now until the execution of the task (in milliseconds).
+     * @return <code>true</code> if the task was rescheduled, <code>false</code> if the task already ran or was
+     *         cancelled.
+     */
+    default boolean reschedule(long delayMs) {
+        throw new UnsupportedOperationException("Dispatcher does not support rescheduling tasks");
+    }
 }
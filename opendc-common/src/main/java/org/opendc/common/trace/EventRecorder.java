@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.common.trace;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A recorder that stores the events of the simulation kernel in a fixed-size ring buffer.
+ * <p>
+ * Every event occupies four <code>long</code> slots: the virtual time, the wall-clock time at which the event started,
+ * a value that depends on the kind of event, and the kind, type and id of the event packed into a single word. Once the
+ * buffer is full, new events overwrite the oldest events, so the memory of the recorder is bounded by its capacity.
+ * <p>
+ * Components only record events when a recorder is attached to their dispatcher (see
+ * {@link org.opendc.common.Dispatcher#getEventRecorder()}), so tracing costs a single <code>null</code> check when it
+ * is disabled. Events may be recorded from multiple threads concurrently, but the buffer should only be written out
+ * once the simulation has finished.
+ *
+ * @see EventTrace
+ */
+public final class EventRecorder {
+    /**
+     * The execution of a dispatcher task. The value of the event is the wall-clock duration of the task.
+     */
+    public static final int KIND_TASK = 0;
+
+    /**
+     * The update of a flow node. The value of the event is the wall-clock duration of the update.
+     */
+    public static final int KIND_UPDATE = 1;
+
+    /**
+     * The scheduling of a timer. The value of the event is the deadline of the timer.
+     */
+    public static final int KIND_TIMER_SCHEDULE = 2;
+
+    /**
+     * The cancellation of a timer. The value of the event is unused.
+     */
+    public static final int KIND_TIMER_CANCEL = 3;
+
+    static final int SLOTS_PER_EVENT = 4;
+    static final int MAGIC = 0x4f444354; // "ODCT"
+    static final int VERSION = 1;
+
+    private final long[] buffer;
+    private final int mask;
+    private final long origin = System.nanoTime();
+
+    /**
+     * The number of events that have been recorded, including the events that have been overwritten.
+     */
+    private final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * The identifiers that have been handed out to the sources of events.
+     */
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * The names of the event types, indexed by their type identifier.
+     */
+    private final List<String> typeNames = new ArrayList<>();
+
+    private final ClassValue<Integer> types = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return registerType(type.getName());
+        }
+    };
+
+    /**
+     * Construct an {@link EventRecorder} that retains the specified number of most recent events.
+     *
+     * @param capacity The number of events to retain, which is rounded up to the next power of two.
+     */
+    public EventRecorder(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 26)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^26 events");
+        }
+
+        final int events = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+
+        this.buffer = new long[events * SLOTS_PER_EVENT];
+        this.mask = events - 1;
+    }
+
+    /**
+     * Return the number of events that the recorder retains.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Return the number of events that have been recorded, including the events that have been overwritten.
+     */
+    public long getRecordedEvents() {
+        return cursor.get();
+    }
+
+    /**
+     * Return the wall-clock time to pass as start time of an event, relative to the creation of the recorder.
+     */
+    public long nanoTime() {
+        return System.nanoTime() - origin;
+    }
+
+    /**
+     * Hand out a new identifier for a source of events, such as a flow node.
+     */
+    public int nextId() {
+        return nextId.getAndIncrement();
+    }
+
+    /**
+     * Register an event type with the specified name.
+     *
+     * @return The identifier of the event type.
+     */
+    public synchronized int registerType(String name) {
+        if (typeNames.size() >= (1 << 24)) {
+            throw new IllegalStateException("Too many event types");
+        }
+
+        typeNames.add(name);
+        return typeNames.size() - 1;
+    }
+
+    /**
+     * Return the identifier of the event type for the specified class, registering the class on its first use.
+     */
+    public int typeOf(Class<?> type) {
+        return types.get(type);
+    }
+
+    /**
+     * Record an event.
+     *
+     * @param kind The kind of event (one of the <code>KIND_</code> constants).
+     * @param type The identifier of the event type.
+     * @param id The identifier of the source of the event.
+     * @param time The virtual time of the event (in milliseconds since epoch).
+     * @param startNanos The wall-clock time at which the event started, as obtained by {@link #nanoTime()}.
+     * @param value The value of the event, which depends on the kind of event.
+     */
+    public void record(int kind, int type, int id, long time, long startNanos, long value) {
+        final long[] buffer = this.buffer;
+        final int offset = (int) (cursor.getAndIncrement() & mask) * SLOTS_PER_EVENT;
+
+        buffer[offset] = time;
+        buffer[offset + 1] = startNanos;
+        buffer[offset + 2] = value;
+        buffer[offset + 3] = ((long) type << 40) | ((long) (kind & 0xff) << 32) | (id & 0xffffffffL);
+    }
+
+    /**
+     * Write the retained events to the specified stream in the binary format read by {@link EventTrace#read}.
+     * <p>
+     * The events are written from oldest to newest. This method should not be called while events are recorded.
+     */
+    public synchronized void writeTo(OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(out);
+        final long recorded = cursor.get();
+        final int count = (int) Math.min(recorded, mask + 1);
+
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(recorded);
+
+        data.writeInt(typeNames.size());
+        for (String name : typeNames) {
+            data.writeUTF(name);
+        }
+
+        data.writeInt(count);
+        for (long i = recorded - count; i < recorded; i++) {
+            final int offset = (int) (i & mask) * SLOTS_PER_EVENT;
+            for (int j = 0; j < SLOTS_PER_EVENT; j++) {
+                data.writeLong(buffer[offset + j]);
+            }
+        }
+
+        data.flush();
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.common.trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The decoded events of an {@link EventRecorder}, which can be summarized as histograms per event type or converted
+ * into the Chrome trace event format for viewing in <code>chrome://tracing</code> or Perfetto.
+ * <p>
+ * Run this class with the path of a recorded trace to print the histograms, and optionally the path of a JSON file to
+ * write the Chrome trace to.
+ */
+public final class EventTrace {
+    private final long recordedEvents;
+    private final List<String> typeNames;
+    private final long[] events;
+
+    private EventTrace(long recordedEvents, List<String> typeNames, long[] events) {
+        this.recordedEvents = recordedEvents;
+        this.typeNames = typeNames;
+        this.events = events;
+    }
+
+    /**
+     * Read a trace in the binary format written by {@link EventRecorder#writeTo}.
+     */
+    public static EventTrace read(InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != EventRecorder.MAGIC) {
+            throw new IOException("Not an OpenDC event trace");
+        }
+
+        final int version = data.readInt();
+        if (version != EventRecorder.VERSION) {
+            throw new IOException("Unsupported event trace version " + version);
+        }
+
+        final long recordedEvents = data.readLong();
+
+        final int typeCount = data.readInt();
+        final List<String> typeNames = new ArrayList<>(typeCount);
+        for (int i = 0; i < typeCount; i++) {
+            typeNames.add(data.readUTF());
+        }
+
+        final int count = data.readInt();
+        final long[] events = new long[count * EventRecorder.SLOTS_PER_EVENT];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = data.readLong();
+        }
+
+        return new EventTrace(recordedEvents, Collections.unmodifiableList(typeNames), events);
+    }
+
+    /**
+     * Return the number of events that were recorded, including the events that were overwritten in the ring buffer.
+     */
+    public long getRecordedEvents() {
+        return recordedEvents;
+    }
+
+    /**
+     * Return the number of events in the trace.
+     */
+    public int size() {
+        return events.length / EventRecorder.SLOTS_PER_EVENT;
+    }
+
+    /**
+     * Return the names of the event types, indexed by their type identifier.
+     */
+    public List<String> getTypeNames() {
+        return typeNames;
+    }
+
+    public long getTime(int index) {
+        return events[index * EventRecorder.SLOTS_PER_EVENT];
+    }
+
+    public long getStartNanos(int index) {
+        return events[index * EventRecorder.SLOTS_PER_EVENT + 1];
+    }
+
+    public long getValue(int index) {
+        return events[index * EventRecorder.SLOTS_PER_EVENT + 2];
+    }
+
+    public int getKind(int index) {
+        return (int) (events[index * EventRecorder.SLOTS_PER_EVENT + 3] >>> 32) & 0xff;
+    }
+
+    public int getType(int index) {
+        return (int) (events[index * EventRecorder.SLOTS_PER_EVENT + 3] >>> 40);
+    }
+
+    public int getId(int index) {
+        return (int) events[index * EventRecorder.SLOTS_PER_EVENT + 3];
+    }
+
+    /**
+     * Compute a histogram of the events per combination of event type and kind, ordered by the total wall-clock time
+     * spent in the events.
+     */
+    public List<Histogram> histograms() {
+        final int kinds = EventRecorder.KIND_TIMER_CANCEL + 1;
+        final Histogram[] histograms = new Histogram[typeNames.size() * kinds];
+
+        for (int i = 0; i < size(); i++) {
+            final int kind = getKind(i);
+            final int slot = getType(i) * kinds + kind;
+
+            Histogram histogram = histograms[slot];
+            if (histogram == null) {
+                histogram = new Histogram(typeNames.get(getType(i)), kind);
+                histograms[slot] = histogram;
+            }
+
+            histogram.add(hasDuration(kind) ? getValue(i) : 0);
+        }
+
+        final List<Histogram> result = new ArrayList<>();
+        for (Histogram histogram : histograms) {
+            if (histogram != null) {
+                result.add(histogram);
+            }
+        }
+
+        result.sort(Comparator.comparingLong(Histogram::getTotalNanos)
+                .reversed()
+                .thenComparing(Comparator.comparingLong(Histogram::getCount).reversed()));
+        return result;
+    }
+
+    /**
+     * Write the events in the Chrome trace event format.
+     * <p>
+     * Dispatcher tasks and flow node updates become complete events on separate tracks, while timer operations become
+     * instant events. The virtual time and the id of the source are stored in the arguments of each event.
+     */
+    public void writeChromeTrace(Writer out) throws IOException {
+        final BufferedWriter writer = new BufferedWriter(out);
+        writer.write("{\"displayTimeUnit\":\"ns\",\"traceEvents\":[");
+
+        for (int i = 0; i < size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+
+            final int kind = getKind(i);
+            writer.write("\n{\"name\":");
+            writeString(writer, typeNames.get(getType(i)));
+            writer.write(",\"cat\":\"");
+            writer.write(kindName(kind));
+            writer.write("\",\"pid\":0,\"tid\":");
+            writer.write(kind == EventRecorder.KIND_TASK ? '0' : '1');
+            writer.write(",\"ts\":");
+            writeMicros(writer, getStartNanos(i));
+
+            if (hasDuration(kind)) {
+                writer.write(",\"ph\":\"X\",\"dur\":");
+                writeMicros(writer, getValue(i));
+                writer.write(",\"args\":{");
+            } else {
+                writer.write(",\"ph\":\"i\",\"s\":\"t\",\"args\":{");
+                if (kind == EventRecorder.KIND_TIMER_SCHEDULE) {
+                    writer.write("\"deadline\":");
+                    writer.write(Long.toString(getValue(i)));
+                    writer.write(',');
+                }
+            }
+
+            writer.write("\"time\":");
+            writer.write(Long.toString(getTime(i)));
+            writer.write(",\"id\":");
+            writer.write(Integer.toString(getId(i)));
+            writer.write("}}");
+        }
+
+        writer.write("\n]}\n");
+        writer.flush();
+    }
+
+    /**
+     * Return the name of the specified kind of event.
+     */
+    public static String kindName(int kind) {
+        return switch (kind) {
+            case EventRecorder.KIND_TASK -> "task";
+            case EventRecorder.KIND_UPDATE -> "update";
+            case EventRecorder.KIND_TIMER_SCHEDULE -> "timer-schedule";
+            case EventRecorder.KIND_TIMER_CANCEL -> "timer-cancel";
+            default -> "unknown";
+        };
+    }
+
+    private static boolean hasDuration(int kind) {
+        return kind == EventRecorder.KIND_TASK || kind == EventRecorder.KIND_UPDATE;
+    }
+
+    private static void writeMicros(Writer writer, long nanos) throws IOException {
+        writer.write(Long.toString(nanos / 1000));
+        writer.write('.');
+
+        final String fraction = Long.toString(Math.abs(nanos % 1000));
+        for (int i = fraction.length(); i < 3; i++) {
+            writer.write('0');
+        }
+        writer.write(fraction);
+    }
+
+    private static void writeString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * A histogram of the wall-clock durations of the events of a single type and kind, using power-of-two buckets.
+     */
+    public static final class Histogram {
+        private final String type;
+        private final int kind;
+        private final long[] buckets = new long[64];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        Histogram(String type, int kind) {
+            this.type = type;
+            this.kind = kind;
+        }
+
+        void add(long nanos) {
+            final long value = Math.max(nanos, 0);
+            buckets[64 - Long.numberOfLeadingZeros(value) - (value == 0 ? 0 : 1)]++;
+            count++;
+            totalNanos += value;
+            maxNanos = Math.max(maxNanos, value);
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public int getKind() {
+            return kind;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Return the number of events per bucket, where bucket <code>i > 0</code> holds the events that took between
+         * <code>2^i</code> (inclusive) and <code>2^(i + 1)</code> (exclusive) nanoseconds, and bucket 0 also holds
+         * the events without duration.
+         */
+        public long[] getBuckets() {
+            return buckets.clone();
+        }
+
+        /**
+         * Estimate the specified quantile of the durations as the upper bound of the bucket that contains it.
+         */
+        public long quantileNanos(double quantile) {
+            final long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%-60s %-14s %10d %14d %10d %10d %10d",
+                    type, kindName(kind), count, totalNanos, quantileNanos(0.5), quantileNanos(0.99), maxNanos);
+        }
+    }
+
+    /**
+     * Print the histograms of a recorded trace and optionally convert the trace into the Chrome trace event format.
+     *
+     * @param args The path of the recorded trace, optionally followed by the path of the Chrome trace to write.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: EventTrace <trace> [<chrome-trace.json>]");
+            System.exit(1);
+        }
+
+        final EventTrace trace;
+        try (InputStream in = Files.newInputStream(Path.of(args[0]))) {
+            trace = read(in);
+        }
+
+        System.out.printf("%d of %d recorded events retained%n", trace.size(), trace.getRecordedEvents());
+        System.out.printf(
+                "%-60s %-14s %10s %14s %10s %10s %10s%n", "type", "kind", "count", "total (ns)", "p50", "p99", "max");
+        for (Histogram histogram : trace.histograms()) {
+            System.out.println(histogram);
+        }
+
+        if (args.length == 2) {
+            try (Writer out = Files.newBufferedWriter(Path.of(args[1]), StandardCharsets.UTF_8)) {
+                trace.writeChromeTrace(out);
+            }
+        }
+    }
+}
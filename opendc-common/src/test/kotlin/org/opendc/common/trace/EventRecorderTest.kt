@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.common.trace
+
+import org.junit.jupiter.api.Assertions.assertAll
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.StringWriter
+
+/**
+ * Test suite for the [EventRecorder] and [EventTrace] classes.
+ */
+class EventRecorderTest {
+    @Test
+    fun testCapacity() {
+        assertAll(
+            { assertEquals(1, EventRecorder(1).capacity) },
+            { assertEquals(8, EventRecorder(8).capacity) },
+            { assertEquals(16, EventRecorder(9).capacity) },
+            { assertThrows<IllegalArgumentException> { EventRecorder(0) } },
+        )
+    }
+
+    /**
+     * Test that the ring buffer retains the most recent events in order.
+     */
+    @Test
+    fun testRoundTrip() {
+        val recorder = EventRecorder(4)
+        val task = recorder.typeOf(Runnable::class.java)
+        val node = recorder.registerType("node")
+
+        for (i in 0 until 6) {
+            recorder.record(EventRecorder.KIND_TASK, task, i, i * 10L, i * 100L, 50)
+        }
+        recorder.record(EventRecorder.KIND_TIMER_SCHEDULE, node, 7, 60, 600, 1000)
+        recorder.record(EventRecorder.KIND_UPDATE, node, 7, 60, 700, 3)
+
+        val trace = decode(recorder)
+
+        assertAll(
+            { assertEquals(8, trace.recordedEvents) },
+            { assertEquals(4, trace.size()) },
+            { assertEquals(listOf("java.lang.Runnable", "node"), trace.typeNames) },
+            { assertEquals(listOf(4, 5, 7, 7), (0 until trace.size()).map { trace.getId(it) }) },
+            { assertEquals(listOf(40L, 50L, 60L, 60L), (0 until trace.size()).map { trace.getTime(it) }) },
+            { assertEquals(EventRecorder.KIND_TIMER_SCHEDULE, trace.getKind(2)) },
+            { assertEquals(node, trace.getType(3)) },
+            { assertEquals(1000L, trace.getValue(2)) },
+        )
+    }
+
+    @Test
+    fun testHistograms() {
+        val recorder = EventRecorder(16)
+        val node = recorder.registerType("node")
+
+        recorder.record(EventRecorder.KIND_UPDATE, node, 0, 0, 0, 1)
+        recorder.record(EventRecorder.KIND_UPDATE, node, 0, 0, 0, 5)
+        recorder.record(EventRecorder.KIND_UPDATE, node, 1, 0, 0, 1000)
+        recorder.record(EventRecorder.KIND_TIMER_CANCEL, node, 1, 0, 0, Long.MAX_VALUE)
+
+        val trace = decode(recorder)
+        val histograms = trace.histograms()
+        val updates = histograms[0]
+
+        assertAll(
+            { assertEquals(2, histograms.size) },
+            { assertEquals(EventRecorder.KIND_UPDATE, updates.kind) },
+            { assertEquals(3, updates.count) },
+            { assertEquals(1006, updates.totalNanos) },
+            { assertEquals(1000, updates.maxNanos) },
+            { assertEquals(7, updates.quantileNanos(0.5)) },
+            { assertEquals(1023, updates.quantileNanos(0.99)) },
+            { assertEquals(1, histograms[1].count) },
+        )
+    }
+
+    @Test
+    fun testChromeTrace() {
+        val recorder = EventRecorder(16)
+        val node = recorder.registerType("node\"1")
+
+        recorder.record(EventRecorder.KIND_UPDATE, node, 3, 10, 1500, 2500)
+        recorder.record(EventRecorder.KIND_TIMER_SCHEDULE, node, 3, 10, 4000, 20)
+
+        val trace = decode(recorder)
+        val json = StringWriter().also { trace.writeChromeTrace(it) }.toString()
+
+        assertAll(
+            { assertTrue(json.contains("\"name\":\"node\\\"1\",\"cat\":\"update\",\"pid\":0,\"tid\":1"), json) },
+            { assertTrue(json.contains("\"ts\":1.500,\"ph\":\"X\",\"dur\":2.500"), json) },
+            { assertTrue(json.contains("\"ph\":\"i\",\"s\":\"t\",\"args\":{\"deadline\":20,\"time\":10,\"id\":3}}"), json) },
+        )
+    }
+
+    private fun decode(recorder: EventRecorder): EventTrace {
+        val out = ByteArrayOutputStream()
+        recorder.writeTo(out)
+        return EventTrace.read(ByteArrayInputStream(out.toByteArray()))
+    }
+}
@@ -31,6 +31,7 @@ dependencies {
     api(projects.opendcCompute.opendcComputeApi)
     implementation(projects.opendcCommon)
     implementation(project(mapOf("path" to ":opendc-trace:opendc-trace-api")))
+    implementation(projects.opendcTrace.opendcTraceParquet)
     implementation(project(mapOf("path" to ":opendc-simulator:opendc-simulator-compute")))
 
     implementation(libs.kotlin.logging)
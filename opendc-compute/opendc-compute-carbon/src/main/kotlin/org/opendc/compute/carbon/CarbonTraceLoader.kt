@@ -22,112 +22,92 @@
 
 package org.opendc.compute.carbon
 
-import org.opendc.simulator.compute.power.CarbonFragment
+import org.opendc.simulator.compute.power.CarbonTimeline
 import org.opendc.trace.Trace
 import org.opendc.trace.conv.CARBON_INTENSITY_TIMESTAMP
 import org.opendc.trace.conv.CARBON_INTENSITY_VALUE
 import org.opendc.trace.conv.TABLE_CARBON_INTENSITIES
 import java.io.File
 import java.lang.ref.SoftReference
-import java.time.Instant
 import java.util.concurrent.ConcurrentHashMap
 
 /**
- * A helper class for loading compute workload traces into memory.
+ * A helper class for loading carbon traces into memory.
  *
- * @param baseDir The directory containing the traces.
+ * A [CarbonTimeline] is immutable, so the loader caches the timeline of every file it reads and returns the same
+ * instance to all power sources, scenarios and seeds that use the file. The cache lives as long as the loader, so a
+ * loader should be scoped to a single experiment.
  */
 public class CarbonTraceLoader {
     /**
-     * The cache of workloads.
+     * The cache of carbon timelines, keyed by the canonical path and modification time of the file.
      */
-    private val cache = ConcurrentHashMap<String, SoftReference<List<CarbonFragment>>>()
-
-    private val builder = CarbonFragmentNewBuilder()
+    private val cache = ConcurrentHashMap<String, SoftReference<CarbonTimeline>>()
 
     /**
-     * Read the metadata into a workload.
+     * Read the carbon intensities of the trace into a [CarbonTimeline].
      */
-    private fun parseCarbon(trace: Trace): List<CarbonFragment> {
+    private fun parseCarbon(trace: Trace): CarbonTimeline {
         val reader = checkNotNull(trace.getTable(TABLE_CARBON_INTENSITIES)).newReader()
 
         val startTimeCol = reader.resolve(CARBON_INTENSITY_TIMESTAMP)
         val carbonIntensityCol = reader.resolve(CARBON_INTENSITY_VALUE)
 
+        var startTimes = LongArray(1024)
+        var carbonIntensities = DoubleArray(1024)
+        var size = 0
+        var sorted = true
+
         try {
             while (reader.nextRow()) {
-                val startTime = reader.getInstant(startTimeCol)!!
+                val startTime = reader.getInstant(startTimeCol)!!.toEpochMilli()
                 val carbonIntensity = reader.getDouble(carbonIntensityCol)
 
-                builder.add(startTime, carbonIntensity)
-            }
+                if (size == startTimes.size) {
+                    startTimes = startTimes.copyOf(size * 2)
+                    carbonIntensities = carbonIntensities.copyOf(size * 2)
+                }
 
-            // Make sure the virtual machines are ordered by start time
-            builder.fixReportTimes()
-
-            return builder.fragments
-        } catch (e: Exception) {
-            e.printStackTrace()
-            throw e
+                sorted = sorted && (size == 0 || startTime >= startTimes[size - 1])
+                startTimes[size] = startTime
+                carbonIntensities[size] = carbonIntensity
+                size++
+            }
         } finally {
             reader.close()
         }
+
+        check(size > 0) { "The carbon trace does not contain any carbon intensities" }
+
+        if (sorted) {
+            return CarbonTimeline(startTimes.copyOf(size), carbonIntensities.copyOf(size))
+        }
+
+        // Make sure the carbon intensities are ordered by start time
+        val order = (0 until size).sortedBy { startTimes[it] }
+        return CarbonTimeline(
+            LongArray(size) { startTimes[order[it]] },
+            DoubleArray(size) { carbonIntensities[order[it]] },
+        )
     }
 
     /**
-     * Load the trace with the specified [name] and [format].
+     * Load the carbon trace at the specified [pathToFile], or return the cached timeline if it has been loaded before.
      */
-    public fun get(pathToFile: File): List<CarbonFragment> {
-        val trace = Trace.open(pathToFile, "carbon")
+    public fun get(pathToFile: File): CarbonTimeline {
+        val key = "${pathToFile.canonicalPath}@${pathToFile.lastModified()}"
+
+        cache[key]?.get()?.let { return it }
 
-        return parseCarbon(trace)
+        val timeline = parseCarbon(Trace.open(pathToFile, "carbon"))
+        cache[key] = SoftReference(timeline)
+        return timeline
     }
 
     /**
-     * Clear the workload cache.
+     * Clear the cache of carbon timelines.
      */
     public fun reset() {
         cache.clear()
     }
-
-    /**
-     * A builder for a VM trace.
-     */
-    private class CarbonFragmentNewBuilder {
-        /**
-         * The total load of the trace.
-         */
-        public val fragments: MutableList<CarbonFragment> = mutableListOf()
-
-        /**
-         * Add a fragment to the trace.
-         *
-         * @param startTime Timestamp at which the fragment starts (in epoch millis).
-         * @param carbonIntensity The carbon intensity during this fragment
-         */
-        fun add(
-            startTime: Instant,
-            carbonIntensity: Double,
-        ) {
-            fragments.add(
-                CarbonFragment(
-                    startTime.toEpochMilli(),
-                    Long.MAX_VALUE,
-                    carbonIntensity,
-                ),
-            )
-        }
-
-        fun fixReportTimes() {
-            fragments.sortBy { it.startTime }
-
-            // For each report, set the end time to the start time of the next report
-            for (i in 0..fragments.size - 2) {
-                fragments[i].endTime = fragments[i + 1].startTime
-            }
-
-            // Set the start time of each report to the minimum value
-            fragments[0].startTime = Long.MIN_VALUE
-        }
-    }
 }
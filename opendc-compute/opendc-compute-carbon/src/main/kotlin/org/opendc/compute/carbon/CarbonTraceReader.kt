@@ -25,27 +25,56 @@
 package org.opendc.compute.carbon
 
 import org.opendc.simulator.compute.power.CarbonFragment
+import org.opendc.simulator.compute.power.CarbonTimeline
 import java.io.File
 import javax.management.InvalidAttributeValueException
 
 /**
- * Construct a workload from a trace.
+ * Load the carbon timeline of a trace.
+ *
+ * @param pathToFile The path to the carbon trace, or `null` if there is none.
+ * @param loader The loader that caches the carbon traces, which the simulations of an experiment may share.
  */
-public fun getCarbonFragments(pathToFile: String?): List<CarbonFragment>? {
+public fun getCarbonTimeline(
+    pathToFile: String?,
+    loader: CarbonTraceLoader = CarbonTraceLoader(),
+): CarbonTimeline? {
     if (pathToFile == null) {
         return null
     }
 
-    return getCarbonFragments(File(pathToFile))
+    return getCarbonTimeline(File(pathToFile), loader)
 }
 
 /**
- * Construct a workload from a trace.
+ * Load the carbon timeline of a trace.
+ *
+ * @param file The carbon trace.
+ * @param loader The loader that caches the carbon traces, which the simulations of an experiment may share.
  */
-public fun getCarbonFragments(file: File): List<CarbonFragment> {
+public fun getCarbonTimeline(
+    file: File,
+    loader: CarbonTraceLoader = CarbonTraceLoader(),
+): CarbonTimeline {
     if (!file.exists()) {
         throw InvalidAttributeValueException("The carbon trace cannot be found")
     }
 
-    return CarbonTraceLoader().get(file)
+    return loader.get(file)
+}
+
+/**
+ * Load the carbon fragments of a trace.
+ */
+@Deprecated("Use getCarbonTimeline instead", ReplaceWith("getCarbonTimeline(pathToFile)?.toFragments()"))
+public fun getCarbonFragments(pathToFile: String?): List<CarbonFragment>? {
+    return getCarbonTimeline(pathToFile)?.toFragments()
+}
+
+/**
+ * Load the carbon fragments of a trace.
+ */
+@Deprecated("Use getCarbonTimeline instead", ReplaceWith("getCarbonTimeline(file).toFragments()"))
+public fun getCarbonFragments(file: File): List<CarbonFragment> {
+    return getCarbonTimeline(file).toFragments()
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.compute.carbon.replay
+
+import org.opendc.simulator.compute.power.battery.ChargeBounds
+
+/**
+ * A battery configuration to evaluate with a [BatteryReplay].
+ *
+ * @param capacity The capacity of the battery (in J).
+ * @param chargeSpeed The power with which the battery is charged (in W).
+ * @param carbonThreshold The carbon intensity below which the battery is charged (in gCO2/kWh).
+ * @param chargeBounds The bounds between which the charge level of the battery is kept.
+ */
+public data class BatteryConfig(
+    val capacity: Double,
+    val chargeSpeed: Double,
+    val carbonThreshold: Double,
+    val chargeBounds: ChargeBounds = ChargeBounds.DEFAULT,
+)
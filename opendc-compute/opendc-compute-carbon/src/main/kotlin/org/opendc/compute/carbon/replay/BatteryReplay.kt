@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.compute.carbon.replay
+
+import org.opendc.simulator.compute.power.CarbonTimeline
+import org.opendc.simulator.compute.power.battery.greenenergy.CarbonPolicy
+import org.opendc.simulator.compute.power.battery.greenenergy.SimpleCarbonPolicy
+import java.util.stream.IntStream
+
+/**
+ * Evaluate battery configurations over the power draw of a simulation, without re-running the simulation.
+ *
+ * The battery follows the same model as a `ShadowBattery`: while the [CarbonPolicy] reports green energy, the battery
+ * is charged from the grid until it is full, and otherwise it supplies the power draw until it is empty. Since the
+ * battery does not affect the power draw, the replay gives the same result as simulating the battery.
+ *
+ * On construction, the boundaries of the power trace and the carbon trace are merged into a single sequence of
+ * segments with a constant power draw and carbon intensity. Each replay is a single pass over these segments.
+ * The policy is evaluated at the start of every segment.
+ *
+ * @param trace The power draw of the cluster.
+ * @param carbonTimeline The carbon intensity of the grid, or `null` if it is unknown.
+ */
+public class BatteryReplay(
+    trace: PowerTrace,
+    carbonTimeline: CarbonTimeline?,
+) {
+    /**
+     * The start of each segment, relative to the start of the trace (in ms).
+     */
+    private val segmentStart: LongArray
+
+    /**
+     * The duration of each segment (in s).
+     */
+    private val segmentDuration: DoubleArray
+
+    /**
+     * The power draw during each segment (in W).
+     */
+    private val segmentPower: DoubleArray
+
+    /**
+     * The carbon intensity during each segment (in gCO2/kWh).
+     */
+    private val segmentIntensity: DoubleArray
+
+    /**
+     * The carbon emission of the trace without a battery (in gCO2).
+     */
+    public val baselineCarbonEmission: Double
+
+    /**
+     * The energy usage of the trace without a battery (in J).
+     */
+    public val baselineEnergyUsage: Double
+
+    init {
+        val times = trace.times
+        val power = trace.powerDraw
+        val startTime = trace.startTime
+
+        val starts = ArrayList<Long>(power.size)
+        val durations = ArrayList<Double>(power.size)
+        val powers = ArrayList<Double>(power.size)
+        val intensities = ArrayList<Double>(power.size)
+
+        var segmentIndex = 0
+        var carbonEmission = 0.0
+        var energyUsage = 0.0
+
+        for (i in power.indices) {
+            var start = times[i]
+            val end = times[i + 1]
+
+            while (start < end) {
+                var segmentEnd = end
+                var intensity = 0.0
+
+                if (carbonTimeline != null) {
+                    segmentIndex = carbonTimeline.indexOf(start, segmentIndex)
+                    intensity = carbonTimeline.getCarbonIntensity(segmentIndex)
+
+                    val carbonEnd = carbonTimeline.getEndTime(segmentIndex)
+                    if (carbonEnd in (start + 1) until end) {
+                        segmentEnd = carbonEnd
+                    }
+                }
+
+                val duration = (segmentEnd - start) * 0.001
+                starts.add(start - startTime)
+                durations.add(duration)
+                powers.add(power[i])
+                intensities.add(intensity)
+
+                energyUsage += power[i] * duration
+                carbonEmission += intensity * (power[i] * duration / 3600000.0)
+
+                start = segmentEnd
+            }
+        }
+
+        segmentStart = starts.toLongArray()
+        segmentDuration = durations.toDoubleArray()
+        segmentPower = powers.toDoubleArray()
+        segmentIntensity = intensities.toDoubleArray()
+
+        baselineCarbonEmission = carbonEmission
+        baselineEnergyUsage = energyUsage
+    }
+
+    /**
+     * The number of segments of the replay.
+     */
+    public val size: Int
+        get() = segmentPower.size
+
+    /**
+     * Replay the specified battery configuration.
+     *
+     * @param config The battery configuration to evaluate.
+     * @param carbonPolicy The policy that determines whether green energy is available.
+     */
+    @JvmOverloads
+    public fun replay(
+        config: BatteryConfig,
+        carbonPolicy: CarbonPolicy = SimpleCarbonPolicy(config.carbonThreshold),
+    ): BatteryReplayResult {
+        val segmentStart = segmentStart
+        val segmentDuration = segmentDuration
+        val segmentPower = segmentPower
+        val segmentIntensity = segmentIntensity
+
+        // The bounds of the battery, which match SimBattery
+        val lowerBound = config.chargeBounds.getLowerLevel(config.capacity)
+        val upperBound = config.chargeBounds.getUpperLevel(config.capacity)
+        val chargeSpeed = config.chargeSpeed
+
+        var chargeLevel = 0.0
+        var energyUsage = 0.0
+        var batteryEnergyUsage = 0.0
+        var chargeReceived = 0.0
+        var carbonEmission = 0.0
+        var chargeIntegral = 0.0
+        var totalDuration = 0.0
+
+        for (i in segmentPower.indices) {
+            val power = segmentPower[i]
+            val duration = segmentDuration[i]
+            val intensity = segmentIntensity[i]
+
+            // The energy drawn from the grid during this segment (in J)
+            val gridEnergy: Double
+
+            if (carbonPolicy.greenEnergyAvailable(intensity, segmentStart[i])) {
+                // Charge until the battery is full, while the grid supplies the power draw
+                val chargeTime =
+                    if (chargeLevel >= upperBound || chargeSpeed <= 0) {
+                        0.0
+                    } else {
+                        minOf(duration, (upperBound - chargeLevel) / chargeSpeed)
+                    }
+                val charge = chargeSpeed * chargeTime
+
+                gridEnergy = power * duration + charge
+                chargeReceived += charge
+                chargeIntegral +=
+                    (chargeLevel + charge * 0.5) * chargeTime + (chargeLevel + charge) * (duration - chargeTime)
+                chargeLevel = if (chargeTime < duration && charge > 0) upperBound else chargeLevel + charge
+            } else {
+                // Supply the power draw until the battery is empty, after which the grid takes over
+                val depleteTime =
+                    if (chargeLevel <= lowerBound || power <= 0) {
+                        0.0
+                    } else {
+                        minOf(duration, (chargeLevel - lowerBound) / power)
+                    }
+                val supplied = power * depleteTime
+
+                gridEnergy = power * (duration - depleteTime)
+                batteryEnergyUsage += supplied
+                chargeIntegral +=
+                    (chargeLevel - supplied * 0.5) * depleteTime + (chargeLevel - supplied) * (duration - depleteTime)
+                chargeLevel = if (depleteTime < duration && supplied > 0) lowerBound else chargeLevel - supplied
+            }
+
+            energyUsage += gridEnergy
+            carbonEmission += intensity * (gridEnergy / 3600000.0)
+            totalDuration += duration
+        }
+
+        return BatteryReplayResult(
+            config,
+            carbonEmission,
+            energyUsage,
+            batteryEnergyUsage,
+            chargeReceived,
+            chargeLevel,
+            if (totalDuration > 0) chargeIntegral / totalDuration else chargeLevel,
+        )
+    }
+
+    /**
+     * Replay the specified battery configurations in parallel on all available cores.
+     *
+     * @param configs The battery configurations to evaluate.
+     * @param carbonPolicy A factory for the policy of a configuration, which is invoked once per configuration, such
+     * that stateful policies are not shared between threads.
+     * @return The results in the order of [configs].
+     */
+    @JvmOverloads
+    public fun replayAll(
+        configs: List<BatteryConfig>,
+        carbonPolicy: (BatteryConfig) -> CarbonPolicy = { SimpleCarbonPolicy(it.carbonThreshold) },
+    ): List<BatteryReplayResult> {
+        val results = arrayOfNulls<BatteryReplayResult>(configs.size)
+
+        IntStream.range(0, configs.size).parallel().forEach { i ->
+            val config = configs[i]
+            results[i] = replay(config, carbonPolicy(config))
+        }
+
+        return results.map { it!! }
+    }
+
+    /**
+     * Replay every combination of the specified capacities, charge speeds and carbon thresholds in parallel.
+     *
+     * @return The results, ordered by capacity, then charge speed, then carbon threshold.
+     */
+    public fun gridSearch(
+        capacities: List<Double>,
+        chargeSpeeds: List<Double>,
+        carbonThresholds: List<Double>,
+    ): List<BatteryReplayResult> {
+        val configs = ArrayList<BatteryConfig>(capacities.size * chargeSpeeds.size * carbonThresholds.size)
+        for (capacity in capacities) {
+            for (chargeSpeed in chargeSpeeds) {
+                for (carbonThreshold in carbonThresholds) {
+                    configs.add(BatteryConfig(capacity, chargeSpeed, carbonThreshold))
+                }
+            }
+        }
+
+        return replayAll(configs)
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.compute.carbon.replay
+
+/**
+ * The outcome of replaying a [BatteryConfig] over a [PowerTrace].
+ *
+ * @param config The evaluated battery configuration.
+ * @param carbonEmission The carbon emission of the energy drawn from the grid (in gCO2).
+ * @param energyUsage The energy drawn from the grid, including the energy used to charge the battery (in J).
+ * @param batteryEnergyUsage The energy supplied by the battery (in J).
+ * @param totalChargeReceived The energy used to charge the battery (in J).
+ * @param finalChargeLevel The charge level of the battery at the end of the trace (in J).
+ * @param averageChargeLevel The time-weighted average charge level of the battery (in J).
+ */
+public data class BatteryReplayResult(
+    val config: BatteryConfig,
+    val carbonEmission: Double,
+    val energyUsage: Double,
+    val batteryEnergyUsage: Double,
+    val totalChargeReceived: Double,
+    val finalChargeLevel: Double,
+    val averageChargeLevel: Double,
+) {
+    /**
+     * The number of equivalent full discharge cycles of the battery.
+     */
+    public val equivalentCycles: Double
+        get() = if (config.capacity > 0) batteryEnergyUsage / config.capacity else 0.0
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.compute.carbon.replay
+
+/**
+ * The power draw of a cluster over time, as a sequence of intervals with a constant power draw.
+ *
+ * @param times The boundaries of the intervals (in epoch millis), in increasing order. Interval `i` spans
+ * `[times[i], times[i + 1])`, so this array has one more element than [powerDraw].
+ * @param powerDraw The power draw during each interval (in W).
+ */
+public class PowerTrace(
+    internal val times: LongArray,
+    internal val powerDraw: DoubleArray,
+) {
+    init {
+        require(times.size == powerDraw.size + 1) { "Expected ${powerDraw.size + 1} boundaries, got ${times.size}" }
+        for (i in 1 until times.size) {
+            require(times[i] >= times[i - 1]) { "Interval boundaries must be increasing" }
+        }
+    }
+
+    /**
+     * The number of intervals in the trace.
+     */
+    public val size: Int
+        get() = powerDraw.size
+
+    /**
+     * The start of the trace (in epoch millis).
+     */
+    public val startTime: Long
+        get() = times[0]
+
+    /**
+     * The end of the trace (in epoch millis).
+     */
+    public val endTime: Long
+        get() = times[times.size - 1]
+
+    /**
+     * The total energy usage over the trace (in J).
+     */
+    public val energyUsage: Double
+        get() {
+            var total = 0.0
+            for (i in powerDraw.indices) {
+                total += powerDraw[i] * (times[i + 1] - times[i]) * 0.001
+            }
+            return total
+        }
+
+    public companion object {
+        /**
+         * Construct a [PowerTrace] from the samples of an export, where each sample reports the energy usage (in J)
+         * since the previous sample. The power draw during an interval is the average power draw over the interval,
+         * such that the energy usage of the trace matches the export exactly. The first sample is assumed to cover an
+         * interval of the same length as the second sample.
+         *
+         * @param timestamps The timestamps of the samples (in epoch millis), in increasing order.
+         * @param energyUsage The energy usage since the previous sample (in J).
+         */
+        @JvmStatic
+        public fun fromEnergySamples(
+            timestamps: LongArray,
+            energyUsage: DoubleArray,
+        ): PowerTrace {
+            require(timestamps.size == energyUsage.size) { "Timestamps and energy usage differ in length" }
+            require(timestamps.size >= 2) { "At least two samples are required" }
+
+            val n = timestamps.size
+            val times = LongArray(n + 1)
+            val powerDraw = DoubleArray(n)
+
+            times[0] = timestamps[0] - (timestamps[1] - timestamps[0])
+            for (i in 0 until n) {
+                times[i + 1] = timestamps[i]
+
+                val duration = times[i + 1] - times[i]
+                powerDraw[i] = if (duration > 0) energyUsage[i] / (duration * 0.001) else 0.0
+            }
+
+            return PowerTrace(times, powerDraw)
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+@file:JvmName("PowerTraces")
+
+package org.opendc.compute.carbon.replay
+
+import org.opendc.trace.util.parquet.LocalParquetReader
+import java.io.File
+
+/**
+ * Read the power traces from a `powerSource.parquet` or `batteryAdapter.parquet` file exported by a simulation.
+ *
+ * The export does not identify the power source of a row, but the rows of a sample are always written in the same
+ * order. Hence, the n-th row of each timestamp belongs to the n-th power source. For a cluster with a battery, use the
+ * `batteryAdapter.parquet` file, since the power source export includes the power used to charge the battery.
+ *
+ * @param file The exported Parquet file.
+ * @return A [PowerTrace] for each power source in the export.
+ */
+public fun getPowerTraces(file: File): List<PowerTrace> {
+    val timestamps = mutableListOf<MutableList<Long>>()
+    val energyUsages = mutableListOf<MutableList<Double>>()
+
+    LocalParquetReader(file, PowerSampleReadSupport()).use { reader ->
+        var lastTimestamp = Long.MIN_VALUE
+        var source = 0
+
+        while (true) {
+            val sample = reader.read() ?: break
+
+            source = if (sample.timestamp == lastTimestamp) source + 1 else 0
+            lastTimestamp = sample.timestamp
+
+            if (source == timestamps.size) {
+                timestamps.add(mutableListOf())
+                energyUsages.add(mutableListOf())
+            }
+
+            timestamps[source].add(sample.timestamp)
+            energyUsages[source].add(sample.energyUsage)
+        }
+    }
+
+    return timestamps.indices.map { i ->
+        PowerTrace.fromEnergySamples(timestamps[i].toLongArray(), energyUsages[i].toDoubleArray())
+    }
+}
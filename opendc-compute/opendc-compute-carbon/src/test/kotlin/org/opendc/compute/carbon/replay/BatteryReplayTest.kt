@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.compute.carbon.replay
+
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertAll
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.opendc.simulator.compute.power.CarbonFragment
+import org.opendc.simulator.compute.power.CarbonTimeline
+import org.opendc.simulator.compute.power.battery.ShadowBattery
+import org.opendc.simulator.compute.power.battery.greenenergy.SimpleCarbonPolicy
+import java.util.Random
+
+/**
+ * Test suite for the [BatteryReplay] class.
+ */
+class BatteryReplayTest {
+    private val hour = 3_600_000L
+
+    private val timeline =
+        CarbonTimeline.of(
+            List(40) { i ->
+                CarbonFragment(i * 3 * hour, (i + 1) * 3 * hour, if (i % 3 == 0) 50.0 else 150.0 + i)
+            },
+        )
+
+    /**
+     * A power trace with a sample every five minutes during four days.
+     */
+    private val trace: PowerTrace =
+        run {
+            val random = Random(0)
+            val n = 4 * 24 * 12
+            val times = LongArray(n + 1) { it * 300_000L }
+            val power = DoubleArray(n) { 200.0 + random.nextDouble() * 800.0 }
+            PowerTrace(times, power)
+        }
+
+    @Test
+    fun testWithoutBattery() {
+        val replay = BatteryReplay(trace, timeline)
+        val result = replay.replay(BatteryConfig(0.0, 0.0, 100.0))
+
+        assertAll(
+            { assertEquals(trace.energyUsage, replay.baselineEnergyUsage, 1e-3) },
+            { assertEquals(replay.baselineEnergyUsage, result.energyUsage, 1e-3) },
+            { assertEquals(replay.baselineCarbonEmission, result.carbonEmission, 1e-6) },
+            { assertEquals(0.0, result.batteryEnergyUsage) },
+        )
+    }
+
+    @Test
+    fun testMatchesShadowBattery() {
+        val replay = BatteryReplay(trace, timeline)
+        val config = BatteryConfig(2.0e7, 2000.0, 100.0)
+        val result = replay.replay(config)
+
+        val battery =
+            ShadowBattery(
+                "test",
+                config.capacity,
+                config.chargeSpeed,
+                SimpleCarbonPolicy(config.carbonThreshold),
+                timeline,
+                0,
+                0,
+            )
+        for (i in 0 until trace.size) {
+            battery.setPowerDemand(trace.times[i], trace.powerDraw[i])
+        }
+        battery.updateCounters(trace.endTime)
+
+        assertAll(
+            { assertEquals(battery.energyUsage, result.energyUsage, 1e-3) },
+            { assertEquals(battery.batteryEnergyUsage, result.batteryEnergyUsage, 1e-3) },
+            { assertEquals(battery.totalChargeReceived, result.totalChargeReceived, 1e-3) },
+            { assertEquals(battery.carbonEmission, result.carbonEmission, 1e-6) },
+            { assertEquals(battery.chargeLevel, result.finalChargeLevel, 1e-3) },
+        )
+    }
+
+    @Test
+    fun testGridSearch() {
+        val replay = BatteryReplay(trace, timeline)
+        val capacities = listOf(1.0e6, 1.0e7, 1.0e8)
+        val chargeSpeeds = listOf(500.0, 5000.0)
+        val thresholds = listOf(60.0, 100.0)
+
+        val results = replay.gridSearch(capacities, chargeSpeeds, thresholds)
+
+        assertEquals(12, results.size)
+        for (result in results) {
+            assertEquals(replay.replay(result.config), result)
+        }
+        assertEquals(BatteryConfig(1.0e7, 5000.0, 60.0), results[6].config)
+    }
+
+    @Test
+    fun testFromEnergySamples() {
+        val trace = PowerTrace.fromEnergySamples(longArrayOf(1000, 2000, 4000), doubleArrayOf(100.0, 200.0, 100.0))
+
+        assertAll(
+            { assertEquals(0L, trace.startTime) },
+            { assertEquals(4000L, trace.endTime) },
+            { assertEquals(400.0, trace.energyUsage, 1e-9) },
+            { assertEquals(50.0, trace.powerDraw[2], 1e-9) },
+        )
+    }
+}
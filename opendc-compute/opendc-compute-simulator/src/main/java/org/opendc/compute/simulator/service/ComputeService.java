@@ -62,6 +62,11 @@ import org.slf4j.LoggerFactory;
 public final class ComputeService implements AutoCloseable {
     private static final Logger LOGGER = LoggerFactory.getLogger(ComputeService.class);
 
+    /**
+     * The {@link Dispatcher} that drives the service.
+     */
+    private final Dispatcher dispatcher;
+
     /**
      * The {@link InstantSource} representing the clock tracking the (simulation) time.
      */
@@ -228,6 +233,7 @@ public final class ComputeService implements AutoCloseable {
      * Construct a {@link ComputeService} instance.
      */
     public ComputeService(Dispatcher dispatcher, ComputeScheduler scheduler, Duration quantum, int maxNumFailures) {
+        this.dispatcher = dispatcher;
         this.clock = dispatcher.getTimeSource();
         this.scheduler = scheduler;
         this.pacer = new Pacer(dispatcher, quantum.toMillis(), (time) -> doSchedule());
@@ -241,6 +247,13 @@ public final class ComputeService implements AutoCloseable {
         return new Builder(dispatcher, scheduler);
     }
 
+    /**
+     * Return the {@link Dispatcher} that drives this service.
+     */
+    public Dispatcher getDispatcher() {
+        return dispatcher;
+    }
+
     /**
      * Create a new {@link ComputeClient} to control the compute service.
      */
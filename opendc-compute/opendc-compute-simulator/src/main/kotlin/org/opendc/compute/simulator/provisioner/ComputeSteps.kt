@@ -24,6 +24,7 @@
 
 package org.opendc.compute.simulator.provisioner
 
+import org.opendc.compute.carbon.CarbonTraceLoader
 import org.opendc.compute.simulator.scheduler.ComputeScheduler
 import org.opendc.compute.simulator.telemetry.ComputeMonitor
 import org.opendc.compute.topology.specs.ClusterSpec
@@ -70,11 +71,15 @@ public fun registerComputeMonitor(
  * @param serviceDomain The domain name under which the compute service is registered.
  * @param specs A list of [HostSpec] objects describing the simulated hosts to provision.
  * @param optimize A flag to indicate that the CPU resources of the host should be merged into a single CPU resource.
+ * @param parallelism The number of clusters that may be simulated at the same time.
+ * @param carbonTraceLoader The loader that caches the carbon traces, which the simulations of an experiment may share.
  */
 public fun setupHosts(
     serviceDomain: String,
     specs: List<ClusterSpec>,
     startTime: Long = 0L,
+    parallelism: Int = 1,
+    carbonTraceLoader: CarbonTraceLoader = CarbonTraceLoader(),
 ): ProvisioningStep {
-    return HostsProvisioningStep(serviceDomain, specs, startTime)
+    return HostsProvisioningStep(serviceDomain, specs, startTime, parallelism, carbonTraceLoader)
 }
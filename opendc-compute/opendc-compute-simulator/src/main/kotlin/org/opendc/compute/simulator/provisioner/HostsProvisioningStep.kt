@@ -22,18 +22,22 @@
 
 package org.opendc.compute.simulator.provisioner
 
-import org.opendc.compute.carbon.getCarbonFragments
+import org.opendc.compute.carbon.CarbonTraceLoader
+import org.opendc.compute.carbon.getCarbonTimeline
 import org.opendc.compute.simulator.host.SimHost
 import org.opendc.compute.simulator.service.ComputeService
 import org.opendc.compute.topology.specs.ClusterSpec
 import org.opendc.compute.topology.specs.HostSpec
-import org.opendc.simulator.Multiplexer
+import org.opendc.simulator.AggregatingMultiplexer
 import org.opendc.simulator.compute.power.battery.PowerAdapter
 import org.opendc.simulator.compute.power.battery.BatteryPowerAdapter
+import org.opendc.simulator.compute.power.battery.ChargeBounds
+import org.opendc.simulator.compute.power.battery.ShadowBattery
 import org.opendc.simulator.compute.power.battery.SimBattery
 import org.opendc.simulator.compute.power.battery.StubPowerAdapter
 import org.opendc.simulator.compute.power.battery.greenenergy.SimpleCarbonPolicy
 import org.opendc.simulator.engine.FlowEngine
+import org.opendc.simulator.engine.FlowEngineGroup
 
 /**
  * A [ProvisioningStep] that provisions a list of hosts for a [ComputeService].
@@ -41,6 +45,9 @@ import org.opendc.simulator.engine.FlowEngine
  * @param serviceDomain The domain name under which the compute service is registered.
  * @param specs A list of [HostSpec] objects describing the simulated hosts to provision.
  * @param optimize A flag to indicate that the CPU resources of the host should be merged into a single CPU resource.
+ * @param parallelism The number of clusters that may be simulated at the same time. When larger than one, every cluster
+ * gets its own [FlowEngine] in a [FlowEngineGroup].
+ * @param carbonTraceLoader The loader that caches the carbon traces of the clusters.
  */
 
 
@@ -49,7 +56,8 @@ public class HostsProvisioningStep internal constructor(
     private val serviceDomain: String,
     private val clusterSpecs: List<ClusterSpec>,
     private val startTime: Long = 0L,
-
+    private val parallelism: Int = 1,
+    private val carbonTraceLoader: CarbonTraceLoader = CarbonTraceLoader(),
 ) : ProvisioningStep {
     override fun apply(ctx: ProvisioningContext): AutoCloseable {
         val service =
@@ -59,12 +67,21 @@ public class HostsProvisioningStep internal constructor(
         val simHosts = mutableSetOf<SimHost>()
         val powerAdapters = mutableListOf<PowerAdapter>()
 
-        val engine = FlowEngine.create(ctx.dispatcher)
-        val graph = engine.newGraph()
+        // Clusters only share the compute service, so each cluster can be simulated by its own engine
+        val group = if (parallelism > 1) FlowEngineGroup.create(ctx.dispatcher, parallelism) else null
+        val sharedGraph = if (group == null) FlowEngine.create(ctx.dispatcher).newGraph(false) else null
+
+        // Expose the engines, such that their statistics can be collected after the simulation
+        if (group != null) {
+            ctx.registry.register(serviceDomain, FlowEngineGroup::class.java, group)
+        } else {
+            ctx.registry.register(serviceDomain, FlowEngine::class.java, sharedGraph!!.engine)
+        }
 
         for (cluster in clusterSpecs) {
+            val graph = sharedGraph ?: group!!.newEngine().newGraph(false)
 
-            val carbonFragments = getCarbonFragments(cluster.powerSource.carbonTracePath)
+            val carbonTimeline = getCarbonTimeline(cluster.powerSource.carbonTracePath, carbonTraceLoader)
 
             val use_battery = cluster.batterySpec?.capacity != null
 
@@ -73,28 +90,46 @@ public class HostsProvisioningStep internal constructor(
                 val max_capacity_battery = cluster.batterySpec!!.capacity
                 val current = cluster.batterySpec!!.chargeSpeed
                 val carbonIntensityThreshold = cluster.batterySpec!!.carbonThreshold
+                val chargeBounds =
+                    ChargeBounds(cluster.batterySpec!!.chargeLowerBound, cluster.batterySpec!!.chargeUpperBound)
 
                 powerAdapter = BatteryPowerAdapter(
                     graph,
                     cluster.powerSource.totalPower.toDouble(),
-                    carbonFragments,
+                    carbonTimeline,
                     startTime,
                     SimpleCarbonPolicy(carbonIntensityThreshold),
-                    SimBattery(graph, max_capacity_battery, current)
+                    SimBattery(graph, max_capacity_battery, current, chargeBounds)
                 )
             } else {
                 powerAdapter = StubPowerAdapter(
                     graph,
                     cluster.powerSource.totalPower.toDouble(),
-                    carbonFragments,
+                    carbonTimeline,
                     startTime
                 )
             }
 
+            // Evaluate the shadow batteries on the power demand of the cluster, without affecting the simulation
+            for ((index, shadowBatterySpec) in cluster.shadowBatterySpecs.withIndex()) {
+                powerAdapter.addShadowBattery(
+                    ShadowBattery(
+                        "${cluster.name}-shadow-$index",
+                        shadowBatterySpec.capacity,
+                        shadowBatterySpec.chargeSpeed,
+                        ChargeBounds(shadowBatterySpec.chargeLowerBound, shadowBatterySpec.chargeUpperBound),
+                        SimpleCarbonPolicy(shadowBatterySpec.carbonThreshold),
+                        carbonTimeline,
+                        startTime,
+                        graph.engine.clock.millis(),
+                    ),
+                )
+            }
+
             service.addPowerSource(powerAdapter)
             powerAdapters.add(powerAdapter)
 
-            val powerMux = Multiplexer(graph)
+            val powerMux = AggregatingMultiplexer(graph)
             graph.addEdge(powerMux, powerAdapter)
 
             // Create hosts, they are connected to the powerMux when SimMachine is created
@@ -125,6 +160,8 @@ public class HostsProvisioningStep internal constructor(
                 // TODO: add close function
                 simPowerSource.close()
             }
+
+            group?.close()
         }
     }
 }
@@ -34,18 +34,24 @@ import org.opendc.compute.simulator.service.ComputeService
 import org.opendc.compute.simulator.service.ServiceTask
 import org.opendc.compute.simulator.telemetry.table.BatteryAdapterTableReader
 import org.opendc.compute.simulator.telemetry.table.BatteryAdapterTableReaderImpl
+import org.opendc.compute.simulator.telemetry.table.BatteryEventTableReaderImpl
 import org.opendc.compute.simulator.telemetry.table.BatteryTableReader
 import org.opendc.compute.simulator.telemetry.table.BatteryTableReaderImpl
 import org.opendc.compute.simulator.telemetry.table.HostTableReaderImpl
 import org.opendc.compute.simulator.telemetry.table.PowerSourceTableReader
 import org.opendc.compute.simulator.telemetry.table.PowerSourceTableReaderImpl
 import org.opendc.compute.simulator.telemetry.table.ServiceTableReaderImpl
+import org.opendc.compute.simulator.telemetry.table.ShadowBatteryTableReader
+import org.opendc.compute.simulator.telemetry.table.ShadowBatteryTableReaderImpl
 import org.opendc.compute.simulator.telemetry.table.TaskTableReaderImpl
 import org.opendc.simulator.compute.power.SimPowerSource
+import org.opendc.simulator.compute.power.battery.BatteryEvent
 import org.opendc.simulator.compute.power.battery.BatteryPowerAdapter
 import org.opendc.simulator.compute.power.battery.PowerAdapter
+import org.opendc.simulator.compute.power.battery.ShadowBattery
 import org.opendc.simulator.compute.power.battery.SimBattery
 import java.time.Duration
+import java.util.function.Consumer
 
 /**
  * A helper class to collect metrics from a [ComputeService] instance and automatically export the metrics every
@@ -98,6 +104,13 @@ public class ComputeMetricReader(
 
     private val batteryAdapterTableReaders = mutableMapOf<BatteryPowerAdapter, BatteryAdapterTableReader>()
 
+    private val shadowBatteryTableReaders = mutableMapOf<ShadowBattery, ShadowBatteryTableReader>()
+
+    /**
+     * Mapping from [BatteryPowerAdapter] instances to the listeners that report their battery events as they occur.
+     */
+    private val batteryEventListeners = mutableMapOf<BatteryPowerAdapter, Consumer<BatteryEvent>>()
+
 
     /**
      * The background job that is responsible for collecting the metrics every cycle.
@@ -109,6 +122,14 @@ public class ComputeMetricReader(
         scope.launch {
             val intervalMs = exportInterval.toMillis()
                 try {
+                    // The power sources are provisioned after the reader, but before the simulation starts, so the
+                    // battery events are subscribed to once here
+                    for (powerAdapter in service.powerSources) {
+                        if (powerAdapter is BatteryPowerAdapter) {
+                            subscribeBatteryEvents(powerAdapter)
+                        }
+                    }
+
                     while (isActive) {
                         delay(intervalMs)
 
@@ -139,6 +160,10 @@ public class ComputeMetricReader(
                     }
                     */
 
+                    for ((powerAdapter, listener) in batteryEventListeners) {
+                        powerAdapter.removeEventListener(listener)
+                    }
+                    batteryEventListeners.clear()
 
                     if (monitor is AutoCloseable) {
                         monitor.close()
@@ -219,6 +244,18 @@ public class ComputeMetricReader(
                     this.monitor.record(batteryAdapterReader.copy())
                     batteryAdapterReader.reset()
                 }
+
+                for (shadowBattery in powerAdapter.shadowBatteries) {
+                    val shadowBatteryReader = this.shadowBatteryTableReaders.computeIfAbsent(shadowBattery) {
+                        ShadowBatteryTableReaderImpl(
+                            it,
+                            startTime,
+                        )
+                    }
+                    shadowBatteryReader.record(now)
+                    this.monitor.record(shadowBatteryReader.copy())
+                    shadowBatteryReader.reset()
+                }
             }
 
             this.serviceTableReader.record(now)
@@ -240,6 +277,23 @@ public class ComputeMetricReader(
         }
     }
 
+    /**
+     * Report every state transition of the battery of the specified adapter to the monitor as it occurs, instead of
+     * sampling it every export interval.
+     */
+    private fun subscribeBatteryEvents(powerAdapter: BatteryPowerAdapter) {
+        batteryEventListeners.computeIfAbsent(powerAdapter) {
+            val reader = BatteryEventTableReaderImpl(startTime)
+            val listener =
+                Consumer<BatteryEvent> { event ->
+                    reader.record(event)
+                    monitor.record(reader.copy())
+                }
+            it.addEventListener(listener)
+            listener
+        }
+    }
+
     override fun close() {
         job.cancel()
     }
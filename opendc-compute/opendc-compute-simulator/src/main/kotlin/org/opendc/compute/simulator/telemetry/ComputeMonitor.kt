@@ -23,10 +23,12 @@
 package org.opendc.compute.simulator.telemetry
 
 import org.opendc.compute.simulator.telemetry.table.BatteryAdapterTableReader
+import org.opendc.compute.simulator.telemetry.table.BatteryEventTableReader
 import org.opendc.compute.simulator.telemetry.table.BatteryTableReader
 import org.opendc.compute.simulator.telemetry.table.HostTableReader
 import org.opendc.compute.simulator.telemetry.table.PowerSourceTableReader
 import org.opendc.compute.simulator.telemetry.table.ServiceTableReader
+import org.opendc.compute.simulator.telemetry.table.ShadowBatteryTableReader
 import org.opendc.compute.simulator.telemetry.table.TaskTableReader
 
 /**
@@ -62,4 +64,14 @@ public interface ComputeMonitor {
      * Record an entry with the specified [reader].
      */
     public fun record(reader: ServiceTableReader) {}
+
+    /**
+     * Record an entry with the specified [reader].
+     */
+    public fun record(reader: ShadowBatteryTableReader) {}
+
+    /**
+     * Record an entry with the specified [reader].
+     */
+    public fun record(reader: BatteryEventTableReader) {}
 }
@@ -110,6 +110,8 @@ public data class ComputeExportConfig(
             DfltBatteryExportColumns
             DfltBatteryAdapterExportColumns
             DfltServiceExportColumns
+            DfltShadowBatteryExportColumns
+            DfltBatteryEventExportColumns
         }
 
         /**
@@ -24,10 +24,12 @@ package org.opendc.compute.simulator.telemetry.parquet
 
 import org.opendc.compute.simulator.telemetry.ComputeMonitor
 import org.opendc.compute.simulator.telemetry.table.BatteryAdapterTableReader
+import org.opendc.compute.simulator.telemetry.table.BatteryEventTableReader
 import org.opendc.compute.simulator.telemetry.table.BatteryTableReader
 import org.opendc.compute.simulator.telemetry.table.HostTableReader
 import org.opendc.compute.simulator.telemetry.table.PowerSourceTableReader
 import org.opendc.compute.simulator.telemetry.table.ServiceTableReader
+import org.opendc.compute.simulator.telemetry.table.ShadowBatteryTableReader
 import org.opendc.compute.simulator.telemetry.table.TaskTableReader
 import org.opendc.trace.util.parquet.exporter.ExportColumn
 import org.opendc.trace.util.parquet.exporter.Exportable
@@ -36,6 +38,9 @@ import java.io.File
 
 /**
  * A [ComputeMonitor] that logs the events to a Parquet file.
+ *
+ * The `shadowBattery.parquet` and `batteryEvent.parquet` files are only created once their first row is recorded, such
+ * that runs without shadow batteries or battery transitions do not leave an empty file behind.
  */
 public class ParquetComputeMonitor(
     private val hostExporter: Exporter<HostTableReader>,
@@ -44,6 +49,8 @@ public class ParquetComputeMonitor(
     private val batteryExporter: Exporter<BatteryTableReader>,
     private val batteryAdapterExporter: Exporter<BatteryAdapterTableReader>,
     private val serviceExporter: Exporter<ServiceTableReader>,
+    private val shadowBatteryExporter: Lazy<Exporter<ShadowBatteryTableReader>>,
+    private val batteryEventExporter: Lazy<Exporter<BatteryEventTableReader>>,
 ) : ComputeMonitor, AutoCloseable {
     override fun record(reader: HostTableReader) {
         hostExporter.write(reader)
@@ -69,6 +76,14 @@ public class ParquetComputeMonitor(
         serviceExporter.write(reader)
     }
 
+    override fun record(reader: ShadowBatteryTableReader) {
+        shadowBatteryExporter.value.write(reader)
+    }
+
+    override fun record(reader: BatteryEventTableReader) {
+        batteryEventExporter.value.write(reader)
+    }
+
     override fun close() {
         hostExporter.close()
         taskExporter.close()
@@ -76,6 +91,12 @@ public class ParquetComputeMonitor(
         batteryExporter.close()
         batteryAdapterExporter.close()
         serviceExporter.close()
+        if (shadowBatteryExporter.isInitialized()) {
+            shadowBatteryExporter.value.close()
+        }
+        if (batteryEventExporter.isInitialized()) {
+            batteryEventExporter.value.close()
+        }
     }
 
     public companion object {
@@ -112,6 +133,10 @@ public class ParquetComputeMonitor(
          * @param[base]         parent pathname for output file.
          * @param[partition]    child pathname for output file.
          * @param[bufferSize]   size of the buffer used by the writer thread.
+         * @param[shadowBatteryExportColumns] the columns of the `shadowBattery.parquet` output file, which are
+         * always extended with [DfltShadowBatteryExportColumns.BASE_EXPORT_COLUMNS].
+         * @param[batteryEventExportColumns] the columns of the `batteryEvent.parquet` output file, which contains one
+         * row per state transition of a battery and is always extended with [DfltBatteryEventExportColumns.BASE_EXPORT_COLUMNS].
          */
         public operator fun invoke(
             base: File,
@@ -123,6 +148,8 @@ public class ParquetComputeMonitor(
             batteryExportColumns: Collection<ExportColumn<BatteryTableReader>>? = null,
             batteryAdapterExportColumns: Collection<ExportColumn<BatteryAdapterTableReader>>? = null,
             serviceExportColumns: Collection<ExportColumn<ServiceTableReader>>? = null,
+            shadowBatteryExportColumns: Collection<ExportColumn<ShadowBatteryTableReader>>? = null,
+            batteryEventExportColumns: Collection<ExportColumn<BatteryEventTableReader>>? = null,
         ): ParquetComputeMonitor {
             // Loads the fields in case they need to be retrieved if optional params are omitted.
             ComputeExportConfig.loadDfltColumns()
@@ -164,6 +191,28 @@ public class ParquetComputeMonitor(
                         columns = serviceExportColumns ?: Exportable.getAllLoadedColumns(),
                         bufferSize = bufferSize,
                     ),
+                shadowBatteryExporter =
+                    lazy {
+                        Exporter(
+                            outputFile = File(base, "$partition/shadowBattery.parquet").also { it.parentFile.mkdirs() },
+                            columns =
+                                shadowBatteryExportColumns
+                                    ?.let { it.toSet() + DfltShadowBatteryExportColumns.BASE_EXPORT_COLUMNS }
+                                    ?: Exportable.getAllLoadedColumns(),
+                            bufferSize = bufferSize,
+                        )
+                    },
+                batteryEventExporter =
+                    lazy {
+                        Exporter(
+                            outputFile = File(base, "$partition/batteryEvent.parquet").also { it.parentFile.mkdirs() },
+                            columns =
+                                batteryEventExportColumns
+                                    ?.let { it.toSet() + DfltBatteryEventExportColumns.BASE_EXPORT_COLUMNS }
+                                    ?: Exportable.getAllLoadedColumns(),
+                            bufferSize = bufferSize,
+                        )
+                    },
             )
         }
     }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.compute.simulator.telemetry.table
+
+import org.opendc.simulator.compute.power.battery.BatteryEvent
+import org.opendc.simulator.compute.power.battery.SimBattery
+import org.opendc.trace.util.parquet.exporter.Exportable
+import java.time.Instant
+
+/**
+ * An interface that is used to read a row of a battery event trace entry, which describes a single state transition
+ * of a battery.
+ */
+public interface BatteryEventTableReader : Exportable {
+    public fun copy(): BatteryEventTableReader
+
+    public fun setValues(table: BatteryEventTableReader)
+
+    public fun record(event: BatteryEvent)
+
+    /**
+     * The timestamp of the transition relative to the start of the workload.
+     */
+    public val timestamp: Instant
+
+    /**
+     * The timestamp of the transition.
+     */
+    public val timestampAbsolute: Instant
+
+    /**
+     * The state before the transition.
+     */
+    public val previousState: SimBattery.STATE
+
+    /**
+     * The state after the transition.
+     */
+    public val state: SimBattery.STATE
+
+    /**
+     * The charge level at the transition in J.
+     */
+    public val chargeLevel: Double
+
+    /**
+     * The total energy supplied by the battery in J.
+     */
+    public val energyUsage: Double
+
+    /**
+     * The total charge received by the battery in J.
+     */
+    public val chargeReceived: Double
+
+    /**
+     * The total carbon emission of the power source of the battery in gCO2.
+     */
+    public val carbonEmission: Double
+}
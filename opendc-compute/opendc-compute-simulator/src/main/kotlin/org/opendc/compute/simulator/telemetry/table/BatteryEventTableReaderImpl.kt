@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.compute.simulator.telemetry.table
+
+import org.opendc.simulator.compute.power.battery.BatteryEvent
+import org.opendc.simulator.compute.power.battery.SimBattery
+import java.time.Duration
+import java.time.Instant
+
+/**
+ * A buffer for a battery event before it is reported.
+ */
+public class BatteryEventTableReaderImpl(
+    private val startTime: Duration = Duration.ofMillis(0),
+) : BatteryEventTableReader {
+    override fun copy(): BatteryEventTableReader {
+        val newTable =
+            BatteryEventTableReaderImpl(
+                startTime,
+            )
+        newTable.setValues(this)
+
+        return newTable
+    }
+
+    override fun setValues(table: BatteryEventTableReader) {
+        _timestamp = table.timestamp
+        _timestampAbsolute = table.timestampAbsolute
+
+        _previousState = table.previousState
+        _state = table.state
+        _chargeLevel = table.chargeLevel
+        _energyUsage = table.energyUsage
+        _chargeReceived = table.chargeReceived
+        _carbonEmission = table.carbonEmission
+    }
+
+    private var _timestamp = Instant.MIN
+    override val timestamp: Instant
+        get() = _timestamp
+
+    private var _timestampAbsolute = Instant.MIN
+    override val timestampAbsolute: Instant
+        get() = _timestampAbsolute
+
+    override val previousState: SimBattery.STATE
+        get() = _previousState
+    private var _previousState = SimBattery.STATE.IDLE
+
+    override val state: SimBattery.STATE
+        get() = _state
+    private var _state = SimBattery.STATE.IDLE
+
+    override val chargeLevel: Double
+        get() = _chargeLevel
+    private var _chargeLevel = 0.0
+
+    override val energyUsage: Double
+        get() = _energyUsage
+    private var _energyUsage = 0.0
+
+    override val chargeReceived: Double
+        get() = _chargeReceived
+    private var _chargeReceived = 0.0
+
+    override val carbonEmission: Double
+        get() = _carbonEmission
+    private var _carbonEmission = 0.0
+
+    /**
+     * Record the specified event.
+     */
+    override fun record(event: BatteryEvent) {
+        _timestamp = Instant.ofEpochMilli(event.timestamp)
+        _timestampAbsolute = _timestamp + startTime
+
+        _previousState = event.previousState
+        _state = event.state
+        _chargeLevel = event.chargeLevel
+        _energyUsage = event.energyUsage
+        _chargeReceived = event.chargeReceived
+        _carbonEmission = event.carbonEmission
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.compute.simulator.telemetry.table
+
+import org.opendc.trace.util.parquet.exporter.Exportable
+import java.time.Instant
+
+/**
+ * An interface that is used to read a row of a shadow battery trace entry.
+ */
+public interface ShadowBatteryTableReader : Exportable {
+    public fun copy(): ShadowBatteryTableReader
+
+    public fun setValues(table: ShadowBatteryTableReader)
+
+    public fun record(now: Instant)
+
+    public fun reset()
+
+    /**
+     * The timestamp of the current entry of the reader relative to the start of the workload.
+     */
+    public val timestamp: Instant
+
+    /**
+     * The timestamp of the current entry of the reader.
+     */
+    public val timestampAbsolute: Instant
+
+    /**
+     * The name of the battery configuration.
+     */
+    public val name: String
+
+    /**
+     * The capacity of the battery in J.
+     */
+    public val capacity: Double
+
+    /**
+     * The charge speed of the battery in W.
+     */
+    public val chargeSpeed: Double
+
+    /**
+     * The current power drawn from the power source in W.
+     */
+    public val powerDraw: Double
+
+    /**
+     * The current power supplied by the battery in W.
+     */
+    public val batteryPowerDraw: Double
+
+    /**
+     * The energy drawn from the power source since last sample in J.
+     */
+    public val energyUsage: Double
+
+    /**
+     * The energy supplied by the battery since last sample in J.
+     */
+    public val batteryEnergyUsage: Double
+
+    /**
+     * The carbon emission of the energy drawn from the power source since last sample in gCO2.
+     */
+    public val carbonEmission: Double
+
+    /**
+     * The current charge level in J.
+     */
+    public val chargeLevel: Double
+
+    /**
+     * The current state (IDLE, CHARGING, DEPLETING).
+     */
+    public val state: String
+}
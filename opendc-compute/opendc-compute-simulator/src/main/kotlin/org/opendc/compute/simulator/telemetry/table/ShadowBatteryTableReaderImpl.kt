@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.compute.simulator.telemetry.table
+
+import org.opendc.simulator.compute.power.battery.ShadowBattery
+import java.time.Duration
+import java.time.Instant
+
+/**
+ * An aggregator for shadow battery metrics before they are reported.
+ */
+public class ShadowBatteryTableReaderImpl(
+    private val battery: ShadowBattery,
+    private val startTime: Duration = Duration.ofMillis(0),
+) : ShadowBatteryTableReader {
+    override fun copy(): ShadowBatteryTableReader {
+        val newTable =
+            ShadowBatteryTableReaderImpl(
+                battery,
+            )
+        newTable.setValues(this)
+
+        return newTable
+    }
+
+    override fun setValues(table: ShadowBatteryTableReader) {
+        _timestamp = table.timestamp
+        _timestampAbsolute = table.timestampAbsolute
+
+        _powerDraw = table.powerDraw
+        _batteryPowerDraw = table.batteryPowerDraw
+        _energyUsage = table.energyUsage
+        _batteryEnergyUsage = table.batteryEnergyUsage
+        _carbonEmission = table.carbonEmission
+        _chargeLevel = table.chargeLevel
+        _state = table.state
+    }
+
+    private var _timestamp = Instant.MIN
+    override val timestamp: Instant
+        get() = _timestamp
+
+    private var _timestampAbsolute = Instant.MIN
+    override val timestampAbsolute: Instant
+        get() = _timestampAbsolute
+
+    override val name: String
+        get() = battery.name
+
+    override val capacity: Double
+        get() = battery.capacity
+
+    override val chargeSpeed: Double
+        get() = battery.chargeSpeed
+
+    override val powerDraw: Double
+        get() = _powerDraw
+    private var _powerDraw = 0.0
+
+    override val batteryPowerDraw: Double
+        get() = _batteryPowerDraw
+    private var _batteryPowerDraw = 0.0
+
+    override val energyUsage: Double
+        get() = _energyUsage - previousEnergyUsage
+    private var _energyUsage = 0.0
+    private var previousEnergyUsage = 0.0
+
+    override val batteryEnergyUsage: Double
+        get() = _batteryEnergyUsage - previousBatteryEnergyUsage
+    private var _batteryEnergyUsage = 0.0
+    private var previousBatteryEnergyUsage = 0.0
+
+    override val carbonEmission: Double
+        get() = _carbonEmission - previousCarbonEmission
+    private var _carbonEmission = 0.0
+    private var previousCarbonEmission = 0.0
+
+    override val chargeLevel: Double
+        get() = _chargeLevel
+    private var _chargeLevel = 0.0
+
+    override val state: String
+        get() = _state
+    private var _state = "IDLE"
+
+    /**
+     * Record the next cycle.
+     */
+    override fun record(now: Instant) {
+        _timestamp = now
+        _timestampAbsolute = now + startTime
+
+        battery.updateCounters(now.toEpochMilli())
+        _powerDraw = battery.powerDraw
+        _batteryPowerDraw = battery.batteryPowerDraw
+        _energyUsage = battery.energyUsage
+        _batteryEnergyUsage = battery.batteryEnergyUsage
+        _carbonEmission = battery.carbonEmission
+        _chargeLevel = battery.chargeLevel
+        _state = battery.stateString
+    }
+
+    /**
+     * Finish the aggregation for this cycle.
+     */
+    override fun reset() {
+        previousEnergyUsage = _energyUsage
+        previousBatteryEnergyUsage = _batteryEnergyUsage
+        previousCarbonEmission = _carbonEmission
+
+        _powerDraw = 0.0
+        _batteryPowerDraw = 0.0
+        _energyUsage = 0.0
+        _batteryEnergyUsage = 0.0
+        _carbonEmission = 0.0
+        _chargeLevel = 0.0
+        _state = "IDLE"
+    }
+}
@@ -113,11 +113,25 @@ private fun ClusterJSONSpec.toClusterSpec(random: RandomGenerator): ClusterSpec
             capacity = it.capacity,
             chargeSpeed = it.chargeSpeed,
             carbonThreshold = it.carbonThreshold,
+            chargeLowerBound = it.chargeLowerBound,
+            chargeUpperBound = it.chargeUpperBound,
         )
     }
 
+    val shadowBatterySpecs =
+        shadowBatteries.map {
+            BatterySpec(
+                uid = UUID(random.nextLong(), clusterId.toLong()),
+                capacity = it.capacity,
+                chargeSpeed = it.chargeSpeed,
+                carbonThreshold = it.carbonThreshold,
+                chargeLowerBound = it.chargeLowerBound,
+                chargeUpperBound = it.chargeUpperBound,
+            )
+        }
+
     clusterId++
-    return ClusterSpec(this.name, hostSpecs, powerSourceSpec, batterySpec)
+    return ClusterSpec(this.name, hostSpecs, powerSourceSpec, batterySpec, shadowBatterySpecs)
 }
 
 /**
@@ -9,6 +9,8 @@ import java.util.UUID
  * @param capacity The maximum capacity of the battery in watt-hours (J).
  * @param chargeSpeed The maximum charging speed of the battery in watts (W).
  * @param carbonThreshold The carbon intensity threshold
+ * @param chargeLowerBound The fraction of the capacity below which the battery is not depleted further.
+ * @param chargeUpperBound The fraction of the capacity above which the battery is not charged further.
  * @param meta Additional metadata about the battery.
  */
 public data class BatterySpec(
@@ -16,5 +18,7 @@ public data class BatterySpec(
     val capacity: Double,
     val chargeSpeed: Double,
     val carbonThreshold: Double,
+    val chargeLowerBound: Double = 0.05,
+    val chargeUpperBound: Double = 0.95,
 )
 
@@ -44,6 +44,8 @@ public data class TopologySpec(
  * @param name The name of the cluster.
  * @param hosts List of the different hosts (nodes) available in this cluster
  * @param location Location of the cluster. This can impact the carbon intensity
+ * @param shadowBatteries Battery configurations that are evaluated on the power demand of the cluster without
+ *                        affecting the simulation
  */
 @Serializable
 public data class ClusterJSONSpec(
@@ -53,13 +55,16 @@ public data class ClusterJSONSpec(
     val battery: Battery? = null,
     val powerSource: PowerSourceJSONSpec = PowerSourceJSONSpec.DFLT,
     val location: String = "NL",
+    val shadowBatteries: List<Battery> = emptyList(),
 )
 
 @Serializable
 public data class Battery(
     val capacity: Double,
     val chargeSpeed: Double,
-    val carbonThreshold: Double
+    val carbonThreshold: Double,
+    val chargeLowerBound: Double = 0.05,
+    val chargeUpperBound: Double = 0.95,
 )
 
 /**
@@ -75,6 +75,7 @@ public fun getExperiment(experimentSpec: ExperimentSpec): List<Scenario> {
                 outputFolder = outputFolder,
                 runs = experimentSpec.runs,
                 initialSeed = experimentSpec.initialSeed,
+                engineParallelism = experimentSpec.engineParallelism,
                 computeExportConfig = scenarioSpec.computeExportConfig,
                 topologySpec = scenarioSpec.topology,
                 workloadSpec = scenarioSpec.workload,
@@ -42,6 +42,7 @@ import org.opendc.experiments.base.experiment.specs.WorkloadSpec
  * @property name The String representing the name of the scenario. It defaults to an empty string.
  * @property runs The Int representing the number of runs of the scenario. It defaults to 1.
  * @property initialSeed The Int representing the initial seed of the scenario. It defaults to 0.
+ * @property engineParallelism The number of clusters that are simulated at the same time within a run. It defaults to 1.
  * @property computeExportConfig configures which parquet columns are to be included in the output files.
  */
 public data class Scenario(
@@ -50,6 +51,7 @@ public data class Scenario(
     val outputFolder: String = "output",
     val runs: Int = 1,
     val initialSeed: Int = 0,
+    val engineParallelism: Int = 1,
     val computeExportConfig: ComputeExportConfig,
     val topologySpec: ScenarioTopologySpec,
     val workloadSpec: WorkloadSpec,
@@ -39,6 +39,7 @@ import java.util.UUID
  * @property outputFolder
  * @property initialSeed
  * @property runs
+ * @property engineParallelism the number of clusters that are simulated at the same time within a single run.
  * @property computeExportConfig configures which parquet columns are to
  * be included in the output files.
  */
@@ -50,6 +51,7 @@ public data class ExperimentSpec(
     val outputFolder: String = "output",
     val initialSeed: Int = 0,
     val runs: Int = 1,
+    val engineParallelism: Int = 1,
     val exportModels: Set<ExportModelSpec> = setOf(ExportModelSpec()),
     val computeExportConfig: ComputeExportConfig = ComputeExportConfig.ALL_COLUMNS,
     val maxNumFailures: Set<Int> = setOf(10),
@@ -61,6 +63,7 @@ public data class ExperimentSpec(
 ) {
     init {
         require(runs > 0) { "The number of runs should always be positive" }
+        require(engineParallelism > 0) { "The engine parallelism should always be positive" }
 
         // generate name if not provided
         // TODO: improve this
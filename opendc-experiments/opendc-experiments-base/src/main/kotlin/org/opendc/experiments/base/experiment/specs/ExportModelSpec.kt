@@ -28,10 +28,13 @@ import kotlinx.serialization.Serializable
  * specification describing how the results should be exported
  *
  * @property exportInterval The interval of exporting results in s. Should be higher than 0.0
+ * @property exportEngineStats A flag to write the statistics of the flow engines to `engineStats.json` next to the
+ * results and to emit them as JDK Flight Recorder events.
  */
 @Serializable
 public data class ExportModelSpec(
     val exportInterval: Long = 5 * 60,
+    val exportEngineStats: Boolean = false,
 ) {
     init {
         require(exportInterval > 0) { "The Export interval has to be higher than 0" }
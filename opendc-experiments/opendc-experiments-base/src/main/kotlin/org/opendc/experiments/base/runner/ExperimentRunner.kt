@@ -22,6 +22,7 @@
 
 package org.opendc.experiments.base.runner
 
+import org.opendc.compute.carbon.CarbonTraceLoader
 import org.opendc.experiments.base.experiment.Scenario
 import java.util.concurrent.ForkJoinPool
 
@@ -41,6 +42,9 @@ public fun runExperiment(
 
     setupOutputFolderStructure(experiment[0].outputFolder)
 
+    // The scenarios of an experiment often share their carbon traces, so they are only parsed once per experiment
+    val carbonTraceLoader = CarbonTraceLoader()
+
     for (scenario in experiment) {
         val pool = ForkJoinPool(parallelism)
         println(
@@ -51,6 +55,7 @@ public fun runExperiment(
         runScenario(
             scenario,
             pool,
+            carbonTraceLoader,
         )
     }
 }
@@ -24,11 +24,10 @@
 
 package org.opendc.experiments.base.runner
 
-import kotlinx.coroutines.coroutineScope
-import kotlinx.coroutines.delay
-import kotlinx.coroutines.launch
+import kotlinx.coroutines.suspendCancellableCoroutine
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.yield
+import org.opendc.common.Dispatcher
 import org.opendc.compute.api.TaskState
 import org.opendc.compute.failure.models.FailureModel
 import org.opendc.compute.simulator.TaskWatcher
@@ -40,7 +39,8 @@ import org.opendc.experiments.base.experiment.specs.createFailureModel
 import java.time.InstantSource
 import java.util.Random
 import kotlin.coroutines.coroutineContext
-import kotlin.math.max
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
 
 /**
  * A watcher that is locked and waits for a change in the task state to unlock
@@ -74,6 +74,9 @@ public class RunningTaskWatcher : TaskWatcher {
 /**
  * Helper method to replay the specified list of [Task] and suspend execution util all VMs have finished.
  *
+ * The trace is only copied and sorted if it is not already in order of submission time. See the overload that accepts
+ * a [Sequence] to replay a trace without materializing it.
+ *
  * @param clock The simulation clock.
  * @param trace The trace to simulate.
  * @param seed The seed to use for randomness.
@@ -86,6 +89,38 @@ public suspend fun ComputeService.replay(
     failureModelSpec: FailureModelSpec? = null,
     seed: Long = 0,
     submitImmediately: Boolean = false,
+) {
+    // Only sort the trace if it is not already in order of submission time
+    val sortedTrace =
+        if ((1 until trace.size).all { trace[it - 1].submissionTime <= trace[it].submissionTime }) {
+            trace
+        } else {
+            trace.sortedBy { it.submissionTime }
+        }
+
+    replay(clock, sortedTrace.asSequence(), failureModelSpec, seed, submitImmediately)
+}
+
+/**
+ * Helper method to replay the specified sequence of [Task] and suspend execution util all VMs have finished.
+ *
+ * The tasks are submitted by a [TaskReplayer], which pulls the tasks from the sequence in order of submission time and
+ * keeps a single dispatcher timer for the next submission. Hence, a lazy sequence is only consumed up to the next
+ * submission.
+ *
+ * @param clock The simulation clock.
+ * @param trace The trace to simulate, which must be in order of submission time.
+ * @param seed The seed to use for randomness.
+ * @param submitImmediately A flag to indicate that the tasks are scheduled immediately (so not at their start time).
+ * @param failureModelSpec A failure model to use for injecting failures.
+ * @throws IllegalArgumentException if the trace is not in order of submission time.
+ */
+public suspend fun ComputeService.replay(
+    clock: InstantSource,
+    trace: Sequence<Task>,
+    failureModelSpec: FailureModelSpec? = null,
+    seed: Long = 0,
+    submitImmediately: Boolean = false,
 ) {
     val client = newClient()
 
@@ -96,54 +131,20 @@ public suspend fun ComputeService.replay(
         }
 
     try {
-        coroutineScope {
-            // Start the fault injector
-            failureModel?.start()
-
-            var simulationOffset = Long.MIN_VALUE
-
-            for (entry in trace.sortedBy { it.submissionTime }) {
-                val now = clock.millis()
-                val start = entry.submissionTime.toEpochMilli()
-
-                // Set the simulationOffset based on the starting time of the first task
-                if (simulationOffset == Long.MIN_VALUE) {
-                    simulationOffset = start - now
-                }
+        // Start the fault injector
+        failureModel?.start()
 
-                // Delay the task based on the startTime given by the trace.
-                if (!submitImmediately) {
-                    delay(max(0, (start - now - simulationOffset)))
+        suspendCancellableCoroutine<Unit> { cont ->
+            val replayer =
+                TaskReplayer(dispatcher, client, trace.iterator(), submitImmediately) { cause ->
+                    if (cause == null) {
+                        cont.resume(Unit)
+                    } else {
+                        cont.resumeWithException(cause)
+                    }
                 }
-
-                val workload = entry.trace
-                val meta = mutableMapOf<String, Any>("workload" to workload)
-
-                launch {
-                    val task =
-                        client.newTask(
-                            entry.name,
-                            client.newFlavor(
-                                entry.name,
-                                entry.cpuCount,
-                                entry.memCapacity,
-                                if (entry.cpuCapacity > 0.0) mapOf("cpu-capacity" to entry.cpuCapacity) else emptyMap(),
-                            ),
-                            workload,
-                            meta,
-                        )
-
-                    val taskWatcher = RunningTaskWatcher()
-                    taskWatcher.lock()
-                    task.watch(taskWatcher)
-
-                    // Wait until the task is terminated
-                    taskWatcher.wait()
-
-                    // Stop the task after reaching the end-time of the virtual machine
-//                    task.delete()
-                }
-            }
+            cont.invokeOnCancellation { replayer.cancel() }
+            replayer.start()
         }
         yield()
     } finally {
@@ -151,3 +152,145 @@ public suspend fun ComputeService.replay(
         client.close()
     }
 }
+
+/**
+ * Submits the tasks of a trace to a [ComputeService] at their submission time.
+ *
+ * The replayer pulls the tasks from [cursor], which must yield them in order of submission time, and keeps a single
+ * dispatcher timer for the next submission. Completion is tracked with a counter of the tasks that are still running,
+ * so the memory used by the replayer scales with the number of tasks in flight rather than the size of the trace.
+ *
+ * @param dispatcher The dispatcher to schedule the submissions with.
+ * @param client The client to submit the tasks with.
+ * @param cursor The tasks to submit in order of submission time.
+ * @param submitImmediately A flag to indicate that the tasks are submitted immediately (so not at their start time).
+ * @param onComplete The callback to invoke when all tasks have been submitted and deleted, or with the cause of the
+ *                   failure when the trace is not in order of submission time.
+ */
+internal class TaskReplayer(
+    private val dispatcher: Dispatcher,
+    private val client: ComputeService.ComputeClient,
+    private val cursor: Iterator<Task>,
+    private val submitImmediately: Boolean,
+    private val onComplete: (Throwable?) -> Unit,
+) : TaskWatcher, Runnable {
+    private val clock = dispatcher.timeSource
+
+    /**
+     * The next task to submit, or `null` if all tasks have been submitted.
+     */
+    private var next: Task? = null
+
+    /**
+     * The offset between the submission times in the trace and the simulation clock.
+     */
+    private var simulationOffset = Long.MIN_VALUE
+
+    /**
+     * The submission time of the last task that was pulled from the trace.
+     */
+    private var lastSubmission = Long.MIN_VALUE
+
+    /**
+     * The number of submitted tasks that have not been deleted yet.
+     */
+    private var running = 0
+
+    private var isStopped = false
+
+    /**
+     * Start submitting the tasks of the trace.
+     */
+    fun start() {
+        next = if (cursor.hasNext()) cursor.next() else null
+        run()
+    }
+
+    /**
+     * Stop submitting tasks.
+     */
+    fun cancel() {
+        isStopped = true
+    }
+
+    override fun run() {
+        if (isStopped) {
+            return
+        }
+
+        val now = clock.millis()
+
+        while (true) {
+            val entry = next ?: break
+            val start = entry.submissionTime.toEpochMilli()
+
+            if (start < lastSubmission) {
+                isStopped = true
+                onComplete(IllegalArgumentException("Trace is not in order of submission time (task ${entry.name})"))
+                return
+            }
+            lastSubmission = start
+
+            // Set the simulationOffset based on the starting time of the first task
+            if (simulationOffset == Long.MIN_VALUE) {
+                simulationOffset = start - now
+            }
+
+            // Delay the task based on the startTime given by the trace.
+            val delay = start - now - simulationOffset
+            if (!submitImmediately && delay > 0) {
+                dispatcher.schedule(delay, this)
+                return
+            }
+
+            next = if (cursor.hasNext()) cursor.next() else null
+            submit(entry)
+        }
+
+        checkCompletion()
+    }
+
+    override fun onStateChanged(
+        task: ServiceTask,
+        newState: TaskState,
+    ) {
+        if (newState == TaskState.DELETED) {
+            running--
+            checkCompletion()
+        }
+    }
+
+    /**
+     * Submit the specified task to the compute service.
+     */
+    private fun submit(entry: Task) {
+        val workload = entry.trace
+        val meta = mutableMapOf<String, Any>("workload" to workload)
+
+        val task =
+            client.newTask(
+                entry.name,
+                client.newFlavor(
+                    entry.name,
+                    entry.cpuCount,
+                    entry.memCapacity,
+                    if (entry.cpuCapacity > 0.0) mapOf("cpu-capacity" to entry.cpuCapacity) else emptyMap(),
+                ),
+                workload,
+                meta,
+            )
+
+        running++
+        task.watch(this)
+    }
+
+    /**
+     * Invoke the completion callback once all tasks have been submitted and deleted.
+     */
+    private fun checkCompletion() {
+        if (next == null && running == 0 && !isStopped) {
+            isStopped = true
+            onComplete(null)
+        }
+    }
+}
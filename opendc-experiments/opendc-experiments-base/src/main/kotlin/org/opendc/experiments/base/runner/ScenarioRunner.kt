@@ -22,8 +22,13 @@
 
 package org.opendc.experiments.base.runner
 
+import kotlinx.serialization.json.addJsonObject
+import kotlinx.serialization.json.buildJsonObject
+import kotlinx.serialization.json.put
+import kotlinx.serialization.json.putJsonArray
 import me.tongfei.progressbar.ProgressBarBuilder
 import me.tongfei.progressbar.ProgressBarStyle
+import org.opendc.compute.carbon.CarbonTraceLoader
 import org.opendc.compute.simulator.provisioner.Provisioner
 import org.opendc.compute.simulator.provisioner.registerComputeMonitor
 import org.opendc.compute.simulator.provisioner.setupComputeService
@@ -35,35 +40,41 @@ import org.opendc.compute.topology.clusterTopology
 import org.opendc.compute.workload.ComputeWorkloadLoader
 import org.opendc.experiments.base.experiment.Scenario
 import org.opendc.experiments.base.experiment.specs.getWorkloadType
+import org.opendc.simulator.SimulationDispatcher
+import org.opendc.simulator.engine.FlowEngine
+import org.opendc.simulator.engine.FlowEngineGroup
 import org.opendc.simulator.kotlin.runSimulation
 import java.io.File
 import java.time.Duration
 import java.util.Random
 import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLongArray
 import java.util.stream.LongStream
 
 /**
  * Run scenario when a pool is available for parallel execution
  * The scenario is run multiple times based on the user input
  *
+ * The progress bar renders the simulated time of all runs, such that its estimated time remaining covers the whole
+ * scenario.
+ *
  * @param scenario The scenario to run
  * @param pool The pool on which to run the scenarios
+ * @param carbonTraceLoader The loader that caches the carbon traces, which the scenarios of an experiment may share.
  */
 public fun runScenario(
     scenario: Scenario,
     pool: ForkJoinPool,
+    carbonTraceLoader: CarbonTraceLoader = CarbonTraceLoader(),
 ) {
-    val pb =
-        ProgressBarBuilder().setInitialMax(scenario.runs.toLong()).setStyle(ProgressBarStyle.ASCII)
-            .setTaskName("Simulating...").build()
-
-    pool.submit {
-        LongStream.range(0, scenario.runs.toLong()).parallel().forEach {
-            runScenario(scenario, scenario.initialSeed + it)
-            pb.step()
-        }
-        pb.close()
-    }.join()
+    ScenarioProgressBar(scenario.runs).use { pb ->
+        pool.submit {
+            LongStream.range(0, scenario.runs.toLong()).parallel().forEach {
+                runScenario(scenario, scenario.initialSeed + it, pb, it.toInt(), carbonTraceLoader)
+            }
+        }.join()
+    }
 }
 
 /**
@@ -71,10 +82,31 @@ public fun runScenario(
  *
  * @param scenario The scenario to run
  * @param seed The starting seed of the random generator.
+ * @param showProgress A flag to render the progress of the simulated time and the estimated time remaining.
+ * @param carbonTraceLoader The loader that caches the carbon traces, which the scenarios of an experiment may share.
  */
 public fun runScenario(
     scenario: Scenario,
     seed: Long,
+    showProgress: Boolean = false,
+    carbonTraceLoader: CarbonTraceLoader = CarbonTraceLoader(),
+) {
+    if (showProgress) {
+        ScenarioProgressBar(1).use { pb -> runScenario(scenario, seed, pb, 0, carbonTraceLoader) }
+    } else {
+        runScenario(scenario, seed, null, 0, carbonTraceLoader)
+    }
+}
+
+/**
+ * Run a single scenario with a specific seed and report its progress as the specified run of [progress].
+ */
+private fun runScenario(
+    scenario: Scenario,
+    seed: Long,
+    progress: ScenarioProgressBar?,
+    run: Int,
+    carbonTraceLoader: CarbonTraceLoader,
 ): Unit =
     runSimulation {
         val serviceDomain = "compute.opendc.org"
@@ -103,7 +135,7 @@ public fun runScenario(
                     { createComputeScheduler(scenario.allocationPolicySpec.policyType, Random(it.seeder.nextLong())) },
                     maxNumFailures = scenario.maxNumFailures,
                 ),
-                setupHosts(serviceDomain, topology, startTimeLong),
+                setupHosts(serviceDomain, topology, startTimeLong, scenario.engineParallelism, carbonTraceLoader),
             )
 
             addExportModel(provisioner, serviceDomain, scenario, seed, startTime, scenario.id)
@@ -114,15 +146,110 @@ public fun runScenario(
             val monitor = provisioner.getMonitor()
             service.setMetricReader(monitor)
 
-            service.replay(
-                timeSource,
-                tasks,
-                failureModelSpec = scenario.failureModelSpec,
-                seed = seed,
-            )
+            // The replay starts the trace at the current time of the dispatcher
+            if (progress != null) {
+                val endTimeLong = tasks.maxOfOrNull { it.submissionTime.toEpochMilli() + it.duration }
+                if (endTimeLong != null) {
+                    progress.attach(dispatcher, run, endTimeLong - startTimeLong)
+                }
+            }
+
+            try {
+                service.replay(
+                    timeSource,
+                    tasks,
+                    failureModelSpec = scenario.failureModelSpec,
+                    seed = seed,
+                )
+            } finally {
+                progress?.detach(dispatcher, run)
+            }
+
+            if (scenario.exportModelSpec.exportEngineStats) {
+                saveEngineStats(provisioner, serviceDomain, scenario, seed, scenario.id)
+            }
         }
     }
 
+/**
+ * A progress bar that renders the fraction of the simulated time of the runs of a scenario. The runs report their
+ * progress from their own simulation thread through the progress listener of their [SimulationDispatcher].
+ *
+ * @param runs The number of runs of the scenario.
+ */
+private class ScenarioProgressBar(private val runs: Int) : AutoCloseable {
+    /**
+     * The progress of each run, in units of [SCALE].
+     */
+    private val fractions = AtomicLongArray(runs)
+
+    private val finished = AtomicInteger()
+
+    private val pb =
+        ProgressBarBuilder().setInitialMax(SCALE).setStyle(ProgressBarStyle.ASCII)
+            .setTaskName("Simulating...").build()
+
+    /**
+     * Follow the simulated time of the specified run until it reaches [duration].
+     *
+     * @param dispatcher The dispatcher of the run.
+     * @param run The index of the run.
+     * @param duration The virtual time that the workload of the run is expected to take (in milliseconds).
+     */
+    fun attach(
+        dispatcher: SimulationDispatcher,
+        run: Int,
+        duration: Long,
+    ) {
+        val origin = dispatcher.currentTime
+        dispatcher.setProgressListener({ progress ->
+            // Tasks may run beyond the end of the trace due to queueing, so stop short of completion until then
+            val elapsed = progress.currentTime - origin
+            update(run, minOf(elapsed * SCALE / maxOf(duration, 1), SCALE - 1))
+
+            if (runs == 1) {
+                pb.setExtraMessage("%.0f events/s".format(progress.tasksPerSecond))
+            }
+        }, Long.MAX_VALUE, 1000)
+    }
+
+    /**
+     * Stop following the specified run and mark it as finished.
+     */
+    fun detach(
+        dispatcher: SimulationDispatcher,
+        run: Int,
+    ) {
+        dispatcher.setProgressListener(null, 1, 1)
+        update(run, SCALE)
+
+        if (runs > 1) {
+            pb.setExtraMessage("${finished.incrementAndGet()}/$runs runs")
+        }
+    }
+
+    override fun close() {
+        pb.close()
+    }
+
+    private fun update(
+        run: Int,
+        value: Long,
+    ) {
+        fractions.set(run, value)
+
+        var total = 0L
+        for (i in 0 until runs) {
+            total += fractions.get(i)
+        }
+        pb.stepTo(total / runs)
+    }
+
+    private companion object {
+        const val SCALE = 1000L
+    }
+}
+
 /**
  * Saves the simulation results into a specific output folder received from the input.
  *
@@ -156,6 +283,57 @@ public fun addExportModel(
     )
 }
 
+/**
+ * Saves the statistics of the flow engines that simulated the hosts next to the simulation results and emits them as
+ * JDK Flight Recorder events.
+ *
+ * @param provisioner The provisioner used to setup and run the simulation.
+ * @param serviceDomain The domain of the compute service.
+ * @param scenario The scenario being run.
+ * @param seed The seed of the current run
+ * @param index The index of the scenario, which names the directory of its raw output.
+ */
+public fun saveEngineStats(
+    provisioner: Provisioner,
+    serviceDomain: String,
+    scenario: Scenario,
+    seed: Long,
+    index: Int,
+) {
+    val stats =
+        provisioner.registry.resolve(serviceDomain, FlowEngineGroup::class.java)?.stats
+            ?: provisioner.registry.resolve(serviceDomain, FlowEngine::class.java)?.stats
+            ?: return
+
+    stats.commitEvents()
+
+    val json =
+        buildJsonObject {
+            put("invocations", stats.invocations)
+            put("timestamps", stats.timestamps)
+            put("maxInvocationsPerTimestamp", stats.maxInvocationsPerTimestamp)
+            put("immediateUpdates", stats.immediateUpdates)
+            put("delayedUpdates", stats.delayedUpdates)
+            put("suppressedEnqueues", stats.suppressedEnqueues)
+            put("timerQueueHighWaterMark", stats.timerQueueHighWaterMark)
+            put("maxInvocationStackDepth", stats.maxInvocationStackDepth)
+            putJsonArray("nodeClasses") {
+                for (nodeClass in stats.nodeClasses) {
+                    addJsonObject {
+                        put("className", nodeClass.className)
+                        put("updates", nodeClass.updates)
+                        put("sampledUpdates", nodeClass.sampledUpdates)
+                        put("estimatedNanos", nodeClass.estimatedNanos())
+                    }
+                }
+            }
+        }
+
+    val file = File("${scenario.outputFolder}/raw-output/$index/seed=$seed/engineStats.json")
+    file.parentFile.mkdirs()
+    file.writeText(json.toString())
+}
+
 /**
  * Utility function, in case we want to delete the previous simulation results.
  * @param outputFolderPath The output folder to remove
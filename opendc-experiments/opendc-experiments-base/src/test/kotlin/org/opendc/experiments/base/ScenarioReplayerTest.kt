@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.experiments.base
+
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.yield
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.opendc.compute.simulator.provisioner.Provisioner
+import org.opendc.compute.simulator.provisioner.setupComputeService
+import org.opendc.compute.simulator.provisioner.setupHosts
+import org.opendc.compute.simulator.scheduler.ComputeScheduler
+import org.opendc.compute.simulator.scheduler.FilterScheduler
+import org.opendc.compute.simulator.scheduler.filters.ComputeFilter
+import org.opendc.compute.simulator.scheduler.filters.RamFilter
+import org.opendc.compute.simulator.scheduler.filters.VCpuFilter
+import org.opendc.compute.simulator.scheduler.weights.CoreRamWeigher
+import org.opendc.compute.simulator.service.ComputeService
+import org.opendc.compute.simulator.service.HostView
+import org.opendc.compute.simulator.service.ServiceTask
+import org.opendc.compute.topology.clusterTopology
+import org.opendc.compute.topology.specs.ClusterSpec
+import org.opendc.compute.workload.Task
+import org.opendc.experiments.base.runner.RunningTaskWatcher
+import org.opendc.experiments.base.runner.TaskReplayer
+import org.opendc.experiments.base.runner.replay
+import org.opendc.simulator.compute.workload.TraceFragment
+import org.opendc.simulator.compute.workload.TraceWorkload
+import org.opendc.simulator.kotlin.SimulationCoroutineScope
+import org.opendc.simulator.kotlin.runSimulation
+import java.time.Instant
+import java.time.InstantSource
+import java.util.UUID
+import kotlin.math.max
+
+/**
+ * Test suite for replaying traces through [replay] and the [TaskReplayer].
+ */
+class ScenarioReplayerTest {
+    private val serviceDomain = "compute.opendc.org"
+    private val minute = 60_000L
+
+    @Test
+    fun testEmptyTrace() =
+        withService { service ->
+            val causes = mutableListOf<Throwable?>()
+            TaskReplayer(dispatcher, service.newClient(), emptyList<Task>().iterator(), false) { causes += it }.start()
+            assertEquals(listOf<Throwable?>(null), causes)
+
+            service.replay(timeSource, emptyList())
+            assertEquals(0, service.schedulerStats.tasksTotal)
+        }
+
+    @Test
+    fun testCompletion() =
+        withService { service ->
+            val trace = listOf(createTask("a", 0), createTask("b", 10 * minute), createTask("c", 20 * minute))
+            val causes = mutableListOf<Throwable?>()
+            TaskReplayer(dispatcher, service.newClient(), trace.iterator(), false) { causes += it }.start()
+
+            // Only the first task is submitted at the start, the others at their submission time
+            assertEquals(1, service.schedulerStats.tasksTotal)
+
+            delay(15 * minute)
+            assertEquals(2, service.schedulerStats.tasksTotal)
+            assertTrue(causes.isEmpty())
+
+            // The last task finishes 25 minutes after the start of the trace
+            delay(15 * minute)
+            assertEquals(3, service.schedulerStats.tasksCompleted)
+            assertEquals(listOf<Throwable?>(null), causes)
+        }
+
+    @Test
+    fun testSubmitImmediately() =
+        withService { service ->
+            val trace = listOf(createTask("a", 0), createTask("b", 10 * minute), createTask("c", 20 * minute))
+            val causes = mutableListOf<Throwable?>()
+            TaskReplayer(dispatcher, service.newClient(), trace.iterator(), true) { causes += it }.start()
+
+            assertEquals(3, service.schedulerStats.tasksTotal)
+
+            delay(10 * minute)
+            assertEquals(3, service.schedulerStats.tasksCompleted)
+            assertEquals(listOf<Throwable?>(null), causes)
+        }
+
+    @Test
+    fun testCancellation() =
+        withService { service ->
+            val trace = listOf(createTask("a", 0), createTask("b", 10 * minute), createTask("c", 20 * minute))
+            val job = launch { service.replay(timeSource, trace) }
+
+            delay(5 * minute)
+            assertEquals(1, service.schedulerStats.tasksTotal)
+            job.cancel()
+
+            // No tasks are submitted after the replay is cancelled
+            delay(30 * minute)
+            assertTrue(job.isCancelled)
+            assertEquals(1, service.schedulerStats.tasksTotal)
+        }
+
+    @Test
+    fun testLazySequence() =
+        withService { service ->
+            var pulled = 0
+            val trace =
+                generateSequence(0) { it + 1 }
+                    .take(3)
+                    .map {
+                        pulled++
+                        createTask("task-$it", it * 10 * minute)
+                    }
+
+            val job = launch { service.replay(timeSource, trace) }
+
+            // The sequence is consumed up to the next submission
+            delay(5 * minute)
+            assertEquals(2, pulled)
+
+            job.join()
+            assertEquals(3, pulled)
+            assertEquals(3, service.schedulerStats.tasksCompleted)
+        }
+
+    @Test
+    fun testUnorderedSequence() =
+        withService { service ->
+            val trace = sequenceOf(createTask("a", 10 * minute), createTask("b", 0))
+            val result = runCatching { service.replay(timeSource, trace) }
+
+            assertTrue(result.exceptionOrNull() is IllegalArgumentException)
+            assertNull(result.getOrNull())
+        }
+
+    @Test
+    fun testEquivalentToCoroutineReplay() {
+        // Several tasks share a submission time, task f is listed out of order, and tasks d, e and g are submitted at
+        // the same instant as tasks a, b, c and f finish
+        val trace =
+            listOf(
+                createTask("a", 0, cpuCount = 4),
+                createTask("b", 0, cpuCount = 6),
+                createTask("c", 0, cpuCount = 2),
+                createTask("d", 5 * minute, cpuCount = 8),
+                createTask("e", 5 * minute),
+                createTask("f", 0, cpuCount = 8),
+                createTask("g", 5 * minute, cpuCount = 4),
+                createTask("h", 7 * minute, cpuCount = 2),
+                createTask("i", 7 * minute, cpuCount = 8),
+            )
+
+        // Parse the topology once, so the hosts have the same identifiers in both runs
+        val topology = createTopology("multi")
+
+        val expected = recordPlacements(topology) { service -> service.replayWithCoroutines(timeSource, trace) }
+        val actual = recordPlacements(topology) { service -> service.replay(timeSource, trace) }
+
+        assertEquals(listOf("a", "b", "c", "f", "d", "e", "g", "h", "i"), expected.map { it.name }.distinct())
+        assertTrue(expected.mapNotNull { it.host }.distinct().size > 1)
+        assertEquals(expected, actual)
+    }
+
+    /**
+     * A placement decision of the scheduler, in the order in which the compute service asked for it.
+     */
+    private data class Placement(val name: String, val submittedAt: Long, val host: UUID?)
+
+    /**
+     * A [ComputeScheduler] that records the placement decisions of [delegate].
+     */
+    private class RecordingScheduler(
+        private val delegate: ComputeScheduler,
+        private val placements: MutableList<Placement>,
+    ) : ComputeScheduler by delegate {
+        override fun select(task: ServiceTask): HostView? {
+            val host = delegate.select(task)
+            placements += Placement(task.name, task.launchedAt.toEpochMilli(), host?.host?.getUid())
+            return host
+        }
+    }
+
+    /**
+     * Replay a trace with [replay] and return the placement decisions of the scheduler.
+     */
+    private fun recordPlacements(
+        topology: List<ClusterSpec>,
+        replay: suspend SimulationCoroutineScope.(ComputeService) -> Unit,
+    ): List<Placement> {
+        val placements = mutableListOf<Placement>()
+        withService(topology, { RecordingScheduler(createScheduler(), placements) }) { service ->
+            replay(service)
+            assertEquals(service.schedulerStats.tasksTotal, service.schedulerStats.tasksCompleted)
+        }
+        return placements
+    }
+
+    /**
+     * Run [block] against a compute service with the specified [topology], which defaults to a single host.
+     */
+    private fun withService(
+        topology: List<ClusterSpec> = createTopology("single"),
+        scheduler: () -> ComputeScheduler = { createScheduler() },
+        block: suspend SimulationCoroutineScope.(ComputeService) -> Unit,
+    ) =
+        runSimulation {
+            Provisioner(dispatcher, 0).use { provisioner ->
+                provisioner.runSteps(
+                    setupComputeService(serviceDomain, { scheduler() }),
+                    setupHosts(serviceDomain, topology),
+                )
+
+                val service = provisioner.registry.resolve(serviceDomain, ComputeService::class.java)!!
+                block(service)
+            }
+        }
+
+    /**
+     * Create a task that runs at full utilization of [cpuCount] cores for five minutes.
+     */
+    private fun createTask(
+        name: String,
+        submissionTime: Long,
+        cpuCount: Int = 1,
+    ): Task {
+        val fragments = arrayListOf(TraceFragment(5 * minute, 1000.0 * cpuCount, cpuCount))
+        return Task(
+            UUID(0, submissionTime),
+            name,
+            cpuCount,
+            1000.0,
+            1024,
+            5 * minute * 1000.0,
+            Instant.ofEpochMilli(submissionTime),
+            5 * minute,
+            TraceWorkload(fragments, 0, 0, 0.0),
+        )
+    }
+
+    private fun createScheduler(): FilterScheduler =
+        FilterScheduler(
+            filters = listOf(ComputeFilter(), VCpuFilter(16.0), RamFilter(1.0)),
+            weighers = listOf(CoreRamWeigher(multiplier = 1.0)),
+        )
+
+    private fun createTopology(name: String): List<ClusterSpec> {
+        val stream = checkNotNull(object {}.javaClass.getResourceAsStream("/topologies/$name.json"))
+        return stream.use { clusterTopology(stream) }
+    }
+
+    /**
+     * The coroutine-per-task replayer that [TaskReplayer] replaces, which serves as the reference for the submission
+     * order and placement of the tasks.
+     */
+    private suspend fun ComputeService.replayWithCoroutines(
+        clock: InstantSource,
+        trace: List<Task>,
+    ) {
+        val client = newClient()
+
+        try {
+            coroutineScope {
+                var simulationOffset = Long.MIN_VALUE
+
+                for (entry in trace.sortedBy { it.submissionTime }) {
+                    val now = clock.millis()
+                    val start = entry.submissionTime.toEpochMilli()
+
+                    // Set the simulationOffset based on the starting time of the first task
+                    if (simulationOffset == Long.MIN_VALUE) {
+                        simulationOffset = start - now
+                    }
+
+                    // Delay the task based on the startTime given by the trace.
+                    delay(max(0, (start - now - simulationOffset)))
+
+                    val workload = entry.trace
+                    val meta = mutableMapOf<String, Any>("workload" to workload)
+                    val flavorMeta =
+                        if (entry.cpuCapacity > 0.0) mapOf("cpu-capacity" to entry.cpuCapacity) else emptyMap()
+
+                    launch {
+                        val task =
+                            client.newTask(
+                                entry.name,
+                                client.newFlavor(
+                                    entry.name,
+                                    entry.cpuCount,
+                                    entry.memCapacity,
+                                    flavorMeta,
+                                ),
+                                workload,
+                                meta,
+                            )
+
+                        val taskWatcher = RunningTaskWatcher()
+                        taskWatcher.lock()
+                        task.watch(taskWatcher)
+
+                        // Wait until the task is terminated
+                        taskWatcher.wait()
+                    }
+                }
+            }
+            yield()
+        } finally {
+            client.close()
+        }
+    }
+}
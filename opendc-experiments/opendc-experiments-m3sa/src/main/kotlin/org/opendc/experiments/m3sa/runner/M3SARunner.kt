@@ -24,6 +24,7 @@
 
 package org.opendc.experiments.m3sa.runner
 
+import org.opendc.compute.carbon.CarbonTraceLoader
 import org.opendc.experiments.base.experiment.Scenario
 import org.opendc.experiments.base.runner.runScenario
 import org.opendc.experiments.base.runner.setupOutputFolderStructure
@@ -45,6 +46,9 @@ public fun runExperiment(
 
     setupOutputFolderStructure(experiment[0].outputFolder)
 
+    // The scenarios of an experiment often share their carbon traces, so they are only parsed once per experiment
+    val carbonTraceLoader = CarbonTraceLoader()
+
     for (scenario in experiment) {
         val pool = ForkJoinPool(parallelism)
         println(
@@ -55,6 +59,7 @@ public fun runExperiment(
         runScenario(
             scenario,
             pool,
+            carbonTraceLoader,
         )
     }
 }
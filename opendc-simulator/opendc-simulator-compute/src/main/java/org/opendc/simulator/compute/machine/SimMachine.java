@@ -33,6 +33,7 @@ import org.opendc.simulator.compute.power.SimPsu;
 import org.opendc.simulator.compute.workload.SimWorkload;
 import org.opendc.simulator.compute.workload.Workload;
 import org.opendc.simulator.engine.FlowGraph;
+import org.opendc.simulator.engine.FlowSupplier;
 
 /**
  * A machine that is able to execute {@link SimWorkload} objects.
@@ -115,7 +116,7 @@ public class SimMachine {
             FlowGraph graph,
             MachineModel machineModel,
             CpuPowerModel cpuPowerModel,
-            Multiplexer powerMux,
+            FlowSupplier powerMux,
             Consumer<Exception> completion) {
         this.graph = graph;
         this.machineModel = machineModel;
@@ -158,7 +159,8 @@ public class SimMachine {
 
         this.memory = null;
 
-        this.completion.accept(cause);
+        final Consumer<Exception> completion = this.completion;
+        this.graph.getEngine().runCallback(() -> completion.accept(cause));
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -122,7 +122,9 @@ public class VirtualMachine extends FlowNode implements FlowConsumer, FlowSuppli
         this.activeWorkload = null;
         this.performanceCounters = null;
 
-        this.completion.accept(cause);
+        // The completion leaves the flow network, so it may need to wait until the engine has finished
+        final Consumer<Exception> completion = this.completion;
+        this.parentGraph.getEngine().runCallback(() -> completion.accept(cause));
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
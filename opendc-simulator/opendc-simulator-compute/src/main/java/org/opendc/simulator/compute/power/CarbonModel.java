@@ -22,45 +22,87 @@
 
 package org.opendc.simulator.compute.power;
 
-import java.util.List;
+import java.util.ArrayList;
 import org.opendc.simulator.engine.FlowGraph;
 import org.opendc.simulator.engine.FlowNode;
 
 /**
- * CarbonModel used to provide the Carbon Intensity of a {@link SimPowerSource}
- * A CarbonModel is based on a list of {@link CarbonFragment} that define the carbon intensity at specific time frames.
+ * CarbonModel used to provide the Carbon Intensity of a {@link CarbonTimeline} to its subscribers.
+ * <p>
+ * A flow graph contains a single CarbonModel per carbon timeline, which is shared by all {@link CarbonReceiver}s that
+ * subscribe to the timeline via {@link #subscribe(FlowGraph, CarbonTimeline, long, CarbonReceiver)}. Hence, the number
+ * of carbon timers depends on the number of distinct carbon traces instead of the number of power sources.
  */
 public class CarbonModel extends FlowNode {
+    /**
+     * The key under which a model is shared in its graph.
+     */
+    private record Key(CarbonTimeline timeline, long startTime) {}
 
-    private SimPowerSource powerSource;
+    private final ArrayList<CarbonReceiver> receivers = new ArrayList<>();
 
     private long startTime = 0L; // The absolute timestamp on which the workload started
 
-    private List<CarbonFragment> fragments;
-    private CarbonFragment current_fragment;
+    private final CarbonTimeline timeline;
 
-    private int fragment_index;
+    private int segment_index;
 
     /**
      * Construct a CarbonModel
      *
      * @param parentGraph The active FlowGraph which should be used to make the new FlowNode
-     * @param powerSource The Power Source which should be updated with the carbon intensity
-     * @param carbonFragments A list of Carbon Fragments defining the carbon intensity at different time frames
+     * @param carbonTimeline The timeline defining the carbon intensity at different time frames, which may be shared
+     *                       with other models
      * @param startTime The start time of the simulation. This is used to go from relative time (used by the clock)
-     *                  to absolute time (used by carbon fragments).
+     *                  to absolute time (used by the carbon timeline).
      */
-    public CarbonModel(
-        FlowGraph parentGraph, SimPowerSource powerSource, List<CarbonFragment> carbonFragments, long startTime) {
+    public CarbonModel(FlowGraph parentGraph, CarbonTimeline carbonTimeline, long startTime) {
         super(parentGraph);
 
-        this.powerSource = powerSource;
         this.startTime = startTime;
-        this.fragments = carbonFragments;
+        this.timeline = carbonTimeline;
+
+        this.segment_index = timeline.indexOf(getAbsoluteTime(clock.millis()));
+    }
+
+    /**
+     * Subscribe the specified receiver to the CarbonModel of the carbon timeline in the specified graph, creating
+     * the model if the graph does not contain one yet.
+     * <p>
+     * The receiver is immediately notified of the current carbon intensity.
+     *
+     * @return the CarbonModel to which the receiver is subscribed
+     */
+    public static CarbonModel subscribe(
+        FlowGraph graph, CarbonTimeline carbonTimeline, long startTime, CarbonReceiver receiver) {
+        CarbonModel model = graph.getSharedNode(
+            new Key(carbonTimeline, startTime), g -> new CarbonModel(g, carbonTimeline, startTime));
+        model.addReceiver(receiver);
+        return model;
+    }
+
+    /**
+     * Add the specified receiver to this model and notify it of the current carbon intensity.
+     */
+    public void addReceiver(CarbonReceiver receiver) {
+        receivers.add(receiver);
+        receiver.handleCarbonIntensity(timeline.getCarbonIntensity(segment_index));
+    }
+
+    /**
+     * Remove the specified receiver from this model, which closes the model once it has no receivers left.
+     */
+    public void removeReceiver(CarbonReceiver receiver) {
+        if (receivers.remove(receiver) && receivers.isEmpty()) {
+            close();
+        }
+    }
 
-        this.fragment_index = 0;
-        this.current_fragment = this.fragments.get(this.fragment_index);
-        this.pushCarbonIntensity(this.current_fragment.getCarbonIntensity());
+    /**
+     * @return the number of receivers subscribed to this model
+     */
+    public int getReceiverCount() {
+        return receivers.size();
     }
 
     public void close() {
@@ -81,39 +123,30 @@ public class CarbonModel extends FlowNode {
         return time - startTime;
     }
 
-    /**
-     * Traverse the fragments to find the fragment that matches the given absoluteTime
-     */
-    private void findCorrectFragment(long absoluteTime) {
-
-        // Traverse to the previous fragment, until you reach the correct fragment
-        while (absoluteTime < this.current_fragment.getStartTime()) {
-            this.current_fragment = fragments.get(--this.fragment_index);
-        }
-
-        // Traverse to the next fragment, until you reach the correct fragment
-        while (absoluteTime >= this.current_fragment.getEndTime()) {
-            this.current_fragment = fragments.get(++this.fragment_index);
-        }
-    }
-
     @Override
     public long onUpdate(long now) {
         long absolute_time = getAbsoluteTime(now);
 
-        // Check if the current fragment is still the correct fragment,
-        // Otherwise, find the correct fragment.
-        if ((absolute_time < current_fragment.getStartTime()) || (absolute_time >= current_fragment.getEndTime())) {
-            this.findCorrectFragment(absolute_time);
+        // The previous segment serves as cursor, such that moving to the next segment takes constant time
+        int index = timeline.indexOf(absolute_time, segment_index);
+        if (index != segment_index) {
+            segment_index = index;
 
-            pushCarbonIntensity(current_fragment.getCarbonIntensity());
+            pushCarbonIntensity(timeline.getCarbonIntensity(index));
         }
 
-        // Update again at the end of this fragment
-        return getRelativeTime(current_fragment.getEndTime());
+        // Update again at the end of this segment
+        long endTime = timeline.getEndTime(index);
+        if (endTime == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return getRelativeTime(endTime);
     }
 
     private void pushCarbonIntensity(double carbonIntensity) {
-        this.powerSource.updateCarbonIntensity(carbonIntensity);
+        final ArrayList<CarbonReceiver> receivers = this.receivers;
+        for (int i = 0; i < receivers.size(); i++) {
+            receivers.get(i).handleCarbonIntensity(carbonIntensity);
+        }
     }
 }
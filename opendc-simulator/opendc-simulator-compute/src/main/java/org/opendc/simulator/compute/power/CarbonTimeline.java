@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.compute.power;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable timeline of the carbon intensity of a power source, stored as parallel arrays of start times and
+ * carbon intensities.
+ * <p>
+ * The timeline consists of contiguous segments, where every segment lasts until the start of the next segment. The
+ * first segment also covers all moments before its start and the last segment lasts indefinitely. A timeline does not
+ * hold any simulation state, so a single instance can be shared by all power sources (and simulations) that use the
+ * same carbon trace.
+ * <p>
+ * The timeline also stores the prefix integral of the carbon intensity over time, such that the carbon emission of a
+ * constant power draw over an arbitrary interval can be computed without visiting the segments in between.
+ */
+public final class CarbonTimeline {
+    private final long[] startTimes;
+    private final double[] carbonIntensities;
+
+    /**
+     * The integral of the carbon intensity from the start of the second segment up to the start of each segment (in
+     * gCO2/kWh * ms). The first segment extends indefinitely into the past, so the origin lies at its end instead.
+     */
+    private final double[] prefixIntegrals;
+
+    /**
+     * Construct a {@link CarbonTimeline} from the specified arrays, which are not copied.
+     *
+     * @param startTimes The absolute start time of each segment (in epoch millis), in ascending order.
+     * @param carbonIntensities The carbon intensity of each segment (in gCO2/kWh).
+     */
+    public CarbonTimeline(long[] startTimes, double[] carbonIntensities) {
+        if (startTimes.length != carbonIntensities.length) {
+            throw new IllegalArgumentException("Start times and carbon intensities differ in length");
+        }
+        if (startTimes.length == 0) {
+            throw new IllegalArgumentException("Carbon timeline must contain at least one segment");
+        }
+
+        for (int i = 1; i < startTimes.length; i++) {
+            if (startTimes[i] < startTimes[i - 1]) {
+                throw new IllegalArgumentException("Start times of carbon timeline must be in ascending order");
+            }
+        }
+
+        this.startTimes = startTimes;
+        this.carbonIntensities = carbonIntensities;
+
+        final int n = startTimes.length;
+        this.prefixIntegrals = new double[n];
+        for (int i = 1; i + 1 < n; i++) {
+            prefixIntegrals[i + 1] = prefixIntegrals[i] + carbonIntensities[i] * (startTimes[i + 1] - startTimes[i]);
+        }
+    }
+
+    /**
+     * Construct a {@link CarbonTimeline} from the specified list of {@link CarbonFragment}s, ordered by start time.
+     * <p>
+     * The end times of the fragments are ignored: every fragment lasts until the start of the next fragment.
+     */
+    public static CarbonTimeline of(List<CarbonFragment> fragments) {
+        final int n = fragments.size();
+        long[] startTimes = new long[n];
+        double[] carbonIntensities = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            CarbonFragment fragment = fragments.get(i);
+            startTimes[i] = fragment.getStartTime();
+            carbonIntensities[i] = fragment.getCarbonIntensity();
+        }
+
+        return new CarbonTimeline(startTimes, carbonIntensities);
+    }
+
+    /**
+     * @return the number of segments in the timeline
+     */
+    public int size() {
+        return startTimes.length;
+    }
+
+    /**
+     * @return the absolute start time of the specified segment (in epoch millis)
+     */
+    public long getStartTime(int index) {
+        return startTimes[index];
+    }
+
+    /**
+     * @return the absolute end time of the specified segment (in epoch millis), or {@link Long#MAX_VALUE} for the
+     *     last segment
+     */
+    public long getEndTime(int index) {
+        return index + 1 < startTimes.length ? startTimes[index + 1] : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return the carbon intensity of the specified segment (in gCO2/kWh)
+     */
+    public double getCarbonIntensity(int index) {
+        return carbonIntensities[index];
+    }
+
+    /**
+     * @return a copy of the absolute start times of the segments (in epoch millis)
+     */
+    public long[] getStartTimes() {
+        return startTimes.clone();
+    }
+
+    /**
+     * @return a copy of the carbon intensities of the segments (in gCO2/kWh)
+     */
+    public double[] getCarbonIntensities() {
+        return carbonIntensities.clone();
+    }
+
+    /**
+     * Return the index of the segment that contains the specified absolute timestamp, or the first segment if the
+     * timestamp precedes the timeline.
+     */
+    public int indexOf(long time) {
+        int index = Arrays.binarySearch(startTimes, time);
+        if (index < 0) {
+            return Math.max(-index - 2, 0); // the segment before the insertion point
+        }
+
+        // Skip empty segments that start at the same moment
+        while (index + 1 < startTimes.length && startTimes[index + 1] == time) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Return the index of the segment that contains the specified absolute timestamp, starting the search at the
+     * segment with index <code>hint</code>.
+     * <p>
+     * Callers that move through time can pass the previously returned index as cursor, in which case the lookup takes
+     * constant time when the timestamp lies in the same or the next segment.
+     */
+    public int indexOf(long time, int hint) {
+        final long[] startTimes = this.startTimes;
+        final int n = startTimes.length;
+
+        if (hint >= 0 && hint < n && (hint == 0 || time >= startTimes[hint])) {
+            if (hint + 1 == n || time < startTimes[hint + 1]) {
+                return hint;
+            } else if (hint + 2 == n || time < startTimes[hint + 2]) {
+                return hint + 1;
+            }
+        }
+
+        return indexOf(time);
+    }
+
+    /**
+     * @return the carbon intensity (in gCO2/kWh) at the specified absolute timestamp
+     */
+    public double getCarbonIntensityAt(long time) {
+        return carbonIntensities[indexOf(time)];
+    }
+
+    /**
+     * @return the first absolute timestamp after <code>time</code> at which the carbon intensity may change, or
+     *     {@link Long#MAX_VALUE} if it remains constant
+     */
+    public long getNextChange(long time) {
+        return getEndTime(indexOf(time));
+    }
+
+    /**
+     * Return the integral of the carbon intensity up to the specified absolute timestamp (in gCO2/kWh * ms), relative
+     * to a fixed origin. The difference between two integrals is the integral of the carbon intensity over the interval
+     * in between.
+     */
+    public double getIntegral(long time) {
+        return getIntegral(time, indexOf(time));
+    }
+
+    /**
+     * Return the integral of the carbon intensity up to the specified absolute timestamp (in gCO2/kWh * ms), where
+     * <code>index</code> is the segment that contains the timestamp (see {@link #indexOf(long, int)}). This lookup
+     * takes constant time.
+     */
+    public double getIntegral(long time, int index) {
+        if (index == 0) {
+            long origin = startTimes.length > 1 ? startTimes[1] : 0L;
+            return carbonIntensities[0] * (double) (time - origin);
+        }
+
+        return prefixIntegrals[index] + carbonIntensities[index] * (double) (time - startTimes[index]);
+    }
+
+    /**
+     * Compute the carbon emission of a constant power draw over the specified interval.
+     *
+     * @param power The power draw (in W).
+     * @param from The absolute start of the interval (in epoch millis).
+     * @param to The absolute end of the interval (in epoch millis).
+     * @return the carbon emission (in gCO2).
+     */
+    public double getCarbonEmission(double power, long from, long to) {
+        return power * (getIntegral(to) - getIntegral(from)) / 3.6e9;
+    }
+
+    /**
+     * Convert this timeline into a list of {@link CarbonFragment}s.
+     */
+    public List<CarbonFragment> toFragments() {
+        final int n = startTimes.length;
+        CarbonFragment[] fragments = new CarbonFragment[n];
+
+        for (int i = 0; i < n; i++) {
+            fragments[i] = new CarbonFragment(startTimes[i], getEndTime(i), carbonIntensities[i]);
+        }
+
+        return Arrays.asList(fragments);
+    }
+}
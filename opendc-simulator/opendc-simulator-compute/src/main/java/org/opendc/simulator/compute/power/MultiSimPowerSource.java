@@ -4,8 +4,6 @@ import org.opendc.simulator.compute.power.battery.SimBattery;
 import org.opendc.simulator.engine.FlowEdge;
 import org.opendc.simulator.engine.FlowGraph;
 
-import java.util.List;
-
 /**
  * Behaves like a SimPowerSource but also supplies power to a Battery
  */
@@ -16,10 +14,14 @@ public class MultiSimPowerSource extends SimPowerSource {
     private double batteryPowerDemand = 0.0f;
     private double batteryPowerSupplied = 0.0f;
     private double batteryEnergyUsage = 0.0f;
+    private double batteryCarbonIntegral = 0.0; // the integral of the carbon intensity up to the last battery update
 
-    public MultiSimPowerSource(FlowGraph graph, double max_capacity, List<CarbonFragment> carbonFragments, long startTime) {
-        super(graph, max_capacity, carbonFragments, startTime);
+    public MultiSimPowerSource(FlowGraph graph, double max_capacity, CarbonTimeline carbonTimeline, long startTime) {
+        super(graph, max_capacity, carbonTimeline, startTime);
         lastBatteryUpdate = this.clock.millis();
+        if (carbonTimeline != null) {
+            batteryCarbonIntegral = getCarbonIntegral(lastBatteryUpdate);
+        }
     }
 
     public double getAdapterPowerDemand() {
@@ -64,6 +66,16 @@ public class MultiSimPowerSource extends SimPowerSource {
         return this.batteryEnergyUsage;
     }
 
+    /**
+     * @return the cumulated carbon emission of the adapter and the battery (in gCO2) at the specified timestamp,
+     * without updating the counters of the power source
+     */
+    @Override
+    public double getCarbonEmission(long now) {
+        return super.getCarbonEmission(now)
+                + computeCarbonEmission(batteryPowerSupplied, lastBatteryUpdate, batteryCarbonIntegral, now);
+    }
+
     /**
      * Supply power to the adapter and the battery
      * @param now The virtual timestamp in milliseconds after epoch at which the update is occurring.
@@ -106,7 +118,15 @@ public class MultiSimPowerSource extends SimPowerSource {
         if (duration > 0) {
             double batteryEnergyUsage = (this.batteryPowerSupplied * duration * 0.001);
             this.batteryEnergyUsage += batteryEnergyUsage;
-            this.totalCarbonEmission += this.carbonIntensity * (batteryEnergyUsage / 3600000.0);
+
+            if (hasCarbonTimeline()) {
+                double carbonIntegral = getCarbonIntegral(now);
+                this.totalCarbonEmission +=
+                        this.batteryPowerSupplied * (carbonIntegral - this.batteryCarbonIntegral) / 3.6e9;
+                this.batteryCarbonIntegral = carbonIntegral;
+            } else {
+                this.totalCarbonEmission += this.carbonIntensity * (batteryEnergyUsage / 3600000.0);
+            }
         }
     }
 
@@ -22,7 +22,6 @@
 
 package org.opendc.simulator.compute.power;
 
-import java.util.List;
 import org.opendc.simulator.compute.cpu.SimCpu;
 import org.opendc.simulator.engine.FlowEdge;
 import org.opendc.simulator.engine.FlowGraph;
@@ -42,7 +41,15 @@ public class SimPowerSource extends FlowNode implements FlowSupplier {
     protected double carbonIntensity = 0.0f;
     protected double totalCarbonEmission = 0.0f;
 
-    private CarbonModel carbonModel = null;
+    /**
+     * The carbon intensity of the power source, or <code>null</code> if the carbon intensity is pushed through
+     * {@link #updateCarbonIntensity(double)}.
+     */
+    private final CarbonTimeline carbonTimeline;
+
+    private final long startTime; // The absolute timestamp on which the workload started
+    private int carbonSegment = 0; // The segment of the carbon timeline that contains the last lookup
+    private double carbonIntegral = 0.0; // The integral of the carbon intensity up to the last update
     private FlowEdge muxEdge;
 
     private double capacity = Long.MAX_VALUE;
@@ -77,7 +84,14 @@ public class SimPowerSource extends FlowNode implements FlowSupplier {
     }
 
     public double getCarbonIntensity() {
-        return this.carbonIntensity;
+        CarbonTimeline timeline = this.carbonTimeline;
+        if (timeline == null) {
+            return this.carbonIntensity;
+        }
+
+        int segment = timeline.indexOf(clock.millis() + startTime, carbonSegment);
+        this.carbonSegment = segment;
+        return timeline.getCarbonIntensity(segment);
     }
 
     /**
@@ -91,6 +105,14 @@ public class SimPowerSource extends FlowNode implements FlowSupplier {
         return this.totalCarbonEmission;
     }
 
+    /**
+     * Return the cumulated carbon emission (in gCO2) at the specified timestamp, extrapolated from the last update at
+     * the current power draw, without updating the counters of the power source.
+     */
+    public double getCarbonEmission(long now) {
+        return this.totalCarbonEmission + computeCarbonEmission(this.powerSupplied, lastUpdate, carbonIntegral, now);
+    }
+
     @Override
     public double getCapacity() {
         return this.capacity;
@@ -100,23 +122,20 @@ public class SimPowerSource extends FlowNode implements FlowSupplier {
     // Constructors
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
-    public SimPowerSource(FlowGraph graph, double max_capacity, List<CarbonFragment> carbonFragments, long startTime) {
+    public SimPowerSource(FlowGraph graph, double max_capacity, CarbonTimeline carbonTimeline, long startTime) {
         super(graph);
 
         this.capacity = max_capacity;
+        this.carbonTimeline = carbonTimeline;
+        this.startTime = startTime;
 
-        if (carbonFragments != null) {
-            this.carbonModel = new CarbonModel(graph, this, carbonFragments, startTime);
-        }
         lastUpdate = this.clock.millis();
+        if (carbonTimeline != null) {
+            carbonIntegral = getCarbonIntegral(lastUpdate);
+        }
     }
 
     public void close() {
-        if (this.carbonModel != null) {
-            this.carbonModel.close();
-            this.carbonModel = null;
-        }
-
         this.closeNode();
     }
 
@@ -146,6 +165,10 @@ public class SimPowerSource extends FlowNode implements FlowSupplier {
 
     /**
      * Calculate the energy usage up until <code>now</code>.
+     * <p>
+     * The power draw is constant since the last update, so the carbon emission follows from the integral of the carbon
+     * intensity over that interval. Hence, the power source does not need to be updated when the carbon intensity
+     * changes.
      */
     public void updateCounters(long now) {
         long lastUpdate = this.lastUpdate;
@@ -157,8 +180,53 @@ public class SimPowerSource extends FlowNode implements FlowSupplier {
 
             // Compute the energy usage of the machine
             this.totalEnergyUsage += energyUsage;
-            this.totalCarbonEmission += this.carbonIntensity * (energyUsage / 3600000.0);
+
+            if (carbonTimeline != null) {
+                double carbonIntegral = getCarbonIntegral(now);
+                this.totalCarbonEmission += this.powerSupplied * (carbonIntegral - this.carbonIntegral) / 3.6e9;
+                this.carbonIntegral = carbonIntegral;
+            } else {
+                this.totalCarbonEmission += this.carbonIntensity * (energyUsage / 3600000.0);
+            }
+        }
+    }
+
+    /**
+     * Compute the carbon emission (in gCO2) of drawing the specified power between <code>from</code> and
+     * <code>now</code>, where <code>integral</code> is the integral of the carbon intensity up to <code>from</code>.
+     */
+    protected double computeCarbonEmission(double power, long from, double integral, long now) {
+        long duration = now - from;
+        if (duration <= 0) {
+            return 0.0;
+        }
+
+        if (carbonTimeline != null) {
+            return power * (getCarbonIntegral(now) - integral) / 3.6e9;
         }
+        return this.carbonIntensity * ((power * duration * 0.001) / 3600000.0);
+    }
+
+    /**
+     * Return the integral of the carbon intensity up to the specified (relative) timestamp, which can only be called
+     * if the power source has a carbon timeline.
+     *
+     * @see CarbonTimeline#getIntegral(long, int)
+     */
+    protected double getCarbonIntegral(long now) {
+        final CarbonTimeline timeline = this.carbonTimeline;
+        long time = now + startTime;
+
+        int segment = timeline.indexOf(time, carbonSegment);
+        this.carbonSegment = segment;
+        return timeline.getIntegral(time, segment);
+    }
+
+    /**
+     * @return <code>true</code> if the carbon intensity of this power source follows a {@link CarbonTimeline}
+     */
+    protected boolean hasCarbonTimeline() {
+        return carbonTimeline != null;
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -187,7 +255,9 @@ public class SimPowerSource extends FlowNode implements FlowSupplier {
         this.muxEdge = null;
     }
 
-    // Update the carbon intensity of the power source
+    /**
+     * Update the carbon intensity of a power source without a {@link CarbonTimeline}.
+     */
     public void updateCarbonIntensity(double carbonIntensity) {
         this.updateCounters();
         this.carbonIntensity = carbonIntensity;
@@ -0,0 +1,24 @@
+package org.opendc.simulator.compute.power.battery;
+
+/**
+ * A transition of a {@link SimBattery} from one state to another, as reported by its {@link BatteryPowerAdapter}.
+ * <p>
+ * The counters are cumulative from the start of the simulation, such that the behaviour of the battery between two
+ * events can be reconstructed exactly.
+ *
+ * @param timestamp The virtual timestamp at which the transition occurred.
+ * @param previousState The state of the battery before the transition.
+ * @param state The state of the battery after the transition.
+ * @param chargeLevel The charge level of the battery at the transition (in J).
+ * @param energyUsage The total energy supplied by the battery (in J).
+ * @param chargeReceived The total charge received by the battery (in J).
+ * @param carbonEmission The total carbon emission of the power source of the adapter (in gCO2).
+ */
+public record BatteryEvent(
+        long timestamp,
+        SimBattery.STATE previousState,
+        SimBattery.STATE state,
+        double chargeLevel,
+        double energyUsage,
+        double chargeReceived,
+        double carbonEmission) {}
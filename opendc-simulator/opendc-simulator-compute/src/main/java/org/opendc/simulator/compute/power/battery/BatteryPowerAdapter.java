@@ -1,20 +1,24 @@
 package org.opendc.simulator.compute.power.battery;
 
-import org.opendc.simulator.compute.power.CarbonFragment;
+import org.opendc.simulator.compute.power.CarbonModel;
+import org.opendc.simulator.compute.power.CarbonReceiver;
+import org.opendc.simulator.compute.power.CarbonTimeline;
 import org.opendc.simulator.compute.power.MultiSimPowerSource;
 import org.opendc.simulator.compute.power.battery.greenenergy.CarbonPolicy;
 import org.opendc.simulator.engine.FlowConsumer;
 import org.opendc.simulator.engine.FlowEdge;
+import org.opendc.simulator.engine.FlowEngine;
 import org.opendc.simulator.engine.FlowGraph;
 
-import java.util.List;
+import java.util.ArrayList;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * An Adapter between the Multiplexer, a SimBattery and a SimPowerSource
  * Provides power to the multiplexer from the SimBattery or SimPowerSource based on if green energy is available
  */
-public final class BatteryPowerAdapter extends PowerAdapter implements FlowConsumer {
+public final class BatteryPowerAdapter extends PowerAdapter implements FlowConsumer, CarbonReceiver {
     SimBattery battery;
     private FlowEdge muxEdge;
     private FlowEdge batterySupplierEdge;
@@ -33,6 +37,23 @@ public final class BatteryPowerAdapter extends PowerAdapter implements FlowConsu
     private final CarbonPolicy carbonPolicy;
     private boolean greenEnergyAvailable = false;
 
+    /**
+     * The shared model of the carbon timeline of the power source, which notifies the adapter when the carbon intensity
+     * changes, or <code>null</code> if the power source has no carbon timeline.
+     */
+    private CarbonModel carbonModel;
+
+    private double carbonIntensity;
+
+    /**
+     * A flag to indicate that the carbon intensity changed since the policy was last evaluated.
+     */
+    private boolean policyExpired = true;
+
+    /**
+     * The listeners that are notified of the state transitions of the battery.
+     */
+    private final ArrayList<Consumer<BatteryEvent>> eventListeners = new ArrayList<>();
 
     private long lastUpdate;
 
@@ -40,14 +61,14 @@ public final class BatteryPowerAdapter extends PowerAdapter implements FlowConsu
      * Create a new BatteryPowerAdapter
      * @param graph
      * @param max_capacity
-     * @param carbonFragments for the SimPowerSource
+     * @param carbonTimeline for the SimPowerSource
      * @param startTime
      * @param carbonPolicy to determine if green energy is available ore not
      * @param battery
      */
-    public BatteryPowerAdapter(FlowGraph graph, double max_capacity, List<CarbonFragment> carbonFragments, long startTime, CarbonPolicy carbonPolicy, SimBattery battery) {
+    public BatteryPowerAdapter(FlowGraph graph, double max_capacity, CarbonTimeline carbonTimeline, long startTime, CarbonPolicy carbonPolicy, SimBattery battery) {
         //initialize MultiSimPowerSource in super class
-        super(graph, new MultiSimPowerSource(graph, max_capacity, carbonFragments, startTime));
+        super(graph, new MultiSimPowerSource(graph, max_capacity, carbonTimeline, startTime));
         //connect battery and powerSource to each other
         this.battery = battery;
         batterySupplierEdge = new FlowEdge(battery, powerSource);
@@ -60,8 +81,13 @@ public final class BatteryPowerAdapter extends PowerAdapter implements FlowConsu
 
         //add the carbon policy
         this.carbonPolicy = carbonPolicy;
+        this.carbonIntensity = powerSource.getCarbonIntensity();
 
         lastUpdate = this.clock.millis();
+
+        if (carbonTimeline != null) {
+            this.carbonModel = CarbonModel.subscribe(graph, carbonTimeline, startTime, this);
+        }
     }
 
     /**
@@ -106,37 +132,105 @@ public final class BatteryPowerAdapter extends PowerAdapter implements FlowConsu
         return this.battery;
     }
 
+    /**
+     * Add a listener that is notified with a {@link BatteryEvent} at every state transition of the battery, which
+     * captures the exact behaviour of the battery without sampling it.
+     */
+    public void addEventListener(Consumer<BatteryEvent> listener) {
+        if (eventListeners.isEmpty()) {
+            battery.setStateListener(this::handleStateChange);
+        }
+
+        eventListeners.add(listener);
+    }
+
+    /**
+     * Remove the specified listener from the adapter.
+     */
+    public void removeEventListener(Consumer<BatteryEvent> listener) {
+        if (eventListeners.remove(listener) && eventListeners.isEmpty()) {
+            battery.setStateListener(null);
+        }
+    }
+
+    /**
+     * Report a state transition of the battery, including the counters up to the moment of the transition.
+     * <p>
+     * The counters are extrapolated to the moment of the transition rather than updated, such that the integration
+     * intervals of the battery and the power source, and thus their totals, do not depend on whether the transitions
+     * are observed.
+     * <p>
+     * The transition occurs during the engine cycle, whereas the listeners usually lead outside of the flow network.
+     * The event is therefore captured immediately, but delivered via {@link FlowEngine#runCallback(Runnable)}, such
+     * that engines that run in parallel do not notify the listeners concurrently.
+     */
+    private void handleStateChange(
+            SimBattery battery, long now, SimBattery.STATE previousState, SimBattery.STATE state) {
+        SimBattery.Snapshot snapshot = battery.peek(now);
+        BatteryEvent event = new BatteryEvent(
+                now,
+                previousState,
+                state,
+                snapshot.chargeLevel(),
+                snapshot.totalEnergyUsage(),
+                snapshot.totalChargeReceived(),
+                powerSource.getCarbonEmission(now));
+
+        parentGraph.getEngine().runCallback(() -> {
+            final ArrayList<Consumer<BatteryEvent>> eventListeners = this.eventListeners;
+            for (int i = 0; i < eventListeners.size(); i++) {
+                eventListeners.get(i).accept(event);
+            }
+        });
+    }
+
     @Override
     public void close() {
+        if (carbonModel != null) {
+            carbonModel.removeReceiver(this);
+            carbonModel = null;
+        }
+
         powerSource.close();
         battery.close();
         this.closeNode();
     }
 
-    long nextUpdate = 0;
+    /**
+     * Evaluate the carbon policy when the carbon intensity has changed and re-route the power demand when the battery
+     * becomes empty.
+     * <p>
+     * The carbon intensity is constant within a carbon fragment, so the decision of the policy is cached until the
+     * {@link CarbonModel} reports the next change. Demand changes in between only re-route the demand using the cached
+     * decision (see {@link #handleDemand(FlowEdge, double)}).
+     */
     @Override
     public long onUpdate(long now) {
-        //Compute if green energy is available
-        double carbonIntensity = powerSource.getCarbonIntensity();
-        greenEnergyAvailable = carbonPolicy.greenEnergyAvailable(carbonIntensity, now);
+        updateCounters(now);
 
-        if (greenEnergyAvailable) {
-            battery.setCharging();
+        if (policyExpired) {
+            updatePolicy(now);
+
+            // Route the demand according to the new decision
+            pushDemand(powerSourceSupplierEdge, powerDemand);
+        } else if (battery.isEmpty() && ((MultiSimPowerSource) powerSource).getAdapterPowerDemand() == 0) {
+            // Switch to power source if battery is empty and still in use
+            pushDemand(powerSourceSupplierEdge, powerDemand);
         }
 
-        // call this function again depending on the nextUpdate of the battery
-        battery.onUpdate(now);
-        powerSource.onUpdate(now);
+        return Long.MAX_VALUE;
+    }
 
-        //Update the energy supplied
-        updateCounters(now);
+    /**
+     * Evaluate the carbon policy for the current carbon intensity.
+     */
+    private void updatePolicy(long now) {
+        policyExpired = false;
 
-        // Switch to power source if battery is empty and still in use
-        if (battery.isEmpty() && ((MultiSimPowerSource)powerSource).getAdapterPowerDemand() == 0) {
-            pushDemand(powerSourceSupplierEdge, powerDemand);
+        greenEnergyAvailable = carbonPolicy.greenEnergyAvailable(carbonIntensity, now);
+        if (greenEnergyAvailable) {
+            battery.setCharging();
         }
-
-        return now + battery.computeNextUpdateDuration(); // compute next update
     }
 
     @Override
@@ -174,8 +268,23 @@ public final class BatteryPowerAdapter extends PowerAdapter implements FlowConsu
     @Override
     public void handleDemand(FlowEdge consumerEdge, double newPowerDemand) {
         this.powerDemand = newPowerDemand;
+        this.updateShadowBatteries(newPowerDemand);
 
         this.pushDemand(consumerEdge, newPowerDemand);
+
+        // Evaluate the policy for the first time, after which the adapter only updates on carbon intensity changes
+        if (policyExpired) {
+            this.invalidate();
+        }
+    }
+
+    /**
+     * Expire the decision of the carbon policy when the carbon intensity changes.
+     */
+    @Override
+    public void handleCarbonIntensity(double carbonIntensity) {
+        this.carbonIntensity = carbonIntensity;
+        this.policyExpired = true;
         this.invalidate();
     }
 
@@ -210,6 +319,7 @@ public final class BatteryPowerAdapter extends PowerAdapter implements FlowConsu
      */
     @Override
     public void handleSupply(FlowEdge supplierEdge, double newSupply) {
+        updateCounters(clock.millis());
         this.combinedPowerSupplied = newSupply;
 
         if (supplierEdge.equals(batterySupplierEdge)) {
@@ -222,7 +332,6 @@ public final class BatteryPowerAdapter extends PowerAdapter implements FlowConsu
         }
 
         this.pushSupply(muxEdge, newSupply);
-        this.invalidate();
     }
 
     /**
@@ -0,0 +1,68 @@
+package org.opendc.simulator.compute.power.battery;
+
+/**
+ * The fractions of the capacity of a battery between which its charge level is kept, and the state machine that the
+ * batteries follow within these bounds.
+ * <p>
+ * Both {@link SimBattery} and {@link ShadowBattery} use this state machine, such that a shadow battery makes the same
+ * decisions as a simulated battery with the same configuration.
+ *
+ * @param lower The fraction of the capacity below which the battery is not depleted further.
+ * @param upper The fraction of the capacity above which the battery is not charged further.
+ */
+public record ChargeBounds(double lower, double upper) {
+    /**
+     * The default bounds of a battery, which keep the charge level between 5% and 95% of its capacity.
+     */
+    public static final ChargeBounds DEFAULT = new ChargeBounds(0.05, 0.95);
+
+    public ChargeBounds {
+        if (!(lower >= 0.0 && lower < upper && upper <= 1.0)) {
+            throw new IllegalArgumentException("Charge bounds must satisfy 0 <= lower < upper <= 1");
+        }
+    }
+
+    /**
+     * Return the charge level (in J) at which a battery with the specified capacity is empty.
+     */
+    public double getLowerLevel(double capacity) {
+        return capacity * lower;
+    }
+
+    /**
+     * Return the charge level (in J) at which a battery with the specified capacity is full.
+     */
+    public double getUpperLevel(double capacity) {
+        return capacity * upper;
+    }
+
+    /**
+     * Determine whether a battery with the specified charge level and capacity is empty.
+     */
+    public boolean isEmpty(double chargeLevel, double capacity) {
+        return chargeLevel <= getLowerLevel(capacity);
+    }
+
+    /**
+     * Determine whether a battery with the specified charge level and capacity is full.
+     */
+    public boolean isFull(double chargeLevel, double capacity) {
+        return chargeLevel >= getUpperLevel(capacity);
+    }
+
+    /**
+     * Determine the state of a battery: it charges while green energy is available and supplies the power demand
+     * otherwise, until its charge level reaches the respective bound, after which it becomes idle.
+     *
+     * @param greenEnergy Whether green energy is available.
+     * @param chargeLevel The charge level of the battery (in J).
+     * @param capacity The capacity of the battery (in J).
+     */
+    public SimBattery.STATE nextState(boolean greenEnergy, double chargeLevel, double capacity) {
+        if (greenEnergy) {
+            return isFull(chargeLevel, capacity) ? SimBattery.STATE.IDLE : SimBattery.STATE.CHARGING;
+        }
+
+        return isEmpty(chargeLevel, capacity) ? SimBattery.STATE.IDLE : SimBattery.STATE.DEPLETING;
+    }
+}
@@ -22,9 +22,10 @@
 
 package org.opendc.simulator.compute.power.battery;
 
+import java.util.ArrayList;
 import java.util.List;
 
-import org.opendc.simulator.compute.power.CarbonFragment;
+import org.opendc.simulator.compute.power.CarbonTimeline;
 import org.opendc.simulator.compute.power.SimPowerSource;
 import org.opendc.simulator.compute.power.SimPsu;
 import org.opendc.simulator.engine.FlowEdge;
@@ -38,6 +39,11 @@ import org.opendc.simulator.engine.FlowSupplier;
 public abstract class PowerAdapter extends FlowNode implements FlowSupplier {
     protected SimPowerSource powerSource;
 
+    /**
+     * The virtual batteries that are driven by the power demand of this adapter.
+     */
+    private final List<ShadowBattery> shadowBatteries = new ArrayList<>();
+
     public boolean isConnected() {
         return powerSource.isConnected();
     }
@@ -66,9 +72,9 @@ public abstract class PowerAdapter extends FlowNode implements FlowSupplier {
         return powerSource.getCapacity();
     }
 
-    public PowerAdapter(FlowGraph graph, double max_capacity, List<CarbonFragment> carbonFragments, long startTime) {
+    public PowerAdapter(FlowGraph graph, double max_capacity, CarbonTimeline carbonTimeline, long startTime) {
         super(graph);
-        this.powerSource = new SimPowerSource(graph, max_capacity, carbonFragments, startTime);
+        this.powerSource = new SimPowerSource(graph, max_capacity, carbonTimeline, startTime);
     }
 
     public PowerAdapter(FlowGraph graph, SimPowerSource simPowerSource) {
@@ -100,4 +106,33 @@ public abstract class PowerAdapter extends FlowNode implements FlowSupplier {
     public void updateCarbonIntensity(double carbonIntensity) {
         powerSource.updateCarbonIntensity(carbonIntensity);
     }
+
+    /**
+     * Attach a {@link ShadowBattery} that follows the power demand of this adapter from now on.
+     */
+    public void addShadowBattery(ShadowBattery battery) {
+        this.shadowBatteries.add(battery);
+    }
+
+    /**
+     * @return the shadow batteries that follow the power demand of this adapter
+     */
+    public List<ShadowBattery> getShadowBatteries() {
+        return this.shadowBatteries;
+    }
+
+    /**
+     * Pass a new power demand of the cluster on to the shadow batteries.
+     */
+    protected void updateShadowBatteries(double newPowerDemand) {
+        List<ShadowBattery> shadowBatteries = this.shadowBatteries;
+        if (shadowBatteries.isEmpty()) {
+            return;
+        }
+
+        long now = this.clock.millis();
+        for (ShadowBattery battery : shadowBatteries) {
+            battery.setPowerDemand(now, newPowerDemand);
+        }
+    }
 }
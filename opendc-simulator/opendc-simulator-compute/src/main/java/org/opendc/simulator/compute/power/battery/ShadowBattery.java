@@ -0,0 +1,278 @@
+package org.opendc.simulator.compute.power.battery;
+
+import org.opendc.simulator.compute.power.CarbonTimeline;
+import org.opendc.simulator.compute.power.battery.greenenergy.CarbonPolicy;
+
+/**
+ * A virtual battery that is driven by the power demand of a {@link PowerAdapter}, without being part of the flow graph.
+ * <p>
+ * A shadow battery follows the same policy as a {@link BatteryPowerAdapter} with a {@link SimBattery}: it charges
+ * from the power source while the {@link CarbonPolicy} reports green energy, and supplies the power demand of the
+ * cluster otherwise, until the charge level reaches its {@link ChargeBounds}, which also decide the state of the
+ * {@link SimBattery}. Since the shadow battery does not feed back into the simulation, a single simulation can
+ * evaluate many battery configurations for the same power stream.
+ * <p>
+ * The battery is advanced lazily whenever the power demand changes or its counters are read. Between those moments,
+ * it integrates its charge, energy and carbon accounting exactly over the carbon fragments and the moments at which
+ * the battery becomes full or empty. The policy is evaluated at every demand change and carbon fragment boundary.
+ */
+public final class ShadowBattery {
+    private final String name;
+    private final double capacity; // the capacity of the battery (in J)
+    private final double chargeSpeed; // the charge current (in W)
+    private final ChargeBounds chargeBounds; // the bounds of the charge level
+    private final CarbonPolicy carbonPolicy;
+
+    private final CarbonTimeline carbonTimeline;
+    private final long startTime;
+    private int segmentIndex;
+
+    private double time; // the moment up to which the battery has been advanced (in ms, relative to the start time)
+    private double chargeLevel = 0.0; // the charge level (in J)
+    private double powerDemand = 0.0; // the power demand of the cluster (in W)
+    private double carbonIntensity = 0.0; // the carbon intensity of the current segment (in gCO2/kWh)
+    private SimBattery.STATE state = SimBattery.STATE.CHARGING;
+
+    private double totalEnergyUsage = 0.0; // the total energy drawn from the power source (in J)
+    private double totalBatteryEnergyUsage = 0.0; // the total energy supplied by the battery (in J)
+    private double totalChargeReceived = 0.0; // the total charge received by the battery (in J)
+    private double totalCarbonEmission = 0.0; // the carbon emission of the power drawn from the power source (in gCO2)
+
+    /**
+     * Create a new shadow battery with the {@link ChargeBounds#DEFAULT default} charge bounds.
+     *
+     * @param name the name of the battery configuration
+     * @param capacity the maximum capacity (in J) to which the battery can be charged
+     * @param chargeSpeed the current (in W) with which the battery is charged
+     * @param carbonPolicy the policy that determines whether green energy is available
+     * @param carbonTimeline the carbon intensity of the power source, or <code>null</code> if it is unknown
+     * @param startTime the absolute timestamp at which the simulation starts, to look up the carbon intensity
+     * @param now the current (relative) timestamp
+     */
+    public ShadowBattery(
+            String name,
+            double capacity,
+            double chargeSpeed,
+            CarbonPolicy carbonPolicy,
+            CarbonTimeline carbonTimeline,
+            long startTime,
+            long now) {
+        this(name, capacity, chargeSpeed, ChargeBounds.DEFAULT, carbonPolicy, carbonTimeline, startTime, now);
+    }
+
+    /**
+     * Create a new shadow battery.
+     *
+     * @param name the name of the battery configuration
+     * @param capacity the maximum capacity (in J) to which the battery can be charged
+     * @param chargeSpeed the current (in W) with which the battery is charged
+     * @param chargeBounds the bounds between which the charge level is kept
+     * @param carbonPolicy the policy that determines whether green energy is available
+     * @param carbonTimeline the carbon intensity of the power source, or <code>null</code> if it is unknown
+     * @param startTime the absolute timestamp at which the simulation starts, to look up the carbon intensity
+     * @param now the current (relative) timestamp
+     */
+    public ShadowBattery(
+            String name,
+            double capacity,
+            double chargeSpeed,
+            ChargeBounds chargeBounds,
+            CarbonPolicy carbonPolicy,
+            CarbonTimeline carbonTimeline,
+            long startTime,
+            long now) {
+        this.name = name;
+        this.capacity = capacity;
+        this.chargeSpeed = chargeSpeed;
+        this.chargeBounds = chargeBounds;
+        this.carbonPolicy = carbonPolicy;
+        this.carbonTimeline = carbonTimeline;
+        this.startTime = startTime;
+        this.time = now;
+
+        updateState();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return the maximum capacity of the battery (in J)
+     */
+    public double getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return the charge speed of the battery (in W)
+     */
+    public double getChargeSpeed() {
+        return this.chargeSpeed;
+    }
+
+    /**
+     * @return the bounds between which the charge level is kept
+     */
+    public ChargeBounds getChargeBounds() {
+        return this.chargeBounds;
+    }
+
+    /**
+     * @return the current charge level of the battery (in J)
+     */
+    public double getChargeLevel() {
+        return this.chargeLevel;
+    }
+
+    /**
+     * @return the current state
+     */
+    public String getStateString() {
+        return this.state.toString();
+    }
+
+    /**
+     * @return the power drawn from the power source for the cluster and for charging the battery (in W)
+     */
+    public double getPowerDraw() {
+        return switch (state) {
+            case CHARGING -> powerDemand + chargeSpeed;
+            case DEPLETING -> 0.0;
+            case IDLE -> powerDemand;
+        };
+    }
+
+    /**
+     * @return the power supplied by the battery to the cluster (in W)
+     */
+    public double getBatteryPowerDraw() {
+        return state == SimBattery.STATE.DEPLETING ? powerDemand : 0.0;
+    }
+
+    /**
+     * @return the total energy drawn from the power source (in J)
+     */
+    public double getEnergyUsage() {
+        return this.totalEnergyUsage;
+    }
+
+    /**
+     * @return the total energy supplied by the battery (in J)
+     */
+    public double getBatteryEnergyUsage() {
+        return this.totalBatteryEnergyUsage;
+    }
+
+    /**
+     * @return the total charge received (in J)
+     */
+    public double getTotalChargeReceived() {
+        return this.totalChargeReceived;
+    }
+
+    /**
+     * @return the total carbon emission of the energy drawn from the power source (in gCO2)
+     */
+    public double getCarbonEmission() {
+        return this.totalCarbonEmission;
+    }
+
+    /**
+     * Update the power demand of the cluster at the specified timestamp.
+     */
+    public void setPowerDemand(long now, double powerDemand) {
+        updateCounters(now);
+
+        this.powerDemand = powerDemand;
+        updateState();
+    }
+
+    /**
+     * Advance the battery to the specified timestamp.
+     */
+    public void updateCounters(long now) {
+        while (this.time < now) {
+            updateState();
+
+            final double time = this.time;
+            double end = Math.min(now, findSegmentEnd());
+            double chargeRate = 0.0; // the change of the charge level (in W)
+            double bound = Double.NaN;
+
+            if (state == SimBattery.STATE.CHARGING) {
+                chargeRate = chargeSpeed;
+                bound = chargeBounds.getUpperLevel(capacity);
+            } else if (state == SimBattery.STATE.DEPLETING && powerDemand > 0) {
+                chargeRate = -powerDemand;
+                bound = chargeBounds.getLowerLevel(capacity);
+            }
+
+            // Stop at the moment the battery becomes full or empty, after which the state changes
+            boolean crossed = false;
+            if (chargeRate != 0.0) {
+                double crossing = time + (bound - chargeLevel) / (chargeRate * 0.001);
+                if (crossing <= end) {
+                    end = crossing;
+                    crossed = true;
+                }
+            }
+
+            double duration = end - time;
+            double energyUsage = getPowerDraw() * duration * 0.001;
+            this.totalEnergyUsage += energyUsage;
+            this.totalCarbonEmission += carbonIntensity * (energyUsage / 3600000.0);
+
+            if (chargeRate > 0) {
+                this.totalChargeReceived += chargeRate * duration * 0.001;
+            } else {
+                this.totalBatteryEnergyUsage += -chargeRate * duration * 0.001;
+            }
+            this.chargeLevel = crossed ? bound : this.chargeLevel + chargeRate * duration * 0.001;
+
+            this.time = end;
+        }
+
+        updateState();
+    }
+
+    /**
+     * Determine the state of the battery at the current moment, like {@link BatteryPowerAdapter} does.
+     */
+    private void updateState() {
+        findSegment();
+
+        boolean greenEnergy = carbonPolicy.greenEnergyAvailable(carbonIntensity, (long) time);
+        state = chargeBounds.nextState(greenEnergy, chargeLevel, capacity);
+    }
+
+    /**
+     * Move to the segment of the carbon timeline that contains the current moment.
+     */
+    private void findSegment() {
+        CarbonTimeline timeline = this.carbonTimeline;
+        if (timeline == null) {
+            return;
+        }
+
+        // The segments start at whole milliseconds, so the segment that contains the moment also contains its floor
+        long absoluteTime = (long) Math.floor(time) + startTime;
+        int index = timeline.indexOf(absoluteTime, segmentIndex);
+
+        this.segmentIndex = index;
+        this.carbonIntensity = timeline.getCarbonIntensity(index);
+    }
+
+    /**
+     * Return the (relative) moment at which the current segment of the carbon timeline ends.
+     */
+    private double findSegmentEnd() {
+        CarbonTimeline timeline = this.carbonTimeline;
+        if (timeline == null || segmentIndex == timeline.size() - 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double end = timeline.getEndTime(segmentIndex) - startTime;
+        return end > time ? end : Double.POSITIVE_INFINITY;
+    }
+}
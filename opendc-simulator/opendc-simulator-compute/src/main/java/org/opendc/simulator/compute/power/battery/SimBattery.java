@@ -22,10 +22,9 @@ public class SimBattery extends FlowNode implements FlowSupplier, FlowConsumer {
     private double chargeReceived = 0.0f;
     private double totalChargeReceived = 0.0f;
 
-    private final double chargeLowerBound = 0.05f; // minimum depletion
-    private final double chargeUpperBound = 0.95f; // maximum charge level
+    private final ChargeBounds chargeBounds; // the bounds of the charge level
 
-    enum STATE {
+    public enum STATE {
         CHARGING, // the battery is being charged by a SimPowerSupply
         IDLE, // do nothing
         DEPLETING // the battery is providing power to the Adapter
@@ -33,6 +32,40 @@ public class SimBattery extends FlowNode implements FlowSupplier, FlowConsumer {
 
     STATE state;
 
+    /**
+     * A listener that is notified when a {@link SimBattery} moves from one state to another.
+     */
+    @FunctionalInterface
+    public interface StateListener {
+        /**
+         * This method is invoked when the battery changes its state.
+         *
+         * @param battery The battery that changed its state.
+         * @param now The virtual timestamp at which the state changed.
+         * @param previousState The state before the transition.
+         * @param state The state after the transition.
+         */
+        void onStateChange(SimBattery battery, long now, STATE previousState, STATE state);
+    }
+
+    private StateListener stateListener;
+
+    /**
+     * A checkpoint of the charge level, state and energy counters of a {@link SimBattery} at a point in time, which can
+     * be restored into a battery with the same capacity.
+     * <p>
+     * A snapshot only covers the battery itself. It does not capture the flows, the carbon policy, the workloads or the
+     * pending events around the battery, so it cannot be used to fork or resume a simulation.
+     *
+     * @param timestamp The virtual timestamp at which the snapshot was taken.
+     * @param chargeLevel The charge level of the battery (in J).
+     * @param state The state of the battery.
+     * @param totalEnergyUsage The total energy supplied by the battery (in J).
+     * @param totalChargeReceived The total charge received by the battery (in J).
+     */
+    public record Snapshot(
+            long timestamp, double chargeLevel, STATE state, double totalEnergyUsage, double totalChargeReceived) {}
+
     private FlowEdge consumerEdge; // power from battery to adapter -> depletes the battery
     private FlowEdge supplierEdge; // power from power supply to battery -> charges the battery
 
@@ -78,6 +111,13 @@ public class SimBattery extends FlowNode implements FlowSupplier, FlowConsumer {
         return this.chargeLevel;
     }
 
+    /**
+     * @return the bounds between which the charge level is kept
+     */
+    public ChargeBounds getChargeBounds() {
+        return this.chargeBounds;
+    }
+
     /**
      * @return the total charge received
      */
@@ -92,16 +132,51 @@ public class SimBattery extends FlowNode implements FlowSupplier, FlowConsumer {
         return this.state.toString();
     }
 
+    /**
+     * Set the listener that is notified of the state transitions of the battery, or <code>null</code> to remove it.
+     */
+    public void setStateListener(StateListener stateListener) {
+        this.stateListener = stateListener;
+    }
+
+    /**
+     * Start charging the battery, unless it is already full.
+     */
     public void setCharging() {
-        this.state = STATE.CHARGING;
+        setState(chargeBounds.nextState(true, chargeLevel, capacity));
     }
 
+    /**
+     * Start depleting the battery, unless it is already empty.
+     */
     public void setDepleting() {
-        this.state = STATE.DEPLETING;
+        setState(chargeBounds.nextState(false, chargeLevel, capacity));
     }
 
     public void setIdle() {
-        this.state = STATE.IDLE;
+        setState(STATE.IDLE);
+    }
+
+    /**
+     * Change the state of the battery, which invalidates the battery to reschedule the timer of its next state
+     * boundary.
+     */
+    private void setState(STATE newState) {
+        if (this.state != newState) {
+            final STATE previousState = this.state;
+            this.state = newState;
+            notifyStateChange(clock.millis(), previousState);
+            this.invalidate();
+        }
+    }
+
+    /**
+     * Notify the listener if the state of the battery differs from the specified previous state.
+     */
+    private void notifyStateChange(long now, STATE previousState) {
+        if (this.stateListener != null && this.state != previousState) {
+            this.stateListener.onStateChange(this, now, previousState, this.state);
+        }
     }
 
     public boolean isCharging() {
@@ -117,27 +192,39 @@ public class SimBattery extends FlowNode implements FlowSupplier, FlowConsumer {
     }
 
     public boolean isEmpty() {
-        return chargeLevel < capacity * chargeLowerBound;
+        return chargeBounds.isEmpty(chargeLevel, capacity);
     }
 
     public boolean isFull() {
-        return chargeLevel > capacity * chargeUpperBound;
+        return chargeBounds.isFull(chargeLevel, capacity);
     }
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // Constructors
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
-     * Create a new Battery
+     * Create a new Battery with the {@link ChargeBounds#DEFAULT default} charge bounds
      * @param graph
      * @param max_capacity the maximum capacity (in J) to which the battery can be charged
      * @param charge_current the current (in W) with which the battery is charged
      */
     public SimBattery(FlowGraph graph, double max_capacity, double charge_current) {
+        this(graph, max_capacity, charge_current, ChargeBounds.DEFAULT);
+    }
+
+    /**
+     * Create a new Battery
+     * @param graph
+     * @param max_capacity the maximum capacity (in J) to which the battery can be charged
+     * @param charge_current the current (in W) with which the battery is charged
+     * @param chargeBounds the bounds between which the charge level is kept
+     */
+    public SimBattery(FlowGraph graph, double max_capacity, double charge_current, ChargeBounds chargeBounds) {
         super(graph);
 
         this.capacity = max_capacity;
         this.chargeCurrent = charge_current;
+        this.chargeBounds = chargeBounds;
 
         this.state = STATE.CHARGING;
         lastUpdate = this.clock.millis();
@@ -147,6 +234,59 @@ public class SimBattery extends FlowNode implements FlowSupplier, FlowConsumer {
         this.closeNode();
     }
 
+    /**
+     * Take a snapshot of the state of the battery at the current timestamp.
+     */
+    public Snapshot snapshot() {
+        updateCounters();
+
+        return new Snapshot(lastUpdate, chargeLevel, state, totalEnergyUsage, totalChargeReceived);
+    }
+
+    /**
+     * Return the state of the battery at the specified timestamp, extrapolated from its last update at the current
+     * rates, without updating the counters of the battery.
+     */
+    public Snapshot peek(long now) {
+        double chargeLevel = this.chargeLevel;
+        double totalEnergyUsage = this.totalEnergyUsage;
+        double totalChargeReceived = this.totalChargeReceived;
+
+        long duration = now - lastUpdate;
+        if (duration > 0) {
+            double energyUsage = (this.powerSupplied * duration * 0.001);
+            totalEnergyUsage += energyUsage;
+            chargeLevel -= energyUsage;
+
+            double energyReceived = (this.chargeReceived * duration * 0.001);
+            totalChargeReceived += energyReceived;
+            chargeLevel += energyReceived;
+        }
+
+        return new Snapshot(now, chargeLevel, state, totalEnergyUsage, totalChargeReceived);
+    }
+
+    /**
+     * Restore the state of the battery from the specified snapshot, for instance to start the battery of a new
+     * simulation at a known charge level.
+     * <p>
+     * The flows of the battery are re-evaluated in the next engine cycle.
+     */
+    public void restore(Snapshot snapshot) {
+        if (snapshot.chargeLevel() < 0 || snapshot.chargeLevel() > capacity) {
+            throw new IllegalArgumentException("Charge level of snapshot exceeds the capacity of the battery");
+        }
+
+        updateCounters();
+
+        this.chargeLevel = snapshot.chargeLevel();
+        this.state = snapshot.state();
+        this.totalEnergyUsage = snapshot.totalEnergyUsage();
+        this.totalChargeReceived = snapshot.totalChargeReceived();
+
+        this.invalidate();
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // FlowNode related functionality
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -154,12 +294,14 @@ public class SimBattery extends FlowNode implements FlowSupplier, FlowConsumer {
     /**
      * Based on the current state charge, discharge or set the battery to idle
      * @param now The virtual timestamp in milliseconds after epoch at which the update is occurring.
-     * @return
+     * @return the moment at which the charge level crosses the boundary of the current state
      */
     @Override
     public long onUpdate(long now) {
         updateCounters();
 
+        final STATE previousState = state;
+
         if (state == STATE.CHARGING) {
             powerSupplied = 0.0; // no power should be supplied to the adapter
             if (!isFull()) {
@@ -186,22 +328,48 @@ public class SimBattery extends FlowNode implements FlowSupplier, FlowConsumer {
             powerSupplied = 0.0; // make sure the battery does not supply any power
         }
 
-        return Long.MAX_VALUE; //Compute time to call me again = now + (time to fully deplete/charge me)
+        notifyStateChange(now, previousState);
+
+        // Let the adapter switch its power supply once the battery is full or empty
+        if (state == STATE.IDLE && previousState != STATE.IDLE && this.consumerEdge != null) {
+            ((FlowNode) this.consumerEdge.getConsumer()).invalidate();
+        }
+
+        long duration = computeNextUpdateDuration();
+        if (duration == Long.MAX_VALUE || duration > Long.MAX_VALUE - now) {
+            return Long.MAX_VALUE;
+        }
+        return now + duration;
     }
 
+    /**
+     * Compute the duration after which the charge level crosses the boundary of the current state at the current
+     * charge and discharge rates, which is the upper bound when charging and the lower bound when depleting.
+     * <p>
+     * The duration is rounded up such that the boundary is reached when the battery is updated at that moment. The
+     * battery is invalidated whenever one of the rates changes, so the duration is only recomputed then.
+     *
+     * @return the duration (in ms), or {@link Long#MAX_VALUE} if the battery does not move towards the boundary.
+     */
     public long computeNextUpdateDuration() {
-        long duration = 0;
-        if(state == STATE.DEPLETING) { // compute the duration after which the battery will be fully depleted
-            duration = (long)((this.chargeLevel) /
-                    (this.powerSupplied * 0.001));
-        } else if (state == STATE.CHARGING) { // compute the duration after which the battery will be fully charged
-            duration = (long)((this.capacity - this.chargeLevel) /
-                (this.chargeReceived * 0.001));
+        double netPower = this.chargeReceived - this.powerSupplied; // in W
+        double remaining; // in J
+
+        if (state == STATE.CHARGING && netPower > 0) {
+            remaining = chargeBounds.getUpperLevel(capacity) - chargeLevel;
+        } else if (state == STATE.DEPLETING && netPower < 0) {
+            remaining = chargeLevel - chargeBounds.getLowerLevel(capacity);
         } else {
-            duration = 1000000000;
+            return Long.MAX_VALUE;
+        }
+
+        double duration = Math.max(remaining, 0.0) / (Math.abs(netPower) * 0.001);
+        if (!(duration < Long.MAX_VALUE)) {
+            return Long.MAX_VALUE;
         }
 
-        return duration;
+        // Round-off may leave the charge level just short of the boundary, which is then reached a millisecond later
+        return Math.max((long) Math.ceil(duration), 1);
     }
 
     public void updateCounters() {
@@ -1,19 +1,17 @@
 package org.opendc.simulator.compute.power.battery;
 
-import org.opendc.simulator.compute.power.CarbonFragment;
+import org.opendc.simulator.compute.power.CarbonTimeline;
 import org.opendc.simulator.engine.FlowEdge;
 import org.opendc.simulator.engine.FlowGraph;
 
-import java.util.List;
-
 /**
  * An implementation of PowerAdapter that keeps the functionality of the simulator unchanged
  * (only connecting a SimPowerSource to the Multiplexer)
  */
 public final class StubPowerAdapter extends PowerAdapter {
 
-    public StubPowerAdapter(FlowGraph graph, double max_capacity, List<CarbonFragment> carbonFragments, long startTime) {
-        super(graph, max_capacity, carbonFragments, startTime);
+    public StubPowerAdapter(FlowGraph graph, double max_capacity, CarbonTimeline carbonTimeline, long startTime) {
+        super(graph, max_capacity, carbonTimeline, startTime);
     }
 
     @Override
@@ -48,6 +46,7 @@ public final class StubPowerAdapter extends PowerAdapter {
 
     @Override
     public void handleDemand(FlowEdge consumerEdge, double newPowerDemand) {
+        this.updateShadowBatteries(newPowerDemand);
         powerSource.handleDemand(consumerEdge, newPowerDemand);
     }
 
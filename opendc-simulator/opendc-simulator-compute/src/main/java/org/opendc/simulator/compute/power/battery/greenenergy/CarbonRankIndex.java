@@ -0,0 +1,202 @@
+package org.opendc.simulator.compute.power.battery.greenenergy;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.opendc.simulator.compute.power.CarbonFragment;
+import org.opendc.simulator.compute.power.CarbonTimeline;
+
+/**
+ * An order-statistic index over the carbon intensity of a list of {@link CarbonFragment}s.
+ * <p>
+ * The index answers how many fragments within a window of the trace have a lower carbon intensity than a given value
+ * in O(log n) time, such that policies can compare the current carbon intensity to the surrounding hours without
+ * scanning the trace. Internally, the fragments are stored in a wavelet matrix over the ranks of their carbon
+ * intensities, where each level holds a bit vector with precomputed rank counts.
+ * <p>
+ * Every fragment counts once, regardless of its duration, which assumes that the carbon trace is sampled at a regular
+ * interval.
+ */
+public final class CarbonRankIndex {
+    /**
+     * The start time of each fragment (in epoch millis).
+     */
+    private final long[] startTimes;
+
+    /**
+     * The distinct carbon intensities of the trace in increasing order.
+     */
+    private final double[] values;
+
+    /**
+     * The number of zero bits before each position, per level of the wavelet matrix, starting at the most significant
+     * bit of the rank.
+     */
+    private final int[][] zeroRanks;
+
+    /**
+     * The number of zero bits at each level of the wavelet matrix.
+     */
+    private final int[] zeroCounts;
+
+    /**
+     * Build the index over the specified fragments, which must be ordered by start time.
+     */
+    public CarbonRankIndex(List<CarbonFragment> fragments) {
+        this(
+                fragments.stream().mapToLong(CarbonFragment::getStartTime).toArray(),
+                fragments.stream().mapToDouble(CarbonFragment::getCarbonIntensity).toArray());
+    }
+
+    /**
+     * Build the index over the segments of the specified {@link CarbonTimeline}.
+     */
+    public CarbonRankIndex(CarbonTimeline timeline) {
+        this(timeline.getStartTimes(), timeline.getCarbonIntensities());
+    }
+
+    private CarbonRankIndex(long[] startTimes, double[] intensities) {
+        final int n = startTimes.length;
+
+        this.startTimes = startTimes;
+
+        double[] sorted = intensities.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || sorted[i] != sorted[distinct - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        this.values = Arrays.copyOf(sorted, distinct);
+
+        int[] ranks = new int[n];
+        for (int i = 0; i < n; i++) {
+            ranks[i] = Arrays.binarySearch(values, intensities[i]);
+        }
+
+        final int levels = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(distinct - 1, 0)));
+        this.zeroRanks = new int[levels][];
+        this.zeroCounts = new int[levels];
+
+        int[] next = new int[n];
+        for (int level = 0; level < levels; level++) {
+            final int shift = levels - 1 - level;
+            int[] zeroRank = new int[n + 1];
+
+            int zeros = 0;
+            for (int i = 0; i < n; i++) {
+                zeroRank[i] = zeros;
+                if (((ranks[i] >>> shift) & 1) == 0) {
+                    zeros++;
+                }
+            }
+            zeroRank[n] = zeros;
+
+            // Stable partition of the ranks on the current bit for the next level
+            int zeroPos = 0;
+            int onePos = zeros;
+            for (int i = 0; i < n; i++) {
+                if (((ranks[i] >>> shift) & 1) == 0) {
+                    next[zeroPos++] = ranks[i];
+                } else {
+                    next[onePos++] = ranks[i];
+                }
+            }
+
+            int[] tmp = ranks;
+            ranks = next;
+            next = tmp;
+
+            zeroRanks[level] = zeroRank;
+            zeroCounts[level] = zeros;
+        }
+    }
+
+    /**
+     * @return the number of fragments in the index
+     */
+    public int size() {
+        return startTimes.length;
+    }
+
+    /**
+     * Return the index of the fragment that contains the specified timestamp, or the first fragment if the timestamp
+     * precedes the trace.
+     *
+     * @param time the absolute timestamp (in epoch millis)
+     */
+    public int findFragment(long time) {
+        int index = Arrays.binarySearch(startTimes, time);
+        if (index < 0) {
+            index = -index - 2; // the fragment before the insertion point
+        } else {
+            // Skip empty fragments that start at the same moment
+            while (index < startTimes.length - 1 && startTimes[index + 1] == time) {
+                index++;
+            }
+        }
+        return Math.max(index, 0);
+    }
+
+    /**
+     * Count the fragments in <code>[from, to)</code> with a carbon intensity strictly lower than the specified value.
+     */
+    public int countLess(int from, int to, double carbonIntensity) {
+        if (from >= to) {
+            return 0;
+        }
+
+        // The number of distinct values below the specified value, such that all ranks below it are lower
+        int rank = Arrays.binarySearch(values, carbonIntensity);
+        if (rank < 0) {
+            rank = -rank - 1;
+        }
+        if (rank >= values.length) {
+            return to - from;
+        }
+
+        final int[][] zeroRanks = this.zeroRanks;
+        final int levels = zeroRanks.length;
+        int count = 0;
+
+        for (int level = 0; level < levels; level++) {
+            final int[] zeroRank = zeroRanks[level];
+            final int fromZeros = zeroRank[from];
+            final int toZeros = zeroRank[to];
+
+            if (((rank >>> (levels - 1 - level)) & 1) == 1) {
+                // All values with a zero bit at this level are lower
+                count += toZeros - fromZeros;
+                from = zeroCounts[level] + (from - fromZeros);
+                to = zeroCounts[level] + (to - toZeros);
+            } else {
+                from = fromZeros;
+                to = toZeros;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Return the fraction of fragments within the window around the specified timestamp that have a lower carbon
+     * intensity than the specified value. The window contains the fragments that contain
+     * <code>time - lookBehind</code> and <code>time + lookAhead</code> and all fragments in between.
+     *
+     * @param carbonIntensity the carbon intensity to rank
+     * @param time the absolute timestamp (in epoch millis)
+     * @param lookBehind the length of the window before the timestamp (in ms)
+     * @param lookAhead the length of the window after the timestamp (in ms)
+     * @return the percentile rank of the carbon intensity in <code>[0, 1)</code>, or 0 if the index is empty
+     */
+    public double percentileRank(double carbonIntensity, long time, long lookBehind, long lookAhead) {
+        if (startTimes.length == 0) {
+            return 0.0;
+        }
+
+        int from = findFragment(time - lookBehind);
+        int to = findFragment(time + lookAhead) + 1;
+        return (double) countLess(from, to, carbonIntensity) / (to - from);
+    }
+}
@@ -0,0 +1,67 @@
+package org.opendc.simulator.compute.power.battery.greenenergy;
+
+import java.util.List;
+
+import org.opendc.simulator.compute.power.CarbonFragment;
+
+/**
+ * A {@link CarbonPolicy} that reports green energy when the current carbon intensity is among the lowest fraction of
+ * the carbon intensities in a window around the current moment.
+ * <p>
+ * For instance, a policy with a look-ahead of 24 hours and a fraction of 0.25 charges the battery during the greenest
+ * quarter of the next day. The carbon intensities are ranked with a {@link CarbonRankIndex}, so each call takes
+ * O(log n) time in the length of the carbon trace.
+ */
+public class LookaheadCarbonPolicy implements CarbonPolicy {
+    private final CarbonRankIndex index;
+    private final long startTime;
+    private final long lookBehind;
+    private final long lookAhead;
+    private final double greenFraction;
+
+    /**
+     * Construct a new {@link LookaheadCarbonPolicy}.
+     *
+     * @param carbonFragments the carbon trace, ordered by start time
+     * @param startTime the absolute timestamp (in epoch millis) that corresponds to the relative time <code>0</code>
+     * @param lookBehind the length of the window before the current moment (in ms)
+     * @param lookAhead the length of the window after the current moment (in ms)
+     * @param greenFraction the fraction of the window that is considered green, in <code>(0, 1]</code>
+     */
+    public LookaheadCarbonPolicy(
+            List<CarbonFragment> carbonFragments,
+            long startTime,
+            long lookBehind,
+            long lookAhead,
+            double greenFraction) {
+        this(new CarbonRankIndex(carbonFragments), startTime, lookBehind, lookAhead, greenFraction);
+    }
+
+    /**
+     * Construct a new {@link LookaheadCarbonPolicy} that shares an existing {@link CarbonRankIndex}.
+     */
+    public LookaheadCarbonPolicy(
+            CarbonRankIndex index, long startTime, long lookBehind, long lookAhead, double greenFraction) {
+        if (lookBehind < 0 || lookAhead < 0) {
+            throw new IllegalArgumentException("Window lengths must be non-negative");
+        }
+        if (!(greenFraction > 0 && greenFraction <= 1)) {
+            throw new IllegalArgumentException("Green fraction must be in (0, 1]");
+        }
+
+        this.index = index;
+        this.startTime = startTime;
+        this.lookBehind = lookBehind;
+        this.lookAhead = lookAhead;
+        this.greenFraction = greenFraction;
+    }
+
+    @Override
+    public boolean greenEnergyAvailable(double carbonIntensity, long now) {
+        if (index.size() == 0) {
+            return false;
+        }
+
+        return index.percentileRank(carbonIntensity, now + startTime, lookBehind, lookAhead) < greenFraction;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.compute.power
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+import org.opendc.simulator.SimulationDispatcher
+import org.opendc.simulator.engine.FlowEngine
+
+/**
+ * Test suite for the [CarbonModel] class.
+ */
+class CarbonModelTest {
+    private val hour = 3_600_000L
+
+    private val timeline =
+        CarbonTimeline(
+            longArrayOf(0, hour, 2 * hour),
+            doubleArrayOf(100.0, 200.0, 300.0),
+        )
+
+    /**
+     * A receiver that records the carbon intensities and the moments at which it is notified.
+     */
+    private class Recorder(private val dispatcher: SimulationDispatcher) : CarbonReceiver {
+        val changes = mutableListOf<Pair<Long, Double>>()
+
+        override fun handleCarbonIntensity(carbonIntensity: Double) {
+            changes.add(dispatcher.currentTime to carbonIntensity)
+        }
+    }
+
+    @Test
+    fun testSharedModel() {
+        val dispatcher = SimulationDispatcher()
+        val graph = FlowEngine.create(dispatcher).newGraph()
+
+        val first = Recorder(dispatcher)
+        val second = Recorder(dispatcher)
+        val model = CarbonModel.subscribe(graph, timeline, 0L, first)
+        assertSame(model, CarbonModel.subscribe(graph, timeline, 0L, second))
+
+        // A different start time maps to a different moment in the timeline
+        assertNotSame(model, CarbonModel.subscribe(graph, timeline, hour, Recorder(dispatcher)))
+
+        dispatcher.advanceUntilIdle()
+
+        val expected = listOf(0L to 100.0, hour to 200.0, 2 * hour to 300.0)
+        assertEquals(expected, first.changes)
+        assertEquals(expected, second.changes)
+        assertEquals(2, model.receiverCount)
+    }
+
+    @Test
+    fun testCloseWithoutReceivers() {
+        val dispatcher = SimulationDispatcher()
+        val graph = FlowEngine.create(dispatcher).newGraph()
+
+        val receiver = Recorder(dispatcher)
+        val model = CarbonModel.subscribe(graph, timeline, 0L, receiver)
+        model.removeReceiver(receiver)
+        assertFalse(graph.contains(model))
+
+        // A new subscription creates a new model
+        assertNotSame(model, CarbonModel.subscribe(graph, timeline, 0L, receiver))
+    }
+}
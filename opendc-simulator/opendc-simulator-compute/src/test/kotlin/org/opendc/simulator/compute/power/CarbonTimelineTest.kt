@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.compute.power
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertAll
+import org.junit.jupiter.api.assertThrows
+
+/**
+ * Test suite for the [CarbonTimeline] class.
+ */
+class CarbonTimelineTest {
+    private val hour = 3_600_000L
+
+    private val timeline =
+        CarbonTimeline(
+            longArrayOf(0, hour, 2 * hour, 2 * hour, 3 * hour),
+            doubleArrayOf(100.0, 200.0, 300.0, 400.0, 500.0),
+        )
+
+    @Test
+    fun testIndexOf() {
+        assertAll(
+            { assertEquals(0, timeline.indexOf(-hour)) },
+            { assertEquals(0, timeline.indexOf(0)) },
+            { assertEquals(1, timeline.indexOf(hour)) },
+            { assertEquals(1, timeline.indexOf(2 * hour - 1)) },
+            { assertEquals(3, timeline.indexOf(2 * hour)) },
+            { assertEquals(4, timeline.indexOf(100 * hour)) },
+        )
+    }
+
+    @Test
+    fun testIndexOfWithCursor() {
+        var cursor = 0
+        for (time in -hour until 5 * hour step 60_000L) {
+            cursor = timeline.indexOf(time, cursor)
+            assertEquals(timeline.indexOf(time), cursor)
+        }
+
+        assertEquals(1, timeline.indexOf(hour, 4))
+        assertEquals(4, timeline.indexOf(3 * hour, -1))
+    }
+
+    @Test
+    fun testNextChange() {
+        assertAll(
+            { assertEquals(hour, timeline.getNextChange(0)) },
+            { assertEquals(3 * hour, timeline.getNextChange(2 * hour)) },
+            { assertEquals(Long.MAX_VALUE, timeline.getNextChange(3 * hour)) },
+            { assertEquals(400.0, timeline.getCarbonIntensityAt(2 * hour + 1)) },
+        )
+    }
+
+    @Test
+    fun testCarbonEmission() {
+        // 1 kW during the last half hour of the first segment and the first half hour of the second segment
+        val emission = timeline.getCarbonEmission(1000.0, hour / 2, hour + hour / 2)
+        assertEquals(0.5 * 100.0 + 0.5 * 200.0, emission, 1e-9)
+
+        // The first and last segment extend indefinitely
+        assertEquals(100.0, timeline.getCarbonEmission(1000.0, -2 * hour, -hour), 1e-9)
+        assertEquals(500.0, timeline.getCarbonEmission(1000.0, 10 * hour, 11 * hour), 1e-9)
+
+        // Empty segments do not contribute
+        assertEquals(2 * 400.0, timeline.getCarbonEmission(2000.0, 2 * hour, 3 * hour), 1e-9)
+    }
+
+    @Test
+    fun testIntegralMatchesSegments() {
+        var cursor = 0
+        var previous = timeline.getIntegral(-hour)
+        for (time in -hour + 60_000L until 5 * hour step 60_000L) {
+            cursor = timeline.indexOf(time, cursor)
+            val integral = timeline.getIntegral(time, cursor)
+
+            // The intensity of the minute that ends at time
+            val intensity = timeline.getCarbonIntensityAt(time - 1)
+            assertEquals(intensity * 60_000.0, integral - previous, 1e-6)
+            previous = integral
+        }
+    }
+
+    @Test
+    fun testInvalidTimeline() {
+        assertThrows<IllegalArgumentException> { CarbonTimeline(longArrayOf(), doubleArrayOf()) }
+        assertThrows<IllegalArgumentException> { CarbonTimeline(longArrayOf(hour, 0), doubleArrayOf(1.0, 2.0)) }
+        assertThrows<IllegalArgumentException> { CarbonTimeline(longArrayOf(0), doubleArrayOf(1.0, 2.0)) }
+    }
+}
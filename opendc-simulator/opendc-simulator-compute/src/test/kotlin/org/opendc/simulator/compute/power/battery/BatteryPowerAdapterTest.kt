@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.compute.power.battery
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.opendc.simulator.Multiplexer
+import org.opendc.simulator.SimulationDispatcher
+import org.opendc.simulator.compute.power.CarbonFragment
+import org.opendc.simulator.compute.power.CarbonTimeline
+import org.opendc.simulator.compute.power.battery.greenenergy.CarbonPolicy
+import org.opendc.simulator.compute.power.battery.greenenergy.SimpleCarbonPolicy
+import org.opendc.simulator.engine.FlowConsumer
+import org.opendc.simulator.engine.FlowEdge
+import org.opendc.simulator.engine.FlowEngine
+import org.opendc.simulator.engine.FlowEngineGroup
+import org.opendc.simulator.engine.FlowGraph
+import org.opendc.simulator.engine.FlowNode
+
+/**
+ * Test suite for the [BatteryPowerAdapter] class.
+ */
+class BatteryPowerAdapterTest {
+    private val hour = 3_600_000L
+
+    /**
+     * Green energy during the first two hours, followed by an hour of brown energy.
+     */
+    private val timeline =
+        CarbonTimeline.of(
+            listOf(
+                CarbonFragment(0, 2 * hour, 100.0),
+                CarbonFragment(2 * hour, 3 * hour, 300.0),
+                CarbonFragment(3 * hour, 4 * hour, 100.0),
+            ),
+        )
+
+    @Test
+    fun testStateTransitionEvents() {
+        val dispatcher = SimulationDispatcher()
+        val graph = FlowEngine.create(dispatcher).newGraph()
+
+        val battery = SimBattery(graph, 3.6e6, 1000.0)
+        val adapter = BatteryPowerAdapter(graph, 1e6, timeline, 0, SimpleCarbonPolicy(150.0), battery)
+        graph.addEdge(Multiplexer(graph), adapter)
+
+        val events = mutableListOf<BatteryEvent>()
+        adapter.addEventListener { events.add(it) }
+
+        dispatcher.advanceUntilIdle()
+
+        // The battery is full after charging 3.42 MJ at 1 kW, and switches to depleting and back at the brown hour
+        assertEquals(
+            listOf(
+                Triple(3420 * 1000L, SimBattery.STATE.CHARGING, SimBattery.STATE.IDLE),
+                Triple(2 * hour, SimBattery.STATE.IDLE, SimBattery.STATE.DEPLETING),
+                Triple(3 * hour, SimBattery.STATE.DEPLETING, SimBattery.STATE.IDLE),
+            ),
+            events.map { Triple(it.timestamp, it.previousState, it.state) },
+        )
+
+        val full = events.first()
+        assertEquals(3.42e6, full.chargeLevel, 1.0)
+        assertEquals(3.42e6, full.chargeReceived, 1.0)
+        assertEquals(95.0, full.carbonEmission, 1e-6)
+    }
+
+    /**
+     * Test that observing the state transitions of the battery does not change the energy and carbon totals.
+     */
+    @Test
+    fun testEventsDoNotChangeTotals() {
+        val observed = simulateTotals(true)
+        val unobserved = simulateTotals(false)
+
+        assertEquals(unobserved, observed)
+    }
+
+    /**
+     * Simulate a battery under an alternating load for four hours and return the energy and carbon totals of the
+     * battery and the power source.
+     */
+    private fun simulateTotals(observe: Boolean): List<Double> {
+        val dispatcher = SimulationDispatcher()
+        val graph = FlowEngine.create(dispatcher).newGraph()
+
+        val battery = SimBattery(graph, 3.3e6, 977.3)
+        val adapter = BatteryPowerAdapter(graph, 1e6, timeline, 0, SimpleCarbonPolicy(150.0), battery)
+        val mux = Multiplexer(graph)
+        graph.addEdge(mux, adapter)
+        graph.addEdge(AlternatingLoad(graph, 7 * 60_000L), mux)
+
+        if (observe) {
+            adapter.addEventListener {}
+        }
+
+        dispatcher.advanceBy(4 * hour)
+        battery.updateCounters()
+        adapter.simPowerSource.updateCounters()
+
+        return listOf(
+            battery.chargeLevel,
+            battery.energyUsage,
+            battery.totalChargeReceived,
+            adapter.simPowerSource.energyUsage,
+            adapter.simPowerSource.carbonEmission,
+        )
+    }
+
+    /**
+     * Test that the adapter evaluates its carbon policy once per carbon fragment, regardless of how often the demand
+     * changes within the fragment, and that the cached decision expires at the fragment boundary.
+     */
+    @Test
+    fun testPolicyCachedPerFragment() {
+        val dispatcher = SimulationDispatcher()
+        val graph = FlowEngine.create(dispatcher).newGraph()
+
+        val evaluations = mutableListOf<Pair<Long, Double>>()
+        val policy = SimpleCarbonPolicy(150.0)
+        val countingPolicy =
+            CarbonPolicy { carbonIntensity, now ->
+                evaluations.add(now to carbonIntensity)
+                policy.greenEnergyAvailable(carbonIntensity, now)
+            }
+
+        val battery = SimBattery(graph, 3.6e6, 1000.0)
+        val adapter = BatteryPowerAdapter(graph, 1e6, timeline, 0, countingPolicy, battery)
+        val mux = Multiplexer(graph)
+        graph.addEdge(mux, adapter)
+        graph.addEdge(AlternatingLoad(graph, 10 * 60_000L), mux)
+
+        dispatcher.advanceBy(2 * hour + 1)
+        assertEquals(listOf(0L to 100.0, 2 * hour to 300.0), evaluations)
+        assertEquals("DEPLETING", battery.stateString)
+
+        dispatcher.advanceBy(hour)
+        assertEquals(listOf(0L to 100.0, 2 * hour to 300.0, 3 * hour to 100.0), evaluations)
+        assertEquals("CHARGING", battery.stateString)
+    }
+
+    /**
+     * Test that the battery events of engines that run in parallel are delivered on the dispatcher thread, in the same
+     * order as when the engines run sequentially.
+     */
+    @Test
+    fun testEventsWithParallelEngines() {
+        val sequential = collectEvents(1)
+        val parallel = collectEvents(4)
+
+        assertEquals(24, sequential.size)
+        assertEquals(sequential, parallel)
+    }
+
+    /**
+     * Simulate eight batteries of different capacities on their own engines and return their events in order of
+     * delivery.
+     */
+    private fun collectEvents(parallelism: Int): List<Pair<Int, Triple<Long, SimBattery.STATE, SimBattery.STATE>>> {
+        val dispatcher = SimulationDispatcher()
+        val thread = Thread.currentThread()
+        val events = ArrayList<Pair<Int, Triple<Long, SimBattery.STATE, SimBattery.STATE>>>()
+
+        FlowEngineGroup.create(dispatcher, parallelism).use { group ->
+            for (i in 0 until 8) {
+                val graph = group.newEngine().newGraph()
+                val battery = SimBattery(graph, 1.8e6 + i * 2.0e5, 1000.0)
+                val adapter = BatteryPowerAdapter(graph, 1e6, timeline, 0, SimpleCarbonPolicy(150.0), battery)
+                graph.addEdge(Multiplexer(graph), adapter)
+
+                adapter.addEventListener {
+                    assertTrue(Thread.currentThread() === thread, "Event delivered on an engine thread")
+                    events.add(i to Triple(it.timestamp, it.previousState, it.state))
+                }
+            }
+
+            dispatcher.advanceUntilIdle()
+        }
+
+        return events
+    }
+
+    /**
+     * A [FlowConsumer] that alternates its power demand between 100 W and 200 W at a fixed interval.
+     */
+    private class AlternatingLoad(graph: FlowGraph, private val interval: Long) : FlowNode(graph), FlowConsumer {
+        private var supplierEdge: FlowEdge? = null
+
+        override fun onUpdate(now: Long): Long {
+            val period = now / interval
+            supplierEdge?.let { pushDemand(it, if (period % 2 == 0L) 100.0 else 200.0) }
+            return (period + 1) * interval
+        }
+
+        override fun handleSupply(
+            supplierEdge: FlowEdge,
+            newSupply: Double,
+        ) {}
+
+        override fun pushDemand(
+            supplierEdge: FlowEdge,
+            newDemand: Double,
+        ) {
+            supplierEdge.pushDemand(newDemand)
+        }
+
+        override fun addSupplierEdge(supplierEdge: FlowEdge) {
+            this.supplierEdge = supplierEdge
+            invalidate()
+        }
+
+        override fun removeSupplierEdge(supplierEdge: FlowEdge) {
+            this.supplierEdge = null
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.compute.power.battery
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertAll
+import org.junit.jupiter.api.assertThrows
+
+/**
+ * Test suite for the [ChargeBounds] class.
+ */
+class ChargeBoundsTest {
+    @Test
+    fun testNextState() {
+        val bounds = ChargeBounds(0.1, 0.9)
+
+        assertAll(
+            { assertEquals(SimBattery.STATE.CHARGING, bounds.nextState(true, 500.0, 1000.0)) },
+            { assertEquals(SimBattery.STATE.IDLE, bounds.nextState(true, 900.0, 1000.0)) },
+            { assertEquals(SimBattery.STATE.DEPLETING, bounds.nextState(false, 500.0, 1000.0)) },
+            { assertEquals(SimBattery.STATE.IDLE, bounds.nextState(false, 100.0, 1000.0)) },
+        )
+    }
+
+    @Test
+    fun testEmptyBattery() {
+        assertEquals(SimBattery.STATE.IDLE, ChargeBounds(0.0, 1.0).nextState(false, 0.0, 0.0))
+    }
+
+    @Test
+    fun testInvalidBounds() {
+        assertAll(
+            { assertThrows<IllegalArgumentException> { ChargeBounds(-0.1, 0.9) } },
+            { assertThrows<IllegalArgumentException> { ChargeBounds(0.5, 0.5) } },
+            { assertThrows<IllegalArgumentException> { ChargeBounds(0.1, 1.1) } },
+        )
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.compute.power.battery
+
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertAll
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.opendc.simulator.compute.power.CarbonFragment
+import org.opendc.simulator.compute.power.CarbonTimeline
+import org.opendc.simulator.compute.power.battery.greenenergy.SimpleCarbonPolicy
+
+/**
+ * Test suite for the [ShadowBattery] class.
+ */
+class ShadowBatteryTest {
+    private val hour = 3_600_000L
+
+    /**
+     * Green energy during the first six hours, followed by six hours of brown energy.
+     */
+    private val timeline =
+        CarbonTimeline.of(
+            listOf(
+                CarbonFragment(0, 6 * hour, 50.0),
+                CarbonFragment(6 * hour, 12 * hour, 300.0),
+            ),
+        )
+
+    @Test
+    fun testChargeUntilFull() {
+        val battery = ShadowBattery("test", 7.2e6, 400.0, SimpleCarbonPolicy(100.0), timeline, 0, 0)
+        battery.setPowerDemand(0, 100.0)
+
+        battery.updateCounters(4 * hour)
+        assertAll(
+            { assertEquals("CHARGING", battery.stateString) },
+            { assertEquals(5.76e6, battery.chargeLevel, 1.0) },
+            { assertEquals(500.0, battery.powerDraw) },
+        )
+
+        // The battery is full after 4.75 hours
+        battery.updateCounters(5 * hour)
+        assertAll(
+            { assertEquals("IDLE", battery.stateString) },
+            { assertEquals(6.84e6, battery.chargeLevel, 1.0) },
+            { assertEquals(6.84e6, battery.totalChargeReceived, 1.0) },
+            { assertEquals(8.64e6, battery.energyUsage, 1.0) },
+            { assertEquals(100.0, battery.powerDraw) },
+        )
+    }
+
+    @Test
+    fun testDepleteOnBrownEnergy() {
+        val battery = ShadowBattery("test", 7.2e6, 400.0, SimpleCarbonPolicy(100.0), timeline, 0, 0)
+        battery.setPowerDemand(0, 100.0)
+
+        battery.updateCounters(7 * hour)
+        assertAll(
+            { assertEquals("DEPLETING", battery.stateString) },
+            { assertEquals(6.48e6, battery.chargeLevel, 1.0) },
+            { assertEquals(3.6e5, battery.batteryEnergyUsage, 1.0) },
+            { assertEquals(9.0e6, battery.energyUsage, 1.0) },
+            { assertEquals(125.0, battery.carbonEmission, 1e-3) },
+            { assertEquals(0.0, battery.powerDraw) },
+        )
+    }
+
+    @Test
+    fun testStopAtLowerBound() {
+        val battery = ShadowBattery("test", 7.2e5, 400.0, SimpleCarbonPolicy(100.0), timeline, 0, 0)
+        battery.setPowerDemand(0, 0.0)
+        battery.setPowerDemand(6 * hour, 1000.0)
+
+        // The battery is empty after 648 seconds of depletion
+        battery.updateCounters(7 * hour)
+        assertAll(
+            { assertEquals("IDLE", battery.stateString) },
+            { assertEquals(3.6e4, battery.chargeLevel, 1.0) },
+            { assertEquals(6.48e5, battery.batteryEnergyUsage, 1.0) },
+            { assertEquals(6.84e5 + 2.952e6, battery.energyUsage, 1.0) },
+            { assertEquals(6.84e5 * 50 / 3.6e6 + 2.952e6 * 300 / 3.6e6, battery.carbonEmission, 1e-3) },
+        )
+    }
+
+    @Test
+    fun testCustomBounds() {
+        val bounds = ChargeBounds(0.2, 0.5)
+        val battery = ShadowBattery("test", 7.2e6, 400.0, bounds, SimpleCarbonPolicy(100.0), timeline, 0, 0)
+        battery.setPowerDemand(0, 100.0)
+
+        // The battery is full after 2.5 hours
+        battery.updateCounters(5 * hour)
+        assertAll(
+            { assertEquals("IDLE", battery.stateString) },
+            { assertEquals(3.6e6, battery.chargeLevel, 1.0) },
+            { assertEquals(3.6e6, battery.totalChargeReceived, 1.0) },
+        )
+
+        // The battery is empty after six hours of depletion
+        battery.updateCounters(12 * hour + 1)
+        assertAll(
+            { assertEquals("IDLE", battery.stateString) },
+            { assertEquals(1.44e6, battery.chargeLevel, 1.0) },
+            { assertEquals(2.16e6, battery.batteryEnergyUsage, 1.0) },
+        )
+    }
+}
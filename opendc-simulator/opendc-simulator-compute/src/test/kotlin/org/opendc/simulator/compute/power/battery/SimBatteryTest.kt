@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.compute.power.battery
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.opendc.simulator.Multiplexer
+import org.opendc.simulator.SimulationDispatcher
+import org.opendc.simulator.compute.power.CarbonFragment
+import org.opendc.simulator.compute.power.CarbonTimeline
+import org.opendc.simulator.compute.power.battery.greenenergy.SimpleCarbonPolicy
+import org.opendc.simulator.engine.FlowConsumer
+import org.opendc.simulator.engine.FlowEdge
+import org.opendc.simulator.engine.FlowEngine
+import org.opendc.simulator.engine.FlowGraph
+import org.opendc.simulator.engine.FlowNode
+
+/**
+ * Test suite for the [SimBattery] class.
+ */
+class SimBatteryTest {
+    private val hour = 3_600_000L
+
+    /**
+     * Green energy during the first two hours, followed by an hour of brown energy and another hour of green energy.
+     */
+    private val timeline =
+        CarbonTimeline.of(
+            listOf(
+                CarbonFragment(0, 2 * hour, 100.0),
+                CarbonFragment(2 * hour, 3 * hour, 300.0),
+                CarbonFragment(3 * hour, 4 * hour, 100.0),
+            ),
+        )
+
+    private val dispatcher = SimulationDispatcher()
+    private val graph = FlowEngine.create(dispatcher).newGraph()
+
+    private val battery = SimBattery(graph, 3.6e6, 1000.0)
+    private val adapter = BatteryPowerAdapter(graph, 1e6, timeline, 0, SimpleCarbonPolicy(150.0), battery)
+    private val mux = Multiplexer(graph)
+
+    init {
+        graph.addEdge(mux, adapter)
+    }
+
+    @Test
+    fun testSnapshot() {
+        dispatcher.advanceBy(hour / 2)
+        val snapshot = battery.snapshot()
+
+        assertEquals(hour / 2, snapshot.timestamp)
+        assertEquals(SimBattery.STATE.CHARGING, snapshot.state)
+        assertEquals(1.8e6, snapshot.chargeLevel, 1.0)
+        assertEquals(1.8e6, snapshot.totalChargeReceived, 1.0)
+        assertEquals(0.0, snapshot.totalEnergyUsage)
+    }
+
+    @Test
+    fun testRoundTrip() {
+        dispatcher.advanceBy(hour / 2)
+        val snapshot = battery.snapshot()
+
+        // The battery is full after 3420 seconds
+        dispatcher.advanceBy(hour / 2)
+        assertEquals("IDLE", battery.stateString)
+
+        battery.restore(snapshot)
+        assertRestored(snapshot, battery.snapshot())
+
+        // The restored battery charges the remaining 1.62 MJ again
+        val events = mutableListOf<BatteryEvent>()
+        adapter.addEventListener { events.add(it) }
+        dispatcher.advanceBy(hour / 2)
+
+        assertEquals(hour + 1620 * 1000L, events.first().timestamp)
+        assertEquals("IDLE", battery.stateString)
+        assertEquals(3.42e6, battery.chargeLevel, 1.0)
+        assertEquals(3.42e6, battery.totalChargeReceived, 1.0)
+    }
+
+    @Test
+    fun testRestoreIntoOtherBattery() {
+        dispatcher.advanceBy(hour / 2)
+        val snapshot = battery.snapshot()
+
+        val other = SimBattery(graph, 3.6e6, 1000.0)
+        other.restore(snapshot)
+
+        assertRestored(snapshot, other.snapshot())
+    }
+
+    @Test
+    fun testTimeToFull() {
+        val events = mutableListOf<BatteryEvent>()
+        adapter.addEventListener { events.add(it) }
+
+        // The battery charges at 1 kW towards its upper bound of 3.42 MJ
+        dispatcher.advanceBy(1000)
+        assertEquals("CHARGING", battery.stateString)
+        battery.updateCounters()
+        assertEquals(3419 * 1000L, battery.computeNextUpdateDuration())
+
+        dispatcher.advanceBy(hour)
+        assertEquals(listOf(3420 * 1000L), events.map { it.timestamp })
+        assertEquals(Long.MAX_VALUE, battery.computeNextUpdateDuration())
+    }
+
+    /**
+     * Test that a full battery stays idle while green energy is available, instead of flipping between charging and
+     * idle at the same timestamp.
+     */
+    @Test
+    fun testFullBattery() {
+        battery.restore(SimBattery.Snapshot(0, 3.5e6, SimBattery.STATE.IDLE, 0.0, 0.0))
+        graph.addEdge(ConstantLoad(graph, 2000.0), mux)
+
+        dispatcher.advanceBy(hour)
+
+        assertEquals("IDLE", battery.stateString)
+        assertEquals(3.5e6, battery.chargeLevel)
+    }
+
+    /**
+     * Test that an empty battery stays idle when it is asked to deplete.
+     */
+    @Test
+    fun testEmptyBattery() {
+        battery.restore(SimBattery.Snapshot(0, 1e5, SimBattery.STATE.IDLE, 0.0, 0.0))
+
+        battery.setDepleting()
+
+        assertEquals("IDLE", battery.stateString)
+    }
+
+    /**
+     * Test that a full battery stays idle while the policy asks it to charge, and that an empty battery stays idle
+     * while the policy asks it to deplete, instead of flipping between the states.
+     */
+    @Test
+    fun testFullAndEmptyBattery() {
+        battery.restore(SimBattery.Snapshot(0, 3.5e6, SimBattery.STATE.IDLE, 0.0, 0.0))
+        graph.addEdge(ConstantLoad(graph, 2000.0), mux)
+
+        val events = mutableListOf<BatteryEvent>()
+        adapter.addEventListener { events.add(it) }
+
+        // The battery depletes at 2 kW towards its lower bound of 0.18 MJ
+        dispatcher.advanceBy(2 * hour + 1000)
+        assertEquals("DEPLETING", battery.stateString)
+        battery.updateCounters()
+        assertEquals(1659 * 1000L, battery.computeNextUpdateDuration())
+
+        dispatcher.advanceBy(hour)
+        assertEquals(
+            listOf(
+                Triple(2 * hour, SimBattery.STATE.IDLE, SimBattery.STATE.DEPLETING),
+                Triple(2 * hour + 1660 * 1000L, SimBattery.STATE.DEPLETING, SimBattery.STATE.IDLE),
+                Triple(3 * hour, SimBattery.STATE.IDLE, SimBattery.STATE.CHARGING),
+            ),
+            events.map { Triple(it.timestamp, it.previousState, it.state) },
+        )
+    }
+
+    @Test
+    fun testRestoreExceedsCapacity() {
+        val snapshot = SimBattery.Snapshot(0, 4e6, SimBattery.STATE.IDLE, 0.0, 0.0)
+        assertThrows<IllegalArgumentException> { battery.restore(snapshot) }
+    }
+
+    /**
+     * Assert that [actual] holds the state of [expected], apart from the time at which it was taken.
+     */
+    private fun assertRestored(
+        expected: SimBattery.Snapshot,
+        actual: SimBattery.Snapshot,
+    ) {
+        assertEquals(expected.state, actual.state)
+        assertEquals(expected.chargeLevel, actual.chargeLevel)
+        assertEquals(expected.totalEnergyUsage, actual.totalEnergyUsage)
+        assertEquals(expected.totalChargeReceived, actual.totalChargeReceived)
+    }
+
+    /**
+     * A [FlowConsumer] that demands a constant amount of power.
+     */
+    private class ConstantLoad(graph: FlowGraph, private val demand: Double) : FlowNode(graph), FlowConsumer {
+        private var supplierEdge: FlowEdge? = null
+
+        override fun onUpdate(now: Long): Long {
+            supplierEdge?.let { pushDemand(it, demand) }
+            return Long.MAX_VALUE
+        }
+
+        override fun handleSupply(
+            supplierEdge: FlowEdge,
+            newSupply: Double,
+        ) {}
+
+        override fun pushDemand(
+            supplierEdge: FlowEdge,
+            newDemand: Double,
+        ) {
+            supplierEdge.pushDemand(newDemand)
+        }
+
+        override fun addSupplierEdge(supplierEdge: FlowEdge) {
+            this.supplierEdge = supplierEdge
+            invalidate()
+        }
+
+        override fun removeSupplierEdge(supplierEdge: FlowEdge) {
+            this.supplierEdge = null
+        }
+    }
+}
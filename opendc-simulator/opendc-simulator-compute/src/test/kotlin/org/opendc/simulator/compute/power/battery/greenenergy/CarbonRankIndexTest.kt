@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.compute.power.battery.greenenergy
+
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.opendc.simulator.compute.power.CarbonFragment
+import java.util.Random
+
+/**
+ * Test suite for the [CarbonRankIndex] and [LookaheadCarbonPolicy] classes.
+ */
+class CarbonRankIndexTest {
+    private val hour = 3_600_000L
+
+    @Test
+    fun testCountLessMatchesScan() {
+        val random = Random(0)
+        val intensities = DoubleArray(1000) { (random.nextInt(300) + 20).toDouble() }
+        val index = CarbonRankIndex(intensities.mapIndexed { i, v -> CarbonFragment(i * hour, (i + 1) * hour, v) })
+
+        repeat(2000) {
+            val from = random.nextInt(intensities.size)
+            val to = from + random.nextInt(intensities.size - from + 1)
+            val value = (random.nextInt(340) + 0.5 * random.nextInt(2)).toDouble()
+
+            var expected = 0
+            for (i in from until to) {
+                if (intensities[i] < value) {
+                    expected++
+                }
+            }
+
+            assertEquals(expected, index.countLess(from, to, value), "[$from, $to) < $value")
+        }
+    }
+
+    @Test
+    fun testSingleValue() {
+        val index = CarbonRankIndex(List(10) { i -> CarbonFragment(i * hour, (i + 1) * hour, 100.0) })
+
+        assertEquals(0, index.countLess(0, 10, 100.0))
+        assertEquals(10, index.countLess(0, 10, 100.5))
+    }
+
+    @Test
+    fun testFindFragment() {
+        val index = CarbonRankIndex(List(10) { i -> CarbonFragment(i * hour, (i + 1) * hour, i.toDouble()) })
+
+        assertEquals(0, index.findFragment(-hour))
+        assertEquals(0, index.findFragment(0))
+        assertEquals(3, index.findFragment(3 * hour + 1))
+        assertEquals(4, index.findFragment(4 * hour))
+        assertEquals(9, index.findFragment(20 * hour))
+    }
+
+    @Test
+    fun testLookaheadPolicy() {
+        // A daily pattern in which the intensity is lowest around noon
+        val fragments =
+            List(24 * 7) { i ->
+                val hourOfDay = i % 24
+                CarbonFragment(i * hour, (i + 1) * hour, 100.0 + 10.0 * Math.abs(hourOfDay - 12))
+            }
+        val policy = LookaheadCarbonPolicy(fragments, 0, 12 * hour, 12 * hour, 0.25)
+
+        // The greenest quarter of the surrounding day is between 9:00 and 15:00
+        assertTrue(policy.greenEnergyAvailable(100.0, 36 * hour))
+        assertTrue(policy.greenEnergyAvailable(120.0, 34 * hour))
+        assertFalse(policy.greenEnergyAvailable(140.0, 32 * hour))
+        assertFalse(policy.greenEnergyAvailable(220.0, 24 * hour))
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.SplittableRandom
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmark suite for cancelling and rescheduling pending tasks in the [TaskQueue].
+ *
+ * The queue holds a fixed number of pending timers. Every operation moves a random timer to a new deadline, either by
+ * removing it through a search of the heap, by cancelling it through its handle, or by rescheduling it in place.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 2, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 3, timeUnit = TimeUnit.SECONDS)
+class TaskQueueBenchmarks {
+    @Param("remove", "cancel", "reschedule")
+    private lateinit var mode: String
+
+    @Param("100000", "1000000")
+    private var pendingCount: Int = 0
+
+    private lateinit var queue: TaskQueue
+    private lateinit var deadlines: LongArray
+    private lateinit var ids: IntArray
+    private lateinit var handles: IntArray
+    private lateinit var random: SplittableRandom
+    private val task = Runnable {}
+    private var nextId = 0
+
+    @Setup
+    fun setUp() {
+        queue = TaskQueue()
+        deadlines = LongArray(pendingCount)
+        ids = IntArray(pendingCount)
+        handles = IntArray(pendingCount)
+        random = SplittableRandom(7)
+        nextId = 0
+
+        for (i in 0 until pendingCount) {
+            deadlines[i] = random.nextLong(HORIZON)
+            ids[i] = nextId++
+            handles[i] = queue.add(deadlines[i], ids[i], task)
+        }
+    }
+
+    @Benchmark
+    fun benchmarkMoveTimer(): Boolean {
+        val i = random.nextInt(pendingCount)
+        val deadline = random.nextLong(HORIZON)
+
+        val result =
+            when (mode) {
+                "remove" -> queue.remove(deadlines[i], ids[i])
+                "cancel" -> queue.cancel(handles[i], ids[i])
+                else -> queue.reschedule(handles[i], ids[i], deadline, nextId)
+            }
+
+        if (mode != "reschedule") {
+            handles[i] = queue.add(deadline, nextId, task)
+        }
+        ids[i] = nextId++
+        deadlines[i] = deadline
+
+        return result
+    }
+
+    private companion object {
+        const val HORIZON = 30L * 24 * 3600 * 1000
+    }
+}
@@ -24,8 +24,10 @@ package org.opendc.simulator;
 
 import java.time.Instant;
 import java.time.InstantSource;
+import java.util.ArrayList;
 import org.opendc.common.Dispatcher;
 import org.opendc.common.DispatcherHandle;
+import org.opendc.common.trace.EventRecorder;
 
 /**
  * A {@link Dispatcher} used by simulations to manage execution of (future) tasks, providing a controllable (virtual)
@@ -38,6 +40,12 @@ import org.opendc.common.DispatcherHandle;
  * a single thread.
  *
  * <p>
+ * {@link #advanceUntilIdle} drains all tasks that are due at the same virtual time in a single pass and runs them in
+ * order of scheduling. Tasks that are scheduled without delay while such a batch runs are appended to the batch, and
+ * tasks scheduled with {@link #scheduleDeferred} run once the batch is exhausted, such that components like the flow
+ * engine can coalesce their work into a single invocation per timestamp.
+ *
+ * <p>
  * This class is not thread-safe and must not be used concurrently by multiple threads.
  */
 public final class SimulationDispatcher implements Dispatcher {
@@ -46,6 +54,21 @@ public final class SimulationDispatcher implements Dispatcher {
      */
     private final TaskQueue queue = new TaskQueue();
 
+    /**
+     * The tasks that are due at the current time, which are being run by {@link #advanceUntilIdle()}.
+     */
+    private final TaskBatch batch = new TaskBatch(256);
+
+    /**
+     * A flag to indicate that {@link #batch} is being run, in which case tasks without delay are appended to it.
+     */
+    private boolean draining;
+
+    /**
+     * The tasks that should run after the tasks that are due at the current time.
+     */
+    private final ArrayList<Runnable> deferred = new ArrayList<>();
+
     /**
      * The current time of the scheduler in milliseconds since epoch.
      */
@@ -56,6 +79,56 @@ public final class SimulationDispatcher implements Dispatcher {
      */
     private int count = 0;
 
+    /**
+     * The number of tasks that this dispatcher has executed, and the number at which the progress is checked next.
+     */
+    private long executedTasks;
+
+    private long nextProgressCheck = PROGRESS_CHECK_INTERVAL;
+
+    /**
+     * The wall-clock time at which the dispatcher was created.
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * The latest progress snapshot, which may be read from other threads.
+     */
+    private volatile SimulationProgress progress;
+
+    /**
+     * The listener to report the progress to, and the number of tasks and wall-clock time between two reports.
+     */
+    private SimulationProgressListener progressListener;
+
+    private long progressTaskInterval = Long.MAX_VALUE;
+    private long progressNanosInterval = Long.MAX_VALUE;
+    private long lastReportTasks;
+    private long lastReportNanos;
+
+    /**
+     * The start of the window over which the rates of the progress are measured.
+     */
+    private long rateWindowNanos = startNanos;
+
+    private long rateWindowTasks;
+    private long rateWindowTime;
+
+    /**
+     * The recorder to which the execution of tasks is recorded, or <code>null</code> if tracing is disabled.
+     */
+    private EventRecorder eventRecorder;
+
+    /**
+     * The maximum number of tasks between two progress checks, which bounds the number of wall-clock reads.
+     */
+    private static final long PROGRESS_CHECK_INTERVAL = 4096;
+
+    /**
+     * The minimum wall-clock duration of the window over which the rates of the progress are measured.
+     */
+    private static final long RATE_WINDOW_NANOS = 250_000_000L;
+
     /**
      * The {@link InstantSource} instance linked to this scheduler.
      */
@@ -68,6 +141,9 @@ public final class SimulationDispatcher implements Dispatcher {
      */
     public SimulationDispatcher(long initialTimeMs) {
         this.currentTime = initialTimeMs;
+        this.progress = new SimulationProgress(initialTimeMs, 0, 0, 0, 0.0, 0.0);
+        this.lastReportNanos = startNanos;
+        this.rateWindowTime = initialTimeMs;
     }
 
     /**
@@ -96,6 +172,59 @@ public final class SimulationDispatcher implements Dispatcher {
         return timeSource;
     }
 
+    /**
+     * Return the latest snapshot of the progress of this dispatcher.
+     *
+     * <p>
+     * This method may be called from any thread. The snapshot is refreshed by the simulation thread at least every
+     * 4096 executed tasks, at every report to the progress listener, and when {@link #advanceUntilIdle()} finishes.
+     */
+    public SimulationProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Set the listener to report the progress of this dispatcher to. The listener is invoked on the simulation thread
+     * after every <code>taskInterval</code> executed tasks or when at least <code>wallClockIntervalMs</code> of
+     * wall-clock time has passed since the previous report, whichever comes first, and when
+     * {@link #advanceUntilIdle()} finishes. The wall-clock time is checked at most every 4096 tasks.
+     *
+     * @param listener The listener to report to, or <code>null</code> to remove the listener.
+     * @param taskInterval The number of executed tasks between two reports.
+     * @param wallClockIntervalMs The wall-clock time between two reports (in milliseconds).
+     */
+    public void setProgressListener(SimulationProgressListener listener, long taskInterval, long wallClockIntervalMs) {
+        if (taskInterval <= 0 || wallClockIntervalMs <= 0) {
+            throw new IllegalArgumentException("Progress intervals must be positive");
+        }
+
+        this.progressListener = listener;
+        this.progressTaskInterval = listener != null ? taskInterval : Long.MAX_VALUE;
+        this.progressNanosInterval = listener != null
+                ? Math.min(wallClockIntervalMs, Long.MAX_VALUE / 1_000_000L) * 1_000_000L
+                : Long.MAX_VALUE;
+        this.lastReportTasks = executedTasks;
+        this.lastReportNanos = System.nanoTime();
+        scheduleProgressCheck();
+    }
+
+    @Override
+    public EventRecorder getEventRecorder() {
+        return eventRecorder;
+    }
+
+    /**
+     * Attach an {@link EventRecorder} to this dispatcher to record the execution of its tasks.
+     * <p>
+     * Components that run on this dispatcher look up the recorder when they are created, so the recorder should be
+     * attached before the simulation is set up.
+     *
+     * @param recorder The recorder to attach, or <code>null</code> to disable tracing.
+     */
+    public void setEventRecorder(EventRecorder recorder) {
+        this.eventRecorder = recorder;
+    }
+
     @Override
     public void schedule(long delayMs, Runnable command) {
         internalSchedule(delayMs, command);
@@ -103,14 +232,23 @@ public final class SimulationDispatcher implements Dispatcher {
 
     @Override
     public DispatcherHandle scheduleCancellable(long delayMs, Runnable command) {
-        long target = currentTime + delayMs;
-        if (target < 0) {
-            target = Long.MAX_VALUE;
-        }
+        return new TaskHandle(delayMs, command);
+    }
 
-        long deadline = target;
-        int id = internalSchedule(delayMs, command);
-        return () -> internalCancel(deadline, id);
+    /**
+     * Schedule the specified {@link Runnable} to run after all tasks that are due at the current time have run.
+     *
+     * <p>
+     * This method is only effective while {@link #advanceUntilIdle()} runs the tasks at the current time. Otherwise,
+     * the task is scheduled to run as soon as possible.
+     */
+    @Override
+    public void scheduleDeferred(Runnable command) {
+        if (draining) {
+            deferred.add(command);
+        } else {
+            internalSchedule(0, command);
+        }
     }
 
     /**
@@ -119,23 +257,64 @@ public final class SimulationDispatcher implements Dispatcher {
      */
     public void advanceUntilIdle() {
         final TaskQueue queue = this.queue;
-
-        while (true) {
-            long deadline = queue.peekDeadline();
-            Runnable task = queue.poll();
-
-            if (task == null) {
-                break;
+        final TaskBatch batch = this.batch;
+        final ArrayList<Runnable> deferred = this.deferred;
+
+        draining = true;
+        try {
+            while (true) {
+                if (batch.isEmpty()) {
+                    if (!deferred.isEmpty()) {
+                        // Deferred tasks run at the same time, after the tasks that were due
+                        for (int i = 0; i < deferred.size(); i++) {
+                            batch.add(count++, deferred.get(i));
+                        }
+                        deferred.clear();
+                        continue;
+                    }
+
+                    if (queue.size() == 0) {
+                        break;
+                    }
+
+                    long deadline = queue.peekDeadline();
+                    currentTime = deadline;
+                    queue.drainTo(deadline, batch);
+                }
+
+                Runnable task = batch.poll();
+
+                // The task may have been cancelled by an earlier task of the batch
+                if (task != null) {
+                    runTask(task, currentTime);
+
+                    if (++executedTasks >= nextProgressCheck) {
+                        checkProgress(false);
+                    }
+                }
+            }
+        } finally {
+            draining = false;
+
+            // Return the remaining tasks to the queue in case a task failed
+            if (!batch.isEmpty() || !deferred.isEmpty()) {
+                batch.requeue(queue, currentTime);
+                for (Runnable task : deferred) {
+                    internalSchedule(0, task);
+                }
+                deferred.clear();
             }
-
-            currentTime = deadline;
-            task.run();
         }
+
+        checkProgress(true);
     }
 
     /**
      * Move the virtual clock of this dispatcher forward by the specified amount, running the scheduled tasks in the
      * meantime.
+     * <p>
+     * The clock is moved to the deadline of every task before it runs, such that the tasks observe the same time and
+     * schedule their follow-ups relative to the same moment as with {@link #advanceUntilIdle}.
      *
      * @param delayMs The amount of time to move the virtual clock forward (in milliseconds).
      * @throws IllegalStateException if passed a negative <code>delay</code>.
@@ -156,8 +335,14 @@ public final class SimulationDispatcher implements Dispatcher {
         while ((deadline = queue.peekDeadline()) < target) {
             Runnable task = queue.poll(); // Cannot be null since while condition is always false on an empty queue
 
-            task.run();
+            // Move the clock before running the task, such that the task schedules its follow-ups relative to its
+            // own deadline
             currentTime = deadline;
+            runTask(task, deadline);
+
+            if (++executedTasks >= nextProgressCheck) {
+                checkProgress(false);
+            }
         }
 
         currentTime = target;
@@ -177,8 +362,84 @@ public final class SimulationDispatcher implements Dispatcher {
                 break;
             }
 
+            runTask(task, currentTime);
+
+            if (++executedTasks >= nextProgressCheck) {
+                checkProgress(false);
+            }
+        }
+    }
+
+    /**
+     * Run the specified task and record its execution if an {@link EventRecorder} is attached.
+     */
+    private void runTask(Runnable task, long time) {
+        final EventRecorder recorder = this.eventRecorder;
+        if (recorder == null) {
             task.run();
+            return;
+        }
+
+        final long start = recorder.nanoTime();
+        task.run();
+        recorder.record(
+                EventRecorder.KIND_TASK,
+                recorder.typeOf(task.getClass()),
+                (int) executedTasks,
+                time,
+                start,
+                recorder.nanoTime() - start);
+    }
+
+    /**
+     * Refresh the progress snapshot and report it to the listener if a report is due.
+     *
+     * @param force A flag to indicate that the listener should be invoked regardless of the report intervals.
+     */
+    private void checkProgress(boolean force) {
+        final long now = System.nanoTime();
+        final long executedTasks = this.executedTasks;
+        final SimulationProgress last = this.progress;
+
+        double tasksPerSecond = last.tasksPerSecond();
+        double virtualTimeRate = last.virtualTimeRate();
+
+        // Measure the rates over windows of at least RATE_WINDOW_NANOS to smooth out short bursts
+        long wallDelta = now - rateWindowNanos;
+        if (wallDelta >= RATE_WINDOW_NANOS || (force && wallDelta > 0)) {
+            tasksPerSecond = (executedTasks - rateWindowTasks) * 1e9 / wallDelta;
+            virtualTimeRate = (currentTime - rateWindowTime) * 1e6 / wallDelta;
+
+            rateWindowNanos = now;
+            rateWindowTasks = executedTasks;
+            rateWindowTime = currentTime;
+        }
+
+        final long elapsed = now - startNanos;
+        final int pendingTasks = queue.size() + batch.size() + deferred.size();
+        final SimulationProgress progress = new SimulationProgress(
+                currentTime, executedTasks, pendingTasks, elapsed, tasksPerSecond, virtualTimeRate);
+        this.progress = progress;
+
+        final SimulationProgressListener listener = this.progressListener;
+        if (listener != null
+                && (force
+                        || executedTasks - lastReportTasks >= progressTaskInterval
+                        || now - lastReportNanos >= progressNanosInterval)) {
+            lastReportTasks = executedTasks;
+            lastReportNanos = now;
+            listener.onProgress(progress);
         }
+
+        scheduleProgressCheck();
+    }
+
+    /**
+     * Determine the number of executed tasks at which the progress is checked next.
+     */
+    private void scheduleProgressCheck() {
+        long untilReport = Math.max(progressTaskInterval - (executedTasks - lastReportTasks), 1);
+        nextProgressCheck = executedTasks + Math.min(untilReport, PROGRESS_CHECK_INTERVAL);
     }
 
     /**
@@ -186,9 +447,25 @@ public final class SimulationDispatcher implements Dispatcher {
      *
      * @param delayMs The time from now until the execution of the task (in milliseconds).
      * @param task The task to execute after the delay.
-     * @return The identifier of the task that can be used together with the timestamp of the task to cancel it.
+     * @return The handle of the task in the queue that can be used together with its identifier to cancel it.
      */
     private int internalSchedule(long delayMs, Runnable task) {
+        long target = computeTarget(delayMs);
+        int id = count++;
+
+        // Tasks without delay are appended to the running batch, since their identifier exceeds those in the batch
+        if (draining && target == currentTime) {
+            batch.add(id, task);
+            return -1;
+        }
+
+        return queue.add(target, id, task);
+    }
+
+    /**
+     * Compute the timestamp at which a task that is scheduled after <code>delayMs</code> should run.
+     */
+    private long computeTarget(long delayMs) {
         if (delayMs < 0) {
             throw new IllegalArgumentException(
                     "Attempted scheduling an event earlier in time (delay " + delayMs + " ms)");
@@ -198,21 +475,54 @@ public final class SimulationDispatcher implements Dispatcher {
         if (target < 0) {
             target = Long.MAX_VALUE;
         }
-
-        int id = count++;
-        queue.add(target, id, task);
-        return id;
+        return target;
     }
 
     /**
-     * Cancel a pending task.
-     *
-     * @param deadline The deadline of the task.
-     * @param id The identifier of the task (returned by {@link #internalSchedule(long, Runnable)}).
-     * @return A boolean indicating whether a task was actually cancelled.
+     * A {@link DispatcherHandle} for a task in the queue or the running batch of a {@link SimulationDispatcher}.
      */
-    private boolean internalCancel(long deadline, int id) {
-        return queue.remove(deadline, id);
+    private final class TaskHandle implements DispatcherHandle {
+        private final Runnable command;
+
+        /**
+         * The handle of the task in the queue, or -1 if the task was added to the running batch.
+         */
+        private int handle;
+
+        private int id;
+
+        TaskHandle(long delayMs, Runnable command) {
+            this.command = command;
+            this.id = count; // The identifier that is assigned to the task by internalSchedule
+            this.handle = internalSchedule(delayMs, command);
+        }
+
+        @Override
+        public void cancel() {
+            // Tasks that are due at the current time may have been moved into the batch
+            if (!queue.cancel(handle, id)) {
+                batch.cancel(id);
+            }
+        }
+
+        @Override
+        public boolean reschedule(long delayMs) {
+            long target = computeTarget(delayMs);
+
+            // Tasks that move to the running batch cannot stay in the queue
+            if (!(draining && target == currentTime) && queue.reschedule(handle, id, target, count)) {
+                id = count++;
+                return true;
+            }
+
+            if (queue.cancel(handle, id) || batch.cancel(id)) {
+                id = count;
+                handle = internalSchedule(delayMs, command);
+                return true;
+            }
+
+            return false;
+        }
     }
 
     /**
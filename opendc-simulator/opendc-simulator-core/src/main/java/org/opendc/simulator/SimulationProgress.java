@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator;
+
+/**
+ * A snapshot of the progress of a {@link SimulationDispatcher}.
+ *
+ * @param currentTime The virtual time of the dispatcher (in milliseconds since epoch).
+ * @param executedTasks The number of tasks that the dispatcher has executed.
+ * @param pendingTasks The number of tasks that are waiting to be executed.
+ * @param elapsedNanos The wall-clock time since the creation of the dispatcher (in nanoseconds).
+ * @param tasksPerSecond The number of tasks executed per wall-clock second over the most recent measurement window.
+ * @param virtualTimeRate The virtual milliseconds simulated per wall-clock millisecond over the most recent
+ *                        measurement window.
+ */
+public record SimulationProgress(
+        long currentTime,
+        long executedTasks,
+        int pendingTasks,
+        long elapsedNanos,
+        double tasksPerSecond,
+        double virtualTimeRate) {
+    /**
+     * Estimate the wall-clock time until the dispatcher reaches the specified virtual time at the current rate.
+     *
+     * @param targetTime The virtual time to reach (in milliseconds since epoch).
+     * @return The estimated wall-clock time in milliseconds, or {@link Long#MAX_VALUE} if the simulation does not
+     *         advance.
+     */
+    public long estimateRemainingMillis(long targetTime) {
+        if (currentTime >= targetTime) {
+            return 0;
+        } else if (virtualTimeRate <= 0) {
+            return Long.MAX_VALUE;
+        }
+
+        return (long) ((targetTime - currentTime) / virtualTimeRate);
+    }
+}
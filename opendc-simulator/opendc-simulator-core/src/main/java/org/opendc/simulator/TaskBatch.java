@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator;
+
+import java.util.Arrays;
+
+/**
+ * The batch of tasks that are due at the current virtual time of a {@link SimulationDispatcher}.
+ *
+ * <p>
+ * Tasks are stored in ascending order of their identifier, which allows a pending task to be found by binary search.
+ * The batch is emptied before the dispatcher advances its clock, after which the arrays are reused for the next
+ * timestamp.
+ */
+final class TaskBatch {
+    private int[] ids;
+    private Runnable[] tasks;
+
+    /**
+     * The index of the next task to run and the index after the last task in the batch.
+     */
+    private int head;
+
+    private int tail;
+
+    TaskBatch(int initialCapacity) {
+        this.ids = new int[initialCapacity];
+        this.tasks = new Runnable[initialCapacity];
+    }
+
+    /**
+     * Determine whether the batch has no more tasks to run.
+     */
+    boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * Return the number of tasks left in the batch, which includes tasks that were cancelled while in the batch.
+     */
+    int size() {
+        return tail - head;
+    }
+
+    /**
+     * Append a task to the batch. The identifier of the task must exceed the identifiers of the tasks in the batch.
+     */
+    void add(int id, Runnable task) {
+        int i = tail;
+        if (i == ids.length) {
+            int newCapacity = i + (i >> 1) + 1;
+            ids = Arrays.copyOf(ids, newCapacity);
+            tasks = Arrays.copyOf(tasks, newCapacity);
+        }
+
+        ids[i] = id;
+        tasks[i] = task;
+        tail = i + 1;
+    }
+
+    /**
+     * Retrieve the next task of the batch, or <code>null</code> if the task was cancelled.
+     */
+    Runnable poll() {
+        int i = head++;
+        Runnable task = tasks[i];
+        tasks[i] = null;
+
+        if (head == tail) {
+            head = 0;
+            tail = 0;
+        }
+
+        return task;
+    }
+
+    /**
+     * Cancel the pending task with the specified identifier.
+     *
+     * @return <code>true</code> if the task was removed, <code>false</code> if the task is not pending in the batch.
+     */
+    boolean cancel(int id) {
+        int i = Arrays.binarySearch(ids, head, tail, id);
+        if (i < 0 || tasks[i] == null) {
+            return false;
+        }
+
+        tasks[i] = null;
+        return true;
+    }
+
+    /**
+     * Move the pending tasks of this batch back into the specified queue.
+     */
+    void requeue(TaskQueue queue, long deadline) {
+        for (int i = head; i < tail; i++) {
+            Runnable task = tasks[i];
+            if (task != null) {
+                queue.add(deadline, ids[i], task);
+                tasks[i] = null;
+            }
+        }
+
+        head = 0;
+        tail = 0;
+    }
+}
@@ -30,6 +30,12 @@ import java.util.Arrays;
  * <p>
  * This class uses a specialized priority queue (as opposed to a generic {@link java.util.PriorityQueue}), which reduces
  * unnecessary allocations in the simulator's hot path.
+ *
+ * <p>
+ * Every entry is assigned a handle when it is added to the queue. The queue keeps track of the slot of each handle in
+ * the heap, such that an entry can be cancelled or rescheduled in logarithmic time using its handle (see
+ * {@link #cancel(int, int)} and {@link #reschedule(int, int, long)}). Handles are reused after their entry leaves the
+ * queue, so these methods also take the identifier of the entry to detect stale handles.
  */
 final class TaskQueue {
     /**
@@ -48,6 +54,29 @@ final class TaskQueue {
      */
     private Runnable[] tasks;
 
+    /**
+     * The handles of the pending tasks.
+     */
+    private int[] handles;
+
+    /**
+     * The slot in the heap of each handle, or -1 if the handle is not in use.
+     */
+    private int[] positions;
+
+    /**
+     * The handles that are not in use and the number of handles that were ever allocated.
+     */
+    private int[] freeHandles;
+
+    private int freeHandleCount = 0;
+    private int handleCount = 0;
+
+    /**
+     * Scratch space for the slots of the entries that are due, used by {@link #drainTo(long, TaskBatch)}.
+     */
+    private int[] scratch = new int[64];
+
     /**
      * The number of elements in the priority queue.
      */
@@ -62,6 +91,9 @@ final class TaskQueue {
         this.deadlines = new long[initialCapacity];
         this.ids = new int[initialCapacity];
         this.tasks = new Runnable[initialCapacity];
+        this.handles = new int[initialCapacity];
+        this.positions = new int[initialCapacity];
+        this.freeHandles = new int[initialCapacity];
     }
 
     /**
@@ -71,27 +103,33 @@ final class TaskQueue {
         this(256);
     }
 
+    /**
+     * Return the number of tasks in the queue.
+     */
+    public int size() {
+        return size;
+    }
+
     /**
      * Add a new task to this queue.
      *
      * @param deadline The deadline of the task.
      * @param id       The identifier of the task.
      * @param task     The {@link Runnable} representing the task to execute.
+     * @return The handle of the task, which can be used to cancel or reschedule the task while it is pending.
      */
-    public void add(long deadline, int id, Runnable task) {
+    public int add(long deadline, int id, Runnable task) {
         int i = size;
-        long[] deadlines = this.deadlines;
 
         if (i >= deadlines.length) {
             grow();
-
-            // Re-fetch the resized array
-            deadlines = this.deadlines;
         }
 
-        siftUp(deadlines, ids, tasks, i, deadline, id, task);
+        int handle = allocateHandle();
+        siftUp(i, deadline, id, task, handle);
 
         size = i + 1;
+        return handle;
     }
 
     /**
@@ -104,13 +142,12 @@ final class TaskQueue {
         final Runnable result = tasks[0];
 
         if (result != null) {
+            releaseHandle(handles[0]);
+
             int n = --size;
 
             if (n > 0) {
-                long[] deadlines = this.deadlines;
-                int[] ids = this.ids;
-
-                siftDown(deadlines, ids, tasks, 0, n, deadlines[n], ids[n], tasks[n]);
+                siftDown(0, n, deadlines[n], ids[n], tasks[n], handles[n]);
             }
 
             // Clear the last element of the queue
@@ -133,47 +170,247 @@ final class TaskQueue {
         return deadlines[0];
     }
 
+    /**
+     * Move all tasks with the specified <code>deadline</code> into the specified batch in order of their identifier.
+     *
+     * <p>
+     * When only few tasks are due, they are polled one at a time. When a large share of the queue is due at the same
+     * time, the tasks are extracted in a single pass and the remaining entries are restored into a heap in linear
+     * time, which avoids a logarithmic sift for every task.
+     *
+     * @param deadline The deadline of the tasks to move, which must be the earliest deadline in the queue.
+     * @param batch The batch to append the tasks to.
+     * @return The number of tasks that were moved.
+     */
+    int drainTo(long deadline, TaskBatch batch) {
+        final long[] deadlines = this.deadlines;
+        final int n = size;
+
+        // The due entries form a subtree at the root of the heap, so only their children need to be visited
+        int[] due = this.scratch;
+        int count = 0;
+        if (n > 0 && deadlines[0] == deadline) {
+            due[count++] = 0;
+        }
+
+        for (int i = 0; i < count; i++) {
+            int child = (due[i] << 1) + 1;
+            for (int c = child; c <= child + 1 && c < n; c++) {
+                if (deadlines[c] == deadline) {
+                    if (count == due.length) {
+                        due = this.scratch = Arrays.copyOf(due, count << 1);
+                    }
+                    due[count++] = c;
+                }
+            }
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        // Bulk extraction only pays off when it replaces more sift work than the rebuild of the heap costs
+        if ((long) count * (32 - Integer.numberOfLeadingZeros(n)) <= n) {
+            for (int i = 0; i < count; i++) {
+                int id = ids[0];
+                batch.add(id, poll());
+            }
+            return count;
+        }
+
+        drainBulk(due, count, batch);
+        return count;
+    }
+
+    /**
+     * Move the entries in the specified slots into the batch and rebuild the heap from the remaining entries.
+     */
+    private void drainBulk(int[] due, int count, TaskBatch batch) {
+        final long[] deadlines = this.deadlines;
+        final int[] ids = this.ids;
+        final Runnable[] tasks = this.tasks;
+        final int[] handles = this.handles;
+        final int[] positions = this.positions;
+
+        // Sort the due entries by identifier, keeping track of their slot in the low bits
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            int slot = due[i];
+            keys[i] = ((long) ids[slot] << 32) | slot;
+        }
+        Arrays.sort(keys);
+
+        for (long key : keys) {
+            int slot = (int) key;
+            batch.add(ids[slot], tasks[slot]);
+            releaseHandle(handles[slot]);
+            tasks[slot] = null;
+        }
+
+        // Compact the remaining entries to the front of the arrays
+        int n = size;
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            Runnable task = tasks[i];
+            if (task == null) {
+                continue;
+            }
+
+            deadlines[k] = deadlines[i];
+            ids[k] = ids[i];
+            tasks[k] = task;
+            handles[k] = handles[i];
+            positions[handles[k]] = k;
+            k++;
+        }
+
+        for (int i = k; i < n; i++) {
+            tasks[i] = null;
+        }
+        size = k;
+
+        // Restore the heap property bottom-up
+        for (int i = (k >>> 1) - 1; i >= 0; i--) {
+            siftDown(i, k, deadlines[i], ids[i], tasks[i], handles[i]);
+        }
+    }
+
     /**
      * Remove the timer entry with the specified <code>deadline</code> and <code>id</code>.
+     * <p>
+     * This method searches the heap for the entry. Prefer {@link #cancel(int, int)} when the handle of the entry is
+     * known.
      */
     public boolean remove(long deadline, int id) {
         long[] deadlines = this.deadlines;
         int[] ids = this.ids;
 
         int size = this.size;
-        int i = -1;
 
         for (int j = 0; j < size; j++) {
             if (deadlines[j] == deadline && ids[j] == id) {
-                i = j;
-                break;
+                removeAt(j);
+                return true;
             }
         }
 
+        return false;
+    }
+
+    /**
+     * Cancel the pending task with the specified handle.
+     *
+     * @param handle The handle of the task returned by {@link #add(long, int, Runnable)}.
+     * @param id The identifier of the task.
+     * @return <code>true</code> if the task was removed, <code>false</code> if the task is no longer pending.
+     */
+    public boolean cancel(int handle, int id) {
+        int i = find(handle, id);
         if (i < 0) {
             return false;
         }
 
+        removeAt(i);
+        return true;
+    }
+
+    /**
+     * Change the deadline of the pending task with the specified handle and assign it a new identifier.
+     * <p>
+     * The new identifier orders the task among the tasks with the same deadline, so a rescheduled task should receive
+     * a fresh identifier to run after the tasks that were scheduled before it, as if it was cancelled and added again.
+     *
+     * @param handle The handle of the task returned by {@link #add(long, int, Runnable)}.
+     * @param id The identifier of the task.
+     * @param deadline The new deadline of the task.
+     * @param newId The new identifier of the task.
+     * @return <code>true</code> if the task was rescheduled, <code>false</code> if the task is no longer pending.
+     */
+    public boolean reschedule(int handle, int id, long deadline, int newId) {
+        int i = find(handle, id);
+        if (i < 0) {
+            return false;
+        }
+
+        long oldDeadline = deadlines[i];
+        Runnable task = tasks[i];
+
+        if (compare(deadline, newId, oldDeadline, id) < 0) {
+            siftUp(i, deadline, newId, task, handle);
+        } else {
+            siftDown(i, size, deadline, newId, task, handle);
+        }
+
+        return true;
+    }
+
+    /**
+     * Find the slot of the entry with the specified handle and identifier, or -1 if the entry is not pending.
+     */
+    private int find(int handle, int id) {
+        if (handle < 0 || handle >= handleCount) {
+            return -1;
+        }
+
+        int i = positions[handle];
+        if (i < 0 || ids[i] != id) {
+            return -1;
+        }
+
+        return i;
+    }
+
+    /**
+     * Remove the entry in the specified slot of the heap.
+     */
+    private void removeAt(int i) {
         Runnable[] tasks = this.tasks;
         int s = size - 1;
         this.size = s;
 
+        releaseHandle(handles[i]);
+
         if (s == i) {
             tasks[i] = null;
         } else {
             long movedDeadline = deadlines[s];
             int movedId = ids[s];
             Runnable movedTask = tasks[s];
+            int movedHandle = handles[s];
 
             tasks[s] = null;
 
-            siftDown(deadlines, ids, tasks, i, s, movedDeadline, movedId, movedTask);
-            if (tasks[i] == movedTask) {
-                siftUp(deadlines, ids, tasks, i, movedDeadline, movedId, movedTask);
+            // Handles are unique, whereas the same task may be scheduled multiple times
+            siftDown(i, s, movedDeadline, movedId, movedTask, movedHandle);
+            if (handles[i] == movedHandle) {
+                siftUp(i, movedDeadline, movedId, movedTask, movedHandle);
             }
         }
+    }
 
-        return true;
+    /**
+     * Obtain an unused handle.
+     */
+    private int allocateHandle() {
+        if (freeHandleCount > 0) {
+            return freeHandles[--freeHandleCount];
+        }
+
+        int handle = handleCount++;
+        if (handle == positions.length) {
+            int newCapacity = handle + (handle >> 1) + 1;
+            positions = Arrays.copyOf(positions, newCapacity);
+            freeHandles = Arrays.copyOf(freeHandles, newCapacity);
+        }
+        return handle;
+    }
+
+    /**
+     * Return the specified handle to the pool of unused handles.
+     */
+    private void releaseHandle(int handle) {
+        positions[handle] = -1;
+        freeHandles[freeHandleCount++] = handle;
     }
 
     /**
@@ -188,13 +425,19 @@ final class TaskQueue {
         deadlines = Arrays.copyOf(deadlines, newCapacity);
         ids = Arrays.copyOf(ids, newCapacity);
         tasks = Arrays.copyOf(tasks, newCapacity);
+        handles = Arrays.copyOf(handles, newCapacity);
     }
 
     /**
      * Sift up an entry in the heap.
      */
-    private static void siftUp(
-            long[] deadlines, int[] ids, Runnable[] tasks, int k, long deadline, int id, Runnable task) {
+    private void siftUp(int k, long deadline, int id, Runnable task, int handle) {
+        final long[] deadlines = this.deadlines;
+        final int[] ids = this.ids;
+        final Runnable[] tasks = this.tasks;
+        final int[] handles = this.handles;
+        final int[] positions = this.positions;
+
         while (k > 0) {
             int parent = (k - 1) >>> 1;
             long parentDeadline = deadlines[parent];
@@ -207,6 +450,9 @@ final class TaskQueue {
             deadlines[k] = parentDeadline;
             ids[k] = parentId;
             tasks[k] = tasks[parent];
+            int parentHandle = handles[parent];
+            handles[k] = parentHandle;
+            positions[parentHandle] = k;
 
             k = parent;
         }
@@ -214,13 +460,20 @@ final class TaskQueue {
         deadlines[k] = deadline;
         ids[k] = id;
         tasks[k] = task;
+        handles[k] = handle;
+        positions[handle] = k;
     }
 
     /**
      * Sift down an entry in the heap.
      */
-    private static void siftDown(
-            long[] deadlines, int[] ids, Runnable[] tasks, int k, int n, long deadline, int id, Runnable task) {
+    private void siftDown(int k, int n, long deadline, int id, Runnable task, int handle) {
+        final long[] deadlines = this.deadlines;
+        final int[] ids = this.ids;
+        final Runnable[] tasks = this.tasks;
+        final int[] handles = this.handles;
+        final int[] positions = this.positions;
+
         int half = n >>> 1; // loop while a non-leaf
 
         while (k < half) {
@@ -248,6 +501,9 @@ final class TaskQueue {
             deadlines[k] = childDeadline;
             ids[k] = childId;
             tasks[k] = tasks[child];
+            int childHandle = handles[child];
+            handles[k] = childHandle;
+            positions[childHandle] = k;
 
             k = child;
         }
@@ -255,6 +511,8 @@ final class TaskQueue {
         deadlines[k] = deadline;
         ids[k] = id;
         tasks[k] = task;
+        handles[k] = handle;
+        positions[handle] = k;
     }
 
     /**
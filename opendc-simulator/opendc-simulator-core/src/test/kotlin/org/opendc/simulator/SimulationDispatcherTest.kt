@@ -22,9 +22,13 @@
 
 package org.opendc.simulator
 
+import org.junit.jupiter.api.Assertions.assertAll
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.assertThrows
+import org.opendc.common.DispatcherHandle
 import java.time.Instant
 
 /**
@@ -74,6 +78,62 @@ class SimulationDispatcherTest {
         assertEquals(Instant.ofEpochMilli(2), scheduler.timeSource.instant())
     }
 
+    /**
+     * Test that [SimulationDispatcher.advanceBy] runs the tasks at their own deadline, such that the tasks they
+     * schedule are relative to that deadline.
+     */
+    @Test
+    fun testAdvanceByTaskTime() {
+        val scheduler = SimulationDispatcher()
+        val times = mutableListOf<Long>()
+
+        scheduler.schedule(3) {
+            times.add(scheduler.currentTime)
+            scheduler.schedule(3) { times.add(scheduler.currentTime) }
+        }
+
+        scheduler.advanceBy(10)
+        assertEquals(listOf(3L, 6L), times)
+    }
+
+    /**
+     * Test that the tasks that [SimulationDispatcher.advanceBy] runs observe their deadline via the time source.
+     */
+    @Test
+    fun testAdvanceByTimeSource() {
+        val scheduler = SimulationDispatcher()
+        val times = mutableListOf<Long>()
+
+        scheduler.schedule(2) { times.add(scheduler.timeSource.millis()) }
+        scheduler.schedule(5) { times.add(scheduler.timeSource.millis()) }
+
+        scheduler.advanceBy(7)
+        assertEquals(listOf(2L, 5L), times)
+        assertEquals(7, scheduler.currentTime)
+    }
+
+    /**
+     * Test that [SimulationDispatcher.advanceBy] leaves the follow-ups of a task that are due after the target for the
+     * next call, relative to the deadline of the task.
+     */
+    @Test
+    fun testAdvanceByFollowUpAfterTarget() {
+        val scheduler = SimulationDispatcher()
+        val times = mutableListOf<Long>()
+
+        scheduler.schedule(3) {
+            scheduler.schedule(4) { times.add(scheduler.currentTime) }
+        }
+
+        scheduler.advanceBy(5)
+        assertEquals(emptyList<Long>(), times)
+
+        scheduler.advanceBy(2)
+        assertEquals(emptyList<Long>(), times)
+        scheduler.runCurrent()
+        assertEquals(listOf(7L), times)
+    }
+
     /**
      * Test large delays.
      */
@@ -104,4 +164,136 @@ class SimulationDispatcherTest {
         assertThrows<IllegalArgumentException> { scheduler.schedule(-100) { } }
         assertThrows<IllegalArgumentException> { scheduler.advanceBy(-100) }
     }
+
+    /**
+     * Test that the tasks at the same timestamp run in order of scheduling, including the tasks that are scheduled
+     * without delay while the timestamp is running.
+     */
+    @Test
+    fun testSameTimestampOrder() {
+        val scheduler = SimulationDispatcher()
+        val order = mutableListOf<Int>()
+
+        scheduler.schedule(10) {
+            order.add(0)
+            scheduler.schedule(0) { order.add(3) }
+        }
+        scheduler.schedule(10) { order.add(1) }
+        scheduler.schedule(5) { scheduler.schedule(5) { order.add(2) } }
+        scheduler.schedule(11) { order.add(4) }
+
+        scheduler.advanceUntilIdle()
+        assertEquals(listOf(0, 1, 2, 3, 4), order)
+        assertEquals(11, scheduler.currentTime)
+    }
+
+    /**
+     * Test that a task can cancel another task that is due at the same timestamp.
+     */
+    @Test
+    fun testCancelSameTimestamp() {
+        val scheduler = SimulationDispatcher()
+        var count = 0
+
+        lateinit var handle: DispatcherHandle
+        scheduler.schedule(10) { handle.cancel() }
+        handle = scheduler.scheduleCancellable(10) { count += 1 }
+        scheduler.schedule(10) {
+            val inner = scheduler.scheduleCancellable(0) { count += 1 }
+            inner.cancel()
+        }
+
+        scheduler.advanceUntilIdle()
+        assertEquals(0, count)
+    }
+
+    /**
+     * Test that a rescheduled task runs after the tasks that were already scheduled for its new timestamp.
+     */
+    @Test
+    fun testReschedule() {
+        val scheduler = SimulationDispatcher()
+        val log = mutableListOf<String>()
+
+        val a = scheduler.scheduleCancellable(10) { log += "a at ${scheduler.currentTime}" }
+        scheduler.schedule(10) { log += "b at ${scheduler.currentTime}" }
+        val c = scheduler.scheduleCancellable(5) { log += "c at ${scheduler.currentTime}" }
+        scheduler.schedule(20) { log += "d at ${scheduler.currentTime}" }
+
+        assertTrue(a.reschedule(10))
+        assertTrue(c.reschedule(20))
+
+        // A task that is due in the running batch can be moved to a later point in the same timestamp
+        lateinit var e: DispatcherHandle
+        scheduler.schedule(30) { assertTrue(e.reschedule(0)) }
+        e = scheduler.scheduleCancellable(30) { log += "e at ${scheduler.currentTime}" }
+        scheduler.schedule(30) { log += "f at ${scheduler.currentTime}" }
+
+        scheduler.advanceUntilIdle()
+
+        assertFalse(a.reschedule(10))
+        assertEquals(listOf("b at 10", "a at 10", "d at 20", "c at 20", "f at 30", "e at 30"), log)
+    }
+
+    /**
+     * Test that deferred tasks run after all tasks that are due at the same timestamp.
+     */
+    @Test
+    fun testScheduleDeferred() {
+        val scheduler = SimulationDispatcher()
+        val order = mutableListOf<String>()
+
+        scheduler.schedule(10) {
+            scheduler.scheduleDeferred { order.add("deferred") }
+            scheduler.schedule(0) { order.add("immediate") }
+        }
+        scheduler.schedule(10) { order.add("due") }
+        scheduler.schedule(20) { order.add("later") }
+
+        scheduler.advanceUntilIdle()
+        assertEquals(listOf("due", "immediate", "deferred", "later"), order)
+    }
+
+    /**
+     * Test that many tasks at the same timestamp run in order of scheduling.
+     */
+    @Test
+    fun testBurst() {
+        val scheduler = SimulationDispatcher()
+        val order = mutableListOf<Int>()
+
+        for (i in 0 until 1000) {
+            val delay = if (i % 10 == 0) 5L else 10L
+            scheduler.schedule(delay) { order.add(i) }
+        }
+
+        scheduler.advanceUntilIdle()
+        assertEquals((0 until 1000).sortedBy { if (it % 10 == 0) 0 else 1 }, order)
+    }
+
+    /**
+     * Test that the progress of the dispatcher is reported to the listener.
+     */
+    @Test
+    fun testProgress() {
+        val scheduler = SimulationDispatcher()
+        val reports = mutableListOf<SimulationProgress>()
+
+        scheduler.setProgressListener({ reports.add(it) }, 100, Long.MAX_VALUE)
+
+        for (i in 0 until 1000) {
+            scheduler.schedule(i.toLong()) {}
+        }
+
+        scheduler.advanceUntilIdle()
+
+        assertAll(
+            { assertEquals(11, reports.size) },
+            { assertEquals((1..10).map { it * 100L } + 1000L, reports.map { it.executedTasks }) },
+            { assertEquals(999, scheduler.progress.currentTime) },
+            { assertEquals(1000, scheduler.progress.executedTasks) },
+            { assertEquals(0, scheduler.progress.pendingTasks) },
+            { assertEquals(0, scheduler.progress.estimateRemainingMillis(999)) },
+        )
+    }
 }
@@ -26,8 +26,11 @@ import org.junit.jupiter.api.Assertions.assertAll
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertFalse
 import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
+import java.util.PriorityQueue
+import java.util.Random
 
 /**
  * Test suite for the [TaskQueue] class.
@@ -231,4 +234,183 @@ class TaskQueueTest {
             { assertFalse(queue.remove(58, 2)) },
         )
     }
+
+    /**
+     * Test that we can cancel an entry using its handle.
+     */
+    @Test
+    fun testCancel() {
+        val entryA = Runnable {}
+        queue.add(100, 1, entryA)
+
+        val entryB = Runnable {}
+        val handleB = queue.add(20, 2, entryB)
+
+        val entryC = Runnable {}
+        queue.add(58, 3, entryC)
+
+        assertAll(
+            { assertTrue(queue.cancel(handleB, 2)) },
+            { assertFalse(queue.cancel(handleB, 2)) },
+            { assertEquals(58, queue.peekDeadline()) },
+            { assertEquals(entryC, queue.poll()) },
+            { assertEquals(entryA, queue.poll()) },
+            { assertNull(queue.poll()) },
+        )
+    }
+
+    /**
+     * Test that a handle that is reused by another entry does not cancel that entry.
+     */
+    @Test
+    fun testCancelStaleHandle() {
+        val handleA = queue.add(100, 1, Runnable {})
+        queue.poll()
+
+        val entryB = Runnable {}
+        val handleB = queue.add(20, 2, entryB)
+
+        assertAll(
+            { assertEquals(handleA, handleB) },
+            { assertFalse(queue.cancel(handleA, 1)) },
+            { assertEquals(entryB, queue.poll()) },
+        )
+    }
+
+    /**
+     * Test that we can move an entry to an earlier and a later deadline.
+     */
+    @Test
+    fun testReschedule() {
+        val entryA = Runnable {}
+        val handleA = queue.add(100, 1, entryA)
+
+        val entryB = Runnable {}
+        val handleB = queue.add(20, 2, entryB)
+
+        val entryC = Runnable {}
+        queue.add(58, 3, entryC)
+
+        assertAll(
+            { assertTrue(queue.reschedule(handleA, 1, 10, 4)) },
+            { assertTrue(queue.reschedule(handleB, 2, 200, 5)) },
+            { assertFalse(queue.reschedule(handleB, 2, 30, 6)) },
+            { assertEquals(10, queue.peekDeadline()) },
+            { assertEquals(entryA, queue.poll()) },
+            { assertEquals(entryC, queue.poll()) },
+            { assertEquals(entryB, queue.poll()) },
+            { assertNull(queue.poll()) },
+        )
+    }
+
+    /**
+     * Test that a rescheduled entry runs after the entries that were already pending for the same deadline.
+     */
+    @Test
+    fun testRescheduleEqualDeadlines() {
+        val entryA = Runnable {}
+        val handleA = queue.add(10, 1, entryA)
+
+        val entryB = Runnable {}
+        queue.add(20, 2, entryB)
+
+        val entryC = Runnable {}
+        val handleC = queue.add(20, 3, entryC)
+
+        val entryD = Runnable {}
+        queue.add(30, 4, entryD)
+
+        assertAll(
+            { assertTrue(queue.reschedule(handleA, 1, 20, 5)) },
+            { assertTrue(queue.reschedule(handleC, 3, 20, 6)) },
+            { assertFalse(queue.reschedule(handleA, 1, 30, 7)) },
+            { assertEquals(entryB, queue.poll()) },
+            { assertEquals(entryA, queue.poll()) },
+            { assertEquals(entryC, queue.poll()) },
+            { assertEquals(entryD, queue.poll()) },
+            { assertNull(queue.poll()) },
+        )
+    }
+
+    /**
+     * Test that the tasks due at the earliest deadline are drained in order of their identifier, while the remaining
+     * tasks stay cancellable.
+     */
+    @Test
+    fun testDrainTo() {
+        val due = List(20) { Runnable {} }
+        val handles = IntArray(40)
+        for (i in 0 until 40) {
+            val id = 39 - i
+            handles[id] = queue.add(if (id % 2 == 0) 10 else 20, id, if (id % 2 == 0) due[id / 2] else Runnable {})
+        }
+
+        val batch = TaskBatch(4)
+        assertEquals(20, queue.drainTo(10, batch))
+        for (task in due) {
+            assertEquals(task, batch.poll())
+        }
+
+        assertAll(
+            { assertTrue(batch.isEmpty) },
+            { assertEquals(20, queue.size()) },
+            { assertEquals(20, queue.peekDeadline()) },
+            { assertTrue(queue.cancel(handles[1], 1)) },
+            { assertFalse(queue.cancel(handles[2], 2)) },
+            { assertEquals(19, queue.size()) },
+        )
+    }
+
+    /**
+     * Test that a random sequence of operations produces the same order as a reference priority queue. All entries
+     * share the same task, like the invocations of an engine that schedules itself.
+     */
+    @Test
+    fun testRandomOperations() {
+        val random = Random(1)
+        val reference = PriorityQueue<Triple<Long, Int, Runnable>>(compareBy({ it.first }, { it.second }))
+        val pending = mutableMapOf<Int, Pair<Int, Triple<Long, Int, Runnable>>>()
+        val task = Runnable {}
+        var id = 0
+
+        repeat(10_000) {
+            when (random.nextInt(4)) {
+                0, 1 -> {
+                    val entry = Triple(random.nextInt(1000).toLong(), id++, task)
+                    pending[entry.second] = queue.add(entry.first, entry.second, entry.third) to entry
+                    reference.add(entry)
+                }
+                2 -> {
+                    val (handle, entry) = pending.values.elementAtOrNull(random.nextInt(pending.size + 1)) ?: return@repeat
+                    val deadline = random.nextInt(1000).toLong()
+                    val updated = Triple(deadline, id++, entry.third)
+                    assertTrue(queue.reschedule(handle, entry.second, deadline, updated.second))
+                    reference.remove(entry)
+                    reference.add(updated)
+                    pending.remove(entry.second)
+                    pending[updated.second] = handle to updated
+                }
+                else -> {
+                    val (handle, entry) = pending.values.elementAtOrNull(random.nextInt(pending.size + 1)) ?: return@repeat
+                    assertTrue(queue.cancel(handle, entry.second))
+                    reference.remove(entry)
+                    pending.remove(entry.second)
+                }
+            }
+
+            if (random.nextInt(8) == 0) {
+                val expected = reference.poll()
+                assertEquals(expected?.first ?: Long.MAX_VALUE, queue.peekDeadline())
+                assertEquals(expected?.third, queue.poll())
+                expected?.let { pending.remove(it.second) }
+            }
+        }
+
+        while (true) {
+            val expected = reference.poll() ?: break
+            assertEquals(expected.first, queue.peekDeadline())
+            assertEquals(expected.third, queue.poll())
+        }
+        assertNull(queue.poll())
+    }
 }
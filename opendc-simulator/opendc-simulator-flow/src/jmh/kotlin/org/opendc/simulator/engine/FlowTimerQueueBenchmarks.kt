@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.engine
+
+import org.opendc.simulator.SimulationDispatcher
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.SplittableRandom
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmark suite for the [FlowTimerQueue] implementations.
+ *
+ * Each node repeatedly sets a timer for the end of its current trace fragment. In the Bitbrains-style trace, every
+ * fragment takes 5 minutes. In the Azure-style trace, fragments take a random multiple of 5 minutes. In both traces,
+ * 5% of the fragments have an arbitrary duration, such that not all deadlines fall on the same boundaries.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 2, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 3, timeUnit = TimeUnit.SECONDS)
+class FlowTimerQueueBenchmarks {
+    @Param("heap", "wheel", "wheel-1s")
+    private lateinit var queueType: String
+
+    @Param("bitbrains", "azure")
+    private lateinit var trace: String
+
+    @Param("1000", "100000")
+    private var nodeCount: Int = 0
+
+    private lateinit var nodes: Array<FlowNode>
+
+    @Setup
+    fun setUp() {
+        val graph = FlowEngine.create(SimulationDispatcher()).newGraph(false)
+        nodes = Array(nodeCount) { TimerNode(graph) }
+    }
+
+    @Benchmark
+    fun benchmarkTimers(): Long {
+        val queue =
+            when (queueType) {
+                "heap" -> HeapFlowTimerQueue()
+                "wheel" -> TimingWheelFlowTimerQueue()
+                else -> TimingWheelFlowTimerQueue(1000)
+            }
+        val azure = trace == "azure"
+        val random = SplittableRandom(7)
+
+        for (node in nodes) {
+            node.deadline = FRAGMENT * (1 + random.nextInt(12))
+            queue.enqueue(node)
+        }
+
+        var polls = 0L
+        repeat(ROUNDS) {
+            val now = queue.peekDeadline()
+            while (true) {
+                val node = queue.poll(now) ?: break
+                var duration = if (azure) FRAGMENT * (1 + random.nextInt(12)) else FRAGMENT
+                if (random.nextInt(20) == 0) {
+                    duration = 1L + random.nextInt(2 * FRAGMENT.toInt())
+                }
+
+                node.deadline = now + duration
+                queue.enqueue(node)
+                polls++
+            }
+        }
+
+        return polls
+    }
+
+    /**
+     * A [FlowNode] whose timer is driven by the benchmark.
+     */
+    private class TimerNode(graph: FlowGraph) : FlowNode(graph) {
+        override fun onUpdate(now: Long): Long = Long.MAX_VALUE
+    }
+
+    private companion object {
+        const val ROUNDS = 1000
+        const val FRAGMENT = 300_000L
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator;
+
+import java.util.Arrays;
+import org.opendc.simulator.engine.FlowConsumer;
+import org.opendc.simulator.engine.FlowEdge;
+import org.opendc.simulator.engine.FlowGraph;
+import org.opendc.simulator.engine.FlowNode;
+import org.opendc.simulator.engine.FlowSupplier;
+
+/**
+ * A {@link FlowNode} that aggregates the demand of many consumers towards a single supplier that is rarely saturated,
+ * such as the power supplies of the hosts in a cluster.
+ * <p>
+ * Unlike the {@link Multiplexer}, this node does not keep the demands ordered. Instead, it maintains the total demand
+ * using the difference of every demand change, and supplies every consumer its full demand as long as the total
+ * demand fits within the capacity of the supplier. A demand change therefore costs O(1) and only the consumer that
+ * changed receives new supply. The total demand is periodically re-summed to bound the rounding error of the
+ * accumulated differences.
+ * <p>
+ * When the total demand exceeds the capacity, the supply is divided using max-min fair sharing over all consumers,
+ * which costs O(n log n) per update until the demand fits the capacity again.
+ */
+public class AggregatingMultiplexer extends FlowNode implements FlowSupplier, FlowConsumer {
+    private FlowEdge[] consumerEdges;
+    private FlowEdge supplierEdge;
+
+    private double[] demands; // What is demanded by the consumers
+    private double[] supplies; // What is supplied to the consumers
+
+    /**
+     * The slots whose demand changed since the last update, and whether a slot is already part of that list.
+     */
+    private int[] dirtySlots;
+
+    private int[] processingSlots;
+    private boolean[] dirty;
+    private int dirtyCount = 0;
+
+    /**
+     * A flag to indicate that the supply of all consumers should be re-evaluated during the next update (e.g., after
+     * consumers were removed or the supply was shared in the previous update).
+     */
+    private boolean fullUpdate = true;
+
+    /**
+     * Scratch buffer for the sorted demands when the supply is shared.
+     */
+    private double[] sortedDemands;
+
+    /**
+     * The number of demand changes that were accumulated into the total demand since it was last re-summed.
+     */
+    private int deltaCount = 0;
+
+    private int consumerCount = 0; // The number of occupied slots
+
+    private double totalDemand; // The total demand of all the consumers
+    private double totalSupply; // The total supply from the supplier
+    private double capacity; // What is the max capacity
+
+    public AggregatingMultiplexer(FlowGraph graph) {
+        this(graph, 16);
+    }
+
+    /**
+     * Construct an {@link AggregatingMultiplexer} with room for the specified number of consumers before growing.
+     *
+     * @param graph The {@link FlowGraph} this multiplexer belongs to.
+     * @param initialCapacity The initial number of consumer slots.
+     */
+    public AggregatingMultiplexer(FlowGraph graph, int initialCapacity) {
+        super(graph);
+
+        this.consumerEdges = new FlowEdge[initialCapacity];
+        this.demands = new double[initialCapacity];
+        this.supplies = new double[initialCapacity];
+        this.dirtySlots = new int[initialCapacity];
+        this.processingSlots = new int[initialCapacity];
+        this.dirty = new boolean[initialCapacity];
+        this.sortedDemands = new double[initialCapacity];
+    }
+
+    public double getTotalDemand() {
+        return totalDemand;
+    }
+
+    public double getTotalSupply() {
+        return totalSupply;
+    }
+
+    public double getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Return the number of consumers connected to this multiplexer.
+     */
+    public int getConsumerCount() {
+        return consumerCount;
+    }
+
+    @Override
+    public long onUpdate(long now) {
+        final int n = this.consumerCount;
+
+        // Bound the rounding error of the accumulated demand changes, which amortizes to O(1) per change
+        if (this.deltaCount >= n) {
+            this.deltaCount = 0;
+            this.totalDemand = sum(this.demands, n);
+        }
+
+        // Take the pending demand changes before pushing any supply, since consumers may push new demand in response
+        int[] changed = this.dirtySlots;
+        int changedCount = this.dirtyCount;
+        this.dirtySlots = this.processingSlots;
+        this.processingSlots = changed;
+        this.dirtyCount = 0;
+
+        final boolean[] dirty = this.dirty;
+        for (int i = 0; i < changedCount; i++) {
+            dirty[changed[i]] = false;
+        }
+
+        double totalSupply;
+        if (this.totalDemand > this.capacity) {
+            // The supplier is saturated, so the supply of every consumer depends on the demand of all others
+            double level = waterLevel(n);
+            for (int i = 0; i < n; i++) {
+                updateSupply(i, level);
+            }
+
+            this.fullUpdate = true;
+            totalSupply = this.capacity;
+        } else {
+            if (this.fullUpdate) {
+                this.fullUpdate = false;
+
+                for (int i = 0; i < n; i++) {
+                    updateSupply(i, Double.POSITIVE_INFINITY);
+                }
+            } else {
+                for (int i = 0; i < changedCount; i++) {
+                    updateSupply(changed[i], Double.POSITIVE_INFINITY);
+                }
+            }
+
+            totalSupply = this.totalDemand;
+        }
+
+        // Only update supplier if supply has changed
+        if (this.totalSupply != totalSupply) {
+            this.totalSupply = totalSupply;
+
+            pushDemand(this.supplierEdge, this.totalSupply);
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Push the supply capped at the specified level to the consumer in the specified slot if it differs from its
+     * current supply.
+     */
+    private void updateSupply(int slot, double level) {
+        // Consumers may be removed while pushing supply, which is handled by a full update afterwards
+        if (slot >= this.consumerCount) {
+            return;
+        }
+
+        double supply = Math.min(this.demands[slot], level);
+
+        if (supply != this.supplies[slot]) {
+            this.supplies[slot] = supply;
+            this.consumerEdges[slot].pushSupply(supply);
+        }
+    }
+
+    /**
+     * Compute the share of the consumers that are capped by max-min fair sharing of the capacity.
+     */
+    private double waterLevel(int n) {
+        final double[] sorted = this.sortedDemands;
+        System.arraycopy(this.demands, 0, sorted, 0, n);
+        Arrays.sort(sorted, 0, n);
+
+        double remaining = this.capacity;
+        for (int i = 0; i < n; i++) {
+            double share = remaining / (n - i);
+            if (sorted[i] > share) {
+                return share;
+            }
+            remaining -= sorted[i];
+        }
+
+        return Double.POSITIVE_INFINITY;
+    }
+
+    private static double sum(double[] values, int n) {
+        double sum = 0.0;
+        for (int i = 0; i < n; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Increase the number of consumer slots.
+     */
+    private void grow() {
+        int oldCapacity = this.consumerEdges.length;
+        int newCapacity = oldCapacity + Math.max(oldCapacity >> 1, 1);
+
+        this.consumerEdges = Arrays.copyOf(this.consumerEdges, newCapacity);
+        this.demands = Arrays.copyOf(this.demands, newCapacity);
+        this.supplies = Arrays.copyOf(this.supplies, newCapacity);
+        this.dirtySlots = Arrays.copyOf(this.dirtySlots, newCapacity);
+        this.processingSlots = Arrays.copyOf(this.processingSlots, newCapacity);
+        this.dirty = Arrays.copyOf(this.dirty, newCapacity);
+        this.sortedDemands = new double[newCapacity];
+    }
+
+    /**
+     * Add a new consumer.
+     * Set its demand and supply to 0.0
+     */
+    @Override
+    public void addConsumerEdge(FlowEdge consumerEdge) {
+        int idx = this.consumerCount;
+        if (idx == this.consumerEdges.length) {
+            grow();
+        }
+
+        this.consumerEdges[idx] = consumerEdge;
+        this.demands[idx] = 0.0;
+        this.supplies[idx] = 0.0;
+        consumerEdge.setConsumerIndex(idx);
+
+        this.consumerCount = idx + 1;
+    }
+
+    @Override
+    public void addSupplierEdge(FlowEdge supplierEdge) {
+        this.supplierEdge = supplierEdge;
+        this.capacity = supplierEdge.getCapacity();
+        this.totalSupply = 0;
+        this.fullUpdate = true;
+
+        this.invalidate();
+    }
+
+    /**
+     * Remove a consumer by moving the consumer in the last slot into the slot of the removed consumer.
+     */
+    @Override
+    public void removeConsumerEdge(FlowEdge consumerEdge) {
+        int idx = indexOf(consumerEdge);
+
+        if (idx == -1) {
+            return;
+        }
+
+        this.totalDemand -= this.demands[idx];
+        this.deltaCount++;
+
+        int last = --this.consumerCount;
+        if (idx != last) {
+            FlowEdge moved = this.consumerEdges[last];
+
+            this.consumerEdges[idx] = moved;
+            this.demands[idx] = this.demands[last];
+            this.supplies[idx] = this.supplies[last];
+            moved.setConsumerIndex(idx);
+        }
+
+        this.consumerEdges[last] = null;
+        consumerEdge.setConsumerIndex(-1);
+
+        // Slots have moved, so the pending changes are superseded by a full update
+        for (int i = 0; i < this.dirtyCount; i++) {
+            this.dirty[this.dirtySlots[i]] = false;
+        }
+        this.dirtyCount = 0;
+        this.fullUpdate = true;
+
+        this.invalidate();
+    }
+
+    @Override
+    public void removeSupplierEdge(FlowEdge supplierEdge) {
+        this.supplierEdge = null;
+        this.capacity = 0;
+        this.totalSupply = 0;
+        this.fullUpdate = true;
+    }
+
+    @Override
+    public void handleDemand(FlowEdge consumerEdge, double newDemand) {
+        int idx = indexOf(consumerEdge);
+
+        if (idx == -1) {
+            throw new IllegalArgumentException("Demand pushed by an unknown consumer");
+        }
+
+        double prevDemand = this.demands[idx];
+        this.demands[idx] = newDemand;
+
+        if (!this.dirty[idx]) {
+            this.dirty[idx] = true;
+            this.dirtySlots[this.dirtyCount++] = idx;
+        }
+
+        this.totalDemand += (newDemand - prevDemand);
+        this.deltaCount++;
+        this.invalidate();
+    }
+
+    /**
+     * The supply is divided based on the capacity of the supplier, so a change of the supply does not affect the
+     * consumers.
+     */
+    @Override
+    public void handleSupply(FlowEdge supplierEdge, double newSupply) {}
+
+    @Override
+    public void pushDemand(FlowEdge supplierEdge, double newDemand) {
+        this.supplierEdge.pushDemand(newDemand);
+    }
+
+    @Override
+    public void pushSupply(FlowEdge consumerEdge, double newSupply) {
+        int idx = indexOf(consumerEdge);
+
+        if (idx == -1) {
+            throw new IllegalArgumentException("Supply pushed to an unknown consumer");
+        }
+
+        this.supplies[idx] = newSupply;
+        consumerEdge.pushSupply(newSupply);
+    }
+
+    /**
+     * Return the slot of the specified consumer edge or -1 if the edge is not connected to this multiplexer.
+     */
+    private int indexOf(FlowEdge consumerEdge) {
+        int idx = consumerEdge.getConsumerIndex();
+
+        if (idx < 0 || idx >= this.consumerCount || this.consumerEdges[idx] != consumerEdge) {
+            return -1;
+        }
+
+        return idx;
+    }
+}
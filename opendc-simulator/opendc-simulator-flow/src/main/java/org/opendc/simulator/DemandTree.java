@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator;
+
+import java.util.Arrays;
+
+/**
+ * An order-maintaining index over the demands of the consumers of a {@link Multiplexer}.
+ * <p>
+ * The index is a treap stored in primitive arrays and addressed by consumer slot. Nodes are ordered by demand (ties
+ * are broken by slot) and every node tracks the size and total demand of its subtree. This allows the water level of
+ * max-min fair sharing to be found using a single descent of the tree, such that a single demand change costs
+ * O(log n) instead of re-sorting all consumers.
+ */
+final class DemandTree {
+    private static final int NIL = -1;
+
+    private double[] keys;
+    private int[] priorities;
+    private int[] left;
+    private int[] right;
+    private int[] counts;
+    private double[] sums;
+
+    private int root = NIL;
+
+    /**
+     * The state of the pseudo-random generator for the node priorities. A fixed seed keeps the shape of the tree (and
+     * therefore the rounding of the subtree sums) deterministic across runs.
+     */
+    private int seed = 0x2545F491;
+
+    /**
+     * The result of the last {@link #split(int, double, int)} operation.
+     */
+    private int splitLeft;
+
+    private int splitRight;
+
+    /**
+     * The number of consumers that receive their full demand, as computed by the last call to
+     * {@link #waterLevel(double)}.
+     */
+    private int uncappedCount;
+
+    /**
+     * The total demand of the consumers that receive their full demand, as computed by the last call to
+     * {@link #waterLevel(double)}.
+     */
+    private double uncappedDemand;
+
+    /**
+     * Construct a {@link DemandTree} with the specified initial capacity.
+     *
+     * @param initialCapacity The initial number of slots.
+     */
+    DemandTree(int initialCapacity) {
+        this.keys = new double[initialCapacity];
+        this.priorities = new int[initialCapacity];
+        this.left = new int[initialCapacity];
+        this.right = new int[initialCapacity];
+        this.counts = new int[initialCapacity];
+        this.sums = new double[initialCapacity];
+    }
+
+    /**
+     * Ensure that the tree can hold slots up to (but not including) <code>capacity</code>.
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity <= keys.length) {
+            return;
+        }
+
+        this.keys = Arrays.copyOf(keys, capacity);
+        this.priorities = Arrays.copyOf(priorities, capacity);
+        this.left = Arrays.copyOf(left, capacity);
+        this.right = Arrays.copyOf(right, capacity);
+        this.counts = Arrays.copyOf(counts, capacity);
+        this.sums = Arrays.copyOf(sums, capacity);
+    }
+
+    /**
+     * Return the number of slots in the tree.
+     */
+    int size() {
+        return count(root);
+    }
+
+    /**
+     * Return the total demand of all slots in the tree.
+     */
+    double sum() {
+        return sum(root);
+    }
+
+    /**
+     * Return the number of consumers that received their full demand during the last call to
+     * {@link #waterLevel(double)}.
+     */
+    int getUncappedCount() {
+        return uncappedCount;
+    }
+
+    /**
+     * Return the total demand of the consumers that received their full demand during the last call to
+     * {@link #waterLevel(double)}.
+     */
+    double getUncappedDemand() {
+        return uncappedDemand;
+    }
+
+    /**
+     * Insert the specified slot with the specified demand into the tree.
+     */
+    void insert(int slot, double demand) {
+        keys[slot] = demand;
+        priorities[slot] = nextPriority();
+        left[slot] = NIL;
+        right[slot] = NIL;
+        counts[slot] = 1;
+        sums[slot] = demand;
+
+        split(root, demand, slot);
+        int l = splitLeft;
+        int r = splitRight;
+        root = merge(merge(l, slot), r);
+    }
+
+    /**
+     * Remove the specified slot from the tree.
+     */
+    void remove(int slot) {
+        double demand = keys[slot];
+
+        split(root, demand, slot);
+        int l = splitLeft;
+
+        // The head of the right part is the slot to remove
+        split(splitRight, demand, slot + 1);
+        int r = splitRight;
+
+        root = merge(l, r);
+    }
+
+    /**
+     * Update the demand of the specified slot in the tree.
+     */
+    void update(int slot, double demand) {
+        if (keys[slot] == demand) {
+            return;
+        }
+
+        remove(slot);
+        insert(slot, demand);
+    }
+
+    /**
+     * Compute the water level of max-min fair sharing of <code>capacity</code> over the demands in the tree.
+     * <p>
+     * In sorted order, consumer <code>p</code> is capped if the demand of the consumers before it plus its own demand
+     * for each of the remaining <code>n - p</code> consumers exceeds the capacity. This predicate is monotone, so the
+     * first capped consumer can be found by descending the tree.
+     *
+     * @param capacity The capacity to divide.
+     * @return The share each capped consumer receives, or {@link Double#POSITIVE_INFINITY} if all demands fit.
+     */
+    double waterLevel(double capacity) {
+        final double[] keys = this.keys;
+        final int[] left = this.left;
+        final int[] right = this.right;
+
+        int n = count(root);
+        int k = n;
+        double prefix = sum(root);
+
+        int t = root;
+        int offset = 0;
+        double offsetSum = 0.0;
+
+        while (t != NIL) {
+            int l = left[t];
+            int p = offset + count(l);
+            double pre = offsetSum + sum(l);
+
+            if (pre + keys[t] * (n - p) > capacity) {
+                k = p;
+                prefix = pre;
+                t = l;
+            } else {
+                offset = p + 1;
+                offsetSum = pre + keys[t];
+                t = right[t];
+            }
+        }
+
+        this.uncappedCount = k;
+        this.uncappedDemand = prefix;
+
+        if (k == n) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return (capacity - prefix) / (n - k);
+    }
+
+    /**
+     * Copy the slots at sorted positions <code>from</code> (inclusive) to the end of the tree into <code>out</code>.
+     *
+     * @return The number of slots copied.
+     */
+    int collect(int from, int[] out) {
+        return collect(root, 0, from, out, 0);
+    }
+
+    private int collect(int t, int offset, int from, int[] out, int k) {
+        while (t != NIL) {
+            int p = offset + count(left[t]);
+
+            if (p >= from) {
+                k = collect(left[t], offset, from, out, k);
+                out[k++] = t;
+            }
+
+            offset = p + 1;
+            t = right[t];
+        }
+
+        return k;
+    }
+
+    /**
+     * Split the subtree <code>t</code> into the nodes ordered before <code>(demand, slot)</code> (stored in
+     * {@link #splitLeft}) and the remaining nodes (stored in {@link #splitRight}).
+     */
+    private void split(int t, double demand, int slot) {
+        if (t == NIL) {
+            splitLeft = NIL;
+            splitRight = NIL;
+            return;
+        }
+
+        double key = keys[t];
+        if (key < demand || (key == demand && t < slot)) {
+            split(right[t], demand, slot);
+            right[t] = splitLeft;
+            pull(t);
+            splitLeft = t;
+        } else {
+            split(left[t], demand, slot);
+            left[t] = splitRight;
+            pull(t);
+            splitRight = t;
+        }
+    }
+
+    /**
+     * Merge the subtrees <code>a</code> and <code>b</code>, where all nodes of <code>a</code> are ordered before
+     * the nodes of <code>b</code>.
+     */
+    private int merge(int a, int b) {
+        if (a == NIL) {
+            return b;
+        } else if (b == NIL) {
+            return a;
+        }
+
+        if (priorities[a] > priorities[b]) {
+            right[a] = merge(right[a], b);
+            pull(a);
+            return a;
+        } else {
+            left[b] = merge(a, left[b]);
+            pull(b);
+            return b;
+        }
+    }
+
+    /**
+     * Recompute the aggregates of node <code>t</code> from its children.
+     */
+    private void pull(int t) {
+        int l = left[t];
+        int r = right[t];
+        counts[t] = 1 + count(l) + count(r);
+        sums[t] = sum(l) + keys[t] + sum(r);
+    }
+
+    private int count(int t) {
+        return t == NIL ? 0 : counts[t];
+    }
+
+    private double sum(int t) {
+        return t == NIL ? 0.0 : sums[t];
+    }
+
+    /**
+     * Generate the next priority using a xorshift generator.
+     */
+    private int nextPriority() {
+        int x = seed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        seed = x;
+        return x;
+    }
+}
@@ -22,7 +22,6 @@
 
 package org.opendc.simulator;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import org.opendc.simulator.engine.FlowConsumer;
 import org.opendc.simulator.engine.FlowEdge;
@@ -30,19 +29,79 @@ import org.opendc.simulator.engine.FlowGraph;
 import org.opendc.simulator.engine.FlowNode;
 import org.opendc.simulator.engine.FlowSupplier;
 
+/**
+ * A {@link FlowNode} that divides the supply of a single supplier over multiple consumers.
+ * <p>
+ * Consumers are stored in slots, and each consumer {@link FlowEdge} remembers its slot (see
+ * {@link FlowEdge#getConsumerIndex()}), such that demand changes can be handled without searching for the edge.
+ * When the total demand exceeds the capacity, the supply is divided using max-min fair sharing.
+ * <p>
+ * The demands are kept ordered in a {@link DemandTree}, which allows the multiplexer to recompute the fair share
+ * incrementally: a demand change costs O(log n), and supply is only pushed to the consumers whose allocation actually
+ * changed.
+ */
 public class Multiplexer extends FlowNode implements FlowSupplier, FlowConsumer {
-    private ArrayList<FlowEdge> consumerEdges = new ArrayList<>();
+    private FlowEdge[] consumerEdges;
     private FlowEdge supplierEdge;
 
-    private ArrayList<Double> demands = new ArrayList<>(); // What is demanded by the consumers
-    private ArrayList<Double> supplies = new ArrayList<>(); // What is supplied to the consumers
+    private double[] demands; // What is demanded by the consumers
+    private double[] supplies; // What is supplied to the consumers
+
+    /**
+     * The demands of the consumers ordered by size.
+     */
+    private final DemandTree demandTree;
+
+    /**
+     * The slots whose demand changed since the last update, and whether a slot is already part of that list.
+     */
+    private int[] dirtySlots;
+
+    private int[] processingSlots;
+    private boolean[] dirty;
+    private int dirtyCount = 0;
+
+    /**
+     * A flag to indicate that the supply of all consumers should be re-evaluated during the next update (e.g., after
+     * consumers were added or removed).
+     */
+    private boolean fullUpdate = true;
+
+    /**
+     * Scratch buffer for the slots whose supply may have changed due to a change of the water level.
+     */
+    private int[] affectedSlots;
+
+    private double waterLevel = Double.POSITIVE_INFINITY; // The share of the capped consumers
+    private int uncappedCount = 0; // The number of consumers that receive their full demand
+
+    private int consumerCount = 0; // The number of occupied slots
 
     private double totalDemand; // The total demand of all the consumers
     private double totalSupply; // The total supply from the supplier
     private double capacity; // What is the max capacity
 
     public Multiplexer(FlowGraph graph) {
+        this(graph, 16);
+    }
+
+    /**
+     * Construct a {@link Multiplexer} with room for the specified number of consumers before growing.
+     *
+     * @param graph The {@link FlowGraph} this multiplexer belongs to.
+     * @param initialCapacity The initial number of consumer slots.
+     */
+    public Multiplexer(FlowGraph graph, int initialCapacity) {
         super(graph);
+
+        this.consumerEdges = new FlowEdge[initialCapacity];
+        this.demands = new double[initialCapacity];
+        this.supplies = new double[initialCapacity];
+        this.demandTree = new DemandTree(initialCapacity);
+        this.dirtySlots = new int[initialCapacity];
+        this.processingSlots = new int[initialCapacity];
+        this.dirty = new boolean[initialCapacity];
+        this.affectedSlots = new int[initialCapacity];
     }
 
     public double getTotalDemand() {
@@ -57,20 +116,64 @@ public class Multiplexer extends FlowNode implements FlowSupplier, FlowConsumer
         return capacity;
     }
 
+    /**
+     * Return the number of consumers connected to this multiplexer.
+     */
+    public int getConsumerCount() {
+        return consumerCount;
+    }
+
     public long onUpdate(long now) {
+        final DemandTree demandTree = this.demandTree;
+        final int n = this.consumerCount;
+
+        double level = demandTree.waterLevel(this.capacity);
+        int uncapped = demandTree.getUncappedCount();
+
+        // Take the pending demand changes before pushing any supply, since consumers may push new demand in response
+        int[] changed = this.dirtySlots;
+        int changedCount = this.dirtyCount;
+        this.dirtySlots = this.processingSlots;
+        this.processingSlots = changed;
+        this.dirtyCount = 0;
+
+        final boolean[] dirty = this.dirty;
+        for (int i = 0; i < changedCount; i++) {
+            dirty[changed[i]] = false;
+        }
+
+        if (this.fullUpdate) {
+            this.fullUpdate = false;
 
-        if (this.totalDemand > this.capacity) {
-            redistributeSupply(this.consumerEdges, this.supplies, this.capacity);
+            for (int i = 0; i < n; i++) {
+                updateSupply(i, level);
+            }
         } else {
-            for (int i = 0; i < this.demands.size(); i++) {
-                this.supplies.set(i, this.demands.get(i));
+            if (level != this.waterLevel) {
+                // Only the consumers that are capped before or after the change are affected by a new water level.
+                // The position of an unchanged consumer moves by at most one for every changed consumer.
+                int from = Math.max(0, Math.min(this.uncappedCount, uncapped) - changedCount);
+                int[] affected = this.affectedSlots;
+                int affectedCount = demandTree.collect(from, affected);
+
+                for (int i = 0; i < affectedCount; i++) {
+                    updateSupply(affected[i], level);
+                }
+            }
+
+            for (int i = 0; i < changedCount; i++) {
+                updateSupply(changed[i], level);
             }
         }
 
-        double totalSupply = 0;
-        for (int i = 0; i < this.consumerEdges.size(); i++) {
-            this.pushSupply(this.consumerEdges.get(i), this.supplies.get(i));
-            totalSupply += this.supplies.get(i);
+        this.waterLevel = level;
+        this.uncappedCount = uncapped;
+
+        double totalSupply;
+        if (uncapped == n) {
+            totalSupply = demandTree.sum();
+        } else {
+            totalSupply = demandTree.getUncappedDemand() + level * (n - uncapped);
         }
 
         // Only update supplier if supply has changed
@@ -83,42 +186,38 @@ public class Multiplexer extends FlowNode implements FlowSupplier, FlowConsumer
         return Long.MAX_VALUE;
     }
 
-    private static double redistributeSupply(
-            ArrayList<FlowEdge> consumerEdges, ArrayList<Double> supplies, double capacity) {
-        final long[] consumers = new long[consumerEdges.size()];
-
-        for (int i = 0; i < consumers.length; i++) {
-            FlowEdge consumer = consumerEdges.get(i);
-
-            if (consumer == null) {
-                break;
-            }
-
-            consumers[i] = (Double.doubleToRawLongBits(consumer.getDemand()) << 32) | (i & 0xFFFFFFFFL);
+    /**
+     * Push the max-min fair share for the consumer in the specified slot if it differs from its current supply.
+     */
+    private void updateSupply(int slot, double level) {
+        // Consumers may be removed while pushing supply, which is handled by a full update afterwards
+        if (slot >= this.consumerCount) {
+            return;
         }
-        Arrays.sort(consumers);
-
-        double availableCapacity = capacity;
-        int inputSize = consumers.length;
 
-        for (int i = 0; i < inputSize; i++) {
-            long v = consumers[i];
-            int slot = (int) v;
-            double d = Double.longBitsToDouble((int) (v >> 32));
+        double supply = Math.min(this.demands[slot], level);
 
-            if (d == 0.0) {
-                continue;
-            }
-
-            double availableShare = availableCapacity / (inputSize - i);
-            double r = Math.min(d, availableShare);
-
-            supplies.set(slot, r); // Update the rates
-            availableCapacity -= r;
+        if (supply != this.supplies[slot]) {
+            this.supplies[slot] = supply;
+            this.consumerEdges[slot].pushSupply(supply);
         }
+    }
 
-        // Return the used capacity
-        return capacity - availableCapacity;
+    /**
+     * Increase the number of consumer slots.
+     */
+    private void grow() {
+        int oldCapacity = this.consumerEdges.length;
+        int newCapacity = oldCapacity + Math.max(oldCapacity >> 1, 1);
+
+        this.consumerEdges = Arrays.copyOf(this.consumerEdges, newCapacity);
+        this.demands = Arrays.copyOf(this.demands, newCapacity);
+        this.supplies = Arrays.copyOf(this.supplies, newCapacity);
+        this.dirtySlots = Arrays.copyOf(this.dirtySlots, newCapacity);
+        this.processingSlots = Arrays.copyOf(this.processingSlots, newCapacity);
+        this.dirty = Arrays.copyOf(this.dirty, newCapacity);
+        this.affectedSlots = new int[newCapacity];
+        this.demandTree.ensureCapacity(newCapacity);
     }
 
     /**
@@ -127,9 +226,19 @@ public class Multiplexer extends FlowNode implements FlowSupplier, FlowConsumer
      */
     @Override
     public void addConsumerEdge(FlowEdge consumerEdge) {
-        this.consumerEdges.add(consumerEdge);
-        this.demands.add(0.0);
-        this.supplies.add(0.0);
+        int idx = this.consumerCount;
+        if (idx == this.consumerEdges.length) {
+            grow();
+        }
+
+        this.consumerEdges[idx] = consumerEdge;
+        this.demands[idx] = 0.0;
+        this.supplies[idx] = 0.0;
+        this.demandTree.insert(idx, 0.0);
+        consumerEdge.setConsumerIndex(idx);
+
+        this.consumerCount = idx + 1;
+        this.fullUpdate = true;
 
         this.invalidate();
     }
@@ -139,23 +248,50 @@ public class Multiplexer extends FlowNode implements FlowSupplier, FlowConsumer
         this.supplierEdge = supplierEdge;
         this.capacity = supplierEdge.getCapacity();
         this.totalSupply = 0;
+        this.fullUpdate = true;
 
         this.invalidate();
     }
 
+    /**
+     * Remove a consumer by moving the consumer in the last slot into the slot of the removed consumer.
+     */
     @Override
     public void removeConsumerEdge(FlowEdge consumerEdge) {
-        int idx = this.consumerEdges.indexOf(consumerEdge);
+        int idx = indexOf(consumerEdge);
 
         if (idx == -1) {
             return;
         }
 
-        this.totalDemand -= consumerEdge.getDemand();
+        this.totalDemand -= this.demands[idx];
+
+        final DemandTree demandTree = this.demandTree;
+        demandTree.remove(idx);
+
+        int last = --this.consumerCount;
+        if (idx != last) {
+            FlowEdge moved = this.consumerEdges[last];
+            double movedDemand = this.demands[last];
+
+            demandTree.remove(last);
+            demandTree.insert(idx, movedDemand);
+
+            this.consumerEdges[idx] = moved;
+            this.demands[idx] = movedDemand;
+            this.supplies[idx] = this.supplies[last];
+            moved.setConsumerIndex(idx);
+        }
+
+        this.consumerEdges[last] = null;
+        consumerEdge.setConsumerIndex(-1);
 
-        this.consumerEdges.remove(idx);
-        this.demands.remove(idx);
-        this.supplies.remove(idx);
+        // Slots have moved, so the pending changes are superseded by a full update
+        for (int i = 0; i < this.dirtyCount; i++) {
+            this.dirty[this.dirtySlots[i]] = false;
+        }
+        this.dirtyCount = 0;
+        this.fullUpdate = true;
 
         this.invalidate();
     }
@@ -165,24 +301,30 @@ public class Multiplexer extends FlowNode implements FlowSupplier, FlowConsumer
         this.supplierEdge = null;
         this.capacity = 0;
         this.totalSupply = 0;
+        this.fullUpdate = true;
     }
 
     @Override
     public void handleDemand(FlowEdge consumerEdge, double newDemand) {
-        int idx = consumerEdges.indexOf(consumerEdge);
+        int idx = indexOf(consumerEdge);
 
         if (idx == -1) {
             System.out.println("Error (Multiplexer): Demand pushed by an unknown consumer");
             return;
         }
 
-        double prevDemand = demands.get(idx);
-        demands.set(idx, newDemand);
+        double prevDemand = this.demands[idx];
+        this.demands[idx] = newDemand;
+        this.demandTree.update(idx, newDemand);
+
+        if (!this.dirty[idx]) {
+            this.dirty[idx] = true;
+            this.dirtySlots[this.dirtyCount++] = idx;
+        }
 
         this.totalDemand += (newDemand - prevDemand);
         this.invalidate();
     }
-
     @Override
     public void handleSupply(FlowEdge supplierEdge, double newSupply) {
         this.invalidate();
@@ -195,13 +337,27 @@ public class Multiplexer extends FlowNode implements FlowSupplier, FlowConsumer
 
     @Override
     public void pushSupply(FlowEdge consumerEdge, double newSupply) {
-        int idx = consumerEdges.indexOf(consumerEdge);
+        int idx = indexOf(consumerEdge);
 
         if (idx == -1) {
             System.out.println("Error (Multiplexer): pushing supply to an unknown consumer");
+            return;
         }
 
-        supplies.set(idx, newSupply);
+        this.supplies[idx] = newSupply;
         consumerEdge.pushSupply(newSupply);
     }
+
+    /**
+     * Return the slot of the specified consumer edge or -1 if the edge is not connected to this multiplexer.
+     */
+    private int indexOf(FlowEdge consumerEdge) {
+        int idx = consumerEdge.getConsumerIndex();
+
+        if (idx < 0 || idx >= this.consumerCount || this.consumerEdges[idx] != consumerEdge) {
+            return -1;
+        }
+
+        return idx;
+    }
 }
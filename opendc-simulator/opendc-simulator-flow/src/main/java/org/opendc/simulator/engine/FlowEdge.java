@@ -27,15 +27,31 @@ package org.opendc.simulator.engine;
  * A connection between FlowStages always consist of a FlowStage that demands
  * something, and a FlowStage that Delivers something
  * For instance, this could be the connection between a workload, and its machine
+ * <p>
+ * An edge is a view on the {@link FlowEdgeStore} of the graph of its supplier, which holds the demand, supply and
+ * capacity of all edges of the graph in contiguous arrays.
  */
 public class FlowEdge {
     private FlowConsumer consumer;
     private FlowSupplier supplier;
 
-    private double demand = 0.0;
-    private double supply = 0.0;
+    /**
+     * The store of the supplier graph that holds the state of this edge.
+     */
+    final FlowEdgeStore store;
 
-    private double capacity;
+    /**
+     * The id of this edge in its {@link FlowEdgeStore}, or -1 if the edge has been closed.
+     */
+    int id;
+
+    /**
+     * The demand, supply and capacity of the edge at the moment it was closed, since its id may be reused afterwards.
+     */
+    private double closedDemand;
+
+    private double closedSupply;
+    private double closedCapacity;
 
     public FlowEdge(FlowConsumer consumer, FlowSupplier supplier) {
         if (!(consumer instanceof FlowNode)) {
@@ -47,13 +63,20 @@ public class FlowEdge {
 
         this.consumer = consumer;
         this.supplier = supplier;
+        this.store = ((FlowNode) supplier).getGraph().edgeStore;
 
-        this.capacity = supplier.getCapacity();
+        this.id = store.allocate(supplier.getCapacity());
 
         this.consumer.addSupplierEdge(this);
         this.supplier.addConsumerEdge(this);
     }
 
+    /**
+     * Close the edge and detach it from its consumer and supplier.
+     * <p>
+     * The id of the edge is released for reuse. The edge keeps the demand, supply and capacity it had at that moment,
+     * such that these can still be queried afterwards.
+     */
     public void close() {
         if (this.consumer != null) {
             this.consumer.removeSupplierEdge(this);
@@ -64,6 +87,14 @@ public class FlowEdge {
             this.supplier.removeConsumerEdge(this);
             this.supplier = null;
         }
+
+        if (this.id >= 0) {
+            closedDemand = store.demand[id];
+            closedSupply = store.supply[id];
+            closedCapacity = store.capacity[id];
+            store.release(this.id);
+            this.id = -1;
+        }
     }
 
     public FlowConsumer getConsumer() {
@@ -75,23 +106,35 @@ public class FlowEdge {
     }
 
     public double getCapacity() {
-        return capacity;
+        return id >= 0 ? store.capacity[id] : closedCapacity;
     }
 
     public double getDemand() {
-        return this.demand;
+        return id >= 0 ? store.demand[id] : closedDemand;
     }
 
     public double getSupply() {
-        return this.supply;
+        return id >= 0 ? store.supply[id] : closedSupply;
+    }
+
+    /**
+     * Return the slot of the edge in the consumer list of its supplier, or -1 if the edge has been closed.
+     */
+    public int getConsumerIndex() {
+        return id >= 0 ? store.consumerIndex[id] : -1;
+    }
+
+    public void setConsumerIndex(int consumerIndex) {
+        if (id >= 0) {
+            store.consumerIndex[id] = consumerIndex;
+        }
     }
 
     /**
      * Push new demand from the Consumer to the Supplier
      */
     public void pushDemand(double newDemand) {
-
-        this.demand = newDemand;
+        store.demand[id] = newDemand;
         this.supplier.handleDemand(this, newDemand);
         ((FlowNode) this.supplier).invalidate();
     }
@@ -100,8 +143,7 @@ public class FlowEdge {
      * Push new supply from the Supplier to the Consumer
      */
     public void pushSupply(double newSupply) {
-
-        this.supply = newSupply;
+        store.supply[id] = newSupply;
         this.consumer.handleSupply(this, newSupply);
         ((FlowNode) this.consumer).invalidate();
     }
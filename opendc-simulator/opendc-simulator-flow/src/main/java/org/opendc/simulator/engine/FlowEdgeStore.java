@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.engine;
+
+import java.util.Arrays;
+
+/**
+ * The state of the {@link FlowEdge}s of a {@link FlowGraph}, stored as a structure of arrays indexed by edge id.
+ * <p>
+ * Edges only hold their endpoints and their id, such that the demand, supply and capacity of all edges of a graph are
+ * kept in contiguous primitive arrays. The ids of closed edges are reused by new edges.
+ */
+final class FlowEdgeStore {
+    double[] demand;
+    double[] supply;
+    double[] capacity;
+
+    /**
+     * The slot of the edge in the consumer list of its supplier.
+     */
+    int[] consumerIndex;
+
+    /**
+     * The slot of the edge in its {@link FlowGraph} and in the edges of its consumer and supplier node.
+     */
+    int[] graphIndex;
+
+    int[] consumerNodeSlot;
+    int[] supplierNodeSlot;
+
+    /**
+     * The ids that were released by closed edges.
+     */
+    private int[] free = new int[16];
+
+    private int freeCount;
+
+    /**
+     * The number of ids that were ever allocated.
+     */
+    private int size;
+
+    FlowEdgeStore(int initialCapacity) {
+        demand = new double[initialCapacity];
+        supply = new double[initialCapacity];
+        capacity = new double[initialCapacity];
+        consumerIndex = new int[initialCapacity];
+        graphIndex = new int[initialCapacity];
+        consumerNodeSlot = new int[initialCapacity];
+        supplierNodeSlot = new int[initialCapacity];
+    }
+
+    /**
+     * Allocate the id of a new edge with the specified capacity.
+     */
+    int allocate(double edgeCapacity) {
+        final int id;
+        if (freeCount > 0) {
+            id = free[--freeCount];
+        } else {
+            id = size++;
+            if (id == demand.length) {
+                grow(id + (id >> 1));
+            }
+        }
+
+        demand[id] = 0.0;
+        supply[id] = 0.0;
+        capacity[id] = edgeCapacity;
+        consumerIndex[id] = -1;
+        graphIndex[id] = -1;
+        consumerNodeSlot[id] = -1;
+        supplierNodeSlot[id] = -1;
+        return id;
+    }
+
+    /**
+     * Release the id of a closed edge, such that it can be reused.
+     */
+    void release(int id) {
+        int[] free = this.free;
+        if (freeCount == free.length) {
+            free = this.free = Arrays.copyOf(free, freeCount << 1);
+        }
+        free[freeCount++] = id;
+    }
+
+    /**
+     * Return the number of edges that are currently allocated.
+     */
+    int liveCount() {
+        return size - freeCount;
+    }
+
+    private void grow(int newCapacity) {
+        demand = Arrays.copyOf(demand, newCapacity);
+        supply = Arrays.copyOf(supply, newCapacity);
+        capacity = Arrays.copyOf(capacity, newCapacity);
+        consumerIndex = Arrays.copyOf(consumerIndex, newCapacity);
+        graphIndex = Arrays.copyOf(graphIndex, newCapacity);
+        consumerNodeSlot = Arrays.copyOf(consumerNodeSlot, newCapacity);
+        supplierNodeSlot = Arrays.copyOf(supplierNodeSlot, newCapacity);
+    }
+}
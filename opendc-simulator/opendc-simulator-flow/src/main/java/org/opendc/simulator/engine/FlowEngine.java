@@ -24,8 +24,11 @@ package org.opendc.simulator.engine;
 
 import java.time.Clock;
 import java.time.InstantSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import kotlin.coroutines.CoroutineContext;
 import org.opendc.common.Dispatcher;
+import org.opendc.common.trace.EventRecorder;
 
 /**
  * A {@link FlowEngine} simulates a generic flow network.
@@ -34,6 +37,12 @@ import org.opendc.common.Dispatcher;
  * to happen more efficiently. and overall, reducing the work necessary to transition into a steady state.
  */
 public final class FlowEngine implements Runnable {
+    /**
+     * The mask that selects the node updates whose wall-clock time is measured, which is one in every 64 updates of
+     * a node class.
+     */
+    private static final int SAMPLE_MASK = 63;
+
     /**
      * The queue of {@link FlowNode} updates that are scheduled for immediate execution.
      */
@@ -42,7 +51,7 @@ public final class FlowEngine implements Runnable {
     /**
      * A priority queue containing the {@link FlowNode} updates to be scheduled in the future.
      */
-    private final FlowTimerQueue timerQueue = new FlowTimerQueue(256);
+    private final FlowTimerQueue timerQueue;
 
     /**
      * The stack of engine invocations to occur in the future.
@@ -54,19 +63,108 @@ public final class FlowEngine implements Runnable {
      */
     private boolean active;
 
+    /**
+     * The number of enqueues of nodes that were already pending in the immediate queue, since the end of the last
+     * engine cycle.
+     */
+    private int suppressedEnqueues;
+
+    /**
+     * The number of suppressed enqueues that were attributed to the last engine cycle.
+     */
+    private int lastSuppressedEnqueues;
+
+    /**
+     * The total number of suppressed enqueues since the creation of the engine.
+     */
+    private long totalSuppressedEnqueues;
+
+    /**
+     * The number of engine invocations and the number of distinct timestamps at which they occurred.
+     */
+    private long invocations;
+
+    private long timestamps;
+
+    /**
+     * The timestamp of the last engine invocation and the number of invocations at that timestamp.
+     */
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    private int invocationsAtTimestamp;
+
+    private int maxInvocationsPerTimestamp;
+
+    /**
+     * The number of node updates caused by invalidations and by expired timers, respectively.
+     */
+    private long immediateUpdates;
+
+    private long delayedUpdates;
+
+    /**
+     * The largest number of timers and scheduled invocations observed at the same time.
+     */
+    private int timerQueueHighWaterMark;
+
+    private int maxInvocationStackDepth;
+
+    /**
+     * The update counters per {@link FlowNode} class, in order of the first update of the class.
+     */
+    private final LinkedHashMap<Class<?>, NodeClassCounters> nodeClasses = new LinkedHashMap<>();
+
+    /**
+     * The {@link FlowEngineGroup} that coordinates the invocations of this engine, or <code>null</code> if the engine
+     * schedules its own invocations with the dispatcher.
+     */
+    private final FlowEngineGroup group;
+
+    /**
+     * The earliest invocation that this engine requested from its group.
+     */
+    long requestedInvocation = Long.MAX_VALUE;
+
+    /**
+     * The callbacks that were deferred by {@link #runCallback(Runnable)} while the engine ran as part of its group.
+     */
+    private final ArrayList<Runnable> deferredCallbacks = new ArrayList<>();
+
+    private boolean deferCallbacks;
+
     private final Dispatcher dispatcher;
     private final InstantSource clock;
 
+    /**
+     * The recorder of the dispatcher to which node updates and timer operations are recorded, or <code>null</code> if
+     * tracing is disabled.
+     */
+    private final EventRecorder recorder;
+
     /**
      * Create a new {@link FlowEngine} instance using the specified {@link CoroutineContext} and {@link InstantSource}.
      */
     public static FlowEngine create(Dispatcher dispatcher) {
-        return new FlowEngine(dispatcher);
+        return new FlowEngine(dispatcher, new HeapFlowTimerQueue(256), null);
+    }
+
+    /**
+     * Create a new {@link FlowEngine} instance that uses the specified {@link FlowTimerQueue} for the timers of its
+     * nodes.
+     *
+     * @param dispatcher The {@link Dispatcher} to schedule the engine invocations with.
+     * @param timerQueue The timer queue owned by the engine, which must not be shared with other engines.
+     */
+    public static FlowEngine create(Dispatcher dispatcher, FlowTimerQueue timerQueue) {
+        return new FlowEngine(dispatcher, timerQueue, null);
     }
 
-    FlowEngine(Dispatcher dispatcher) {
+    FlowEngine(Dispatcher dispatcher, FlowTimerQueue timerQueue, FlowEngineGroup group) {
         this.dispatcher = dispatcher;
         this.clock = dispatcher.getTimeSource();
+        this.recorder = dispatcher.getEventRecorder();
+        this.timerQueue = timerQueue;
+        this.group = group;
     }
 
     /**
@@ -76,6 +174,69 @@ public final class FlowEngine implements Runnable {
         return clock;
     }
 
+    /**
+     * Return the number of immediate updates that were suppressed during the last engine cycle, because the node was
+     * already waiting in the queue.
+     */
+    public int getSuppressedEnqueues() {
+        return lastSuppressedEnqueues;
+    }
+
+    /**
+     * Return the total number of immediate updates that were suppressed since the creation of the engine.
+     */
+    public long getTotalSuppressedEnqueues() {
+        return totalSuppressedEnqueues;
+    }
+
+    /**
+     * Return a snapshot of the statistics of this engine.
+     * <p>
+     * The counters are maintained during every engine cycle, whereas the wall-clock time spent in the updates of a
+     * node class is measured for a sample of its updates only.
+     */
+    public FlowEngineStats getStats() {
+        final ArrayList<FlowEngineStats.NodeClassStats> classes = new ArrayList<>(nodeClasses.size());
+        for (NodeClassCounters counters : nodeClasses.values()) {
+            classes.add(counters.toStats());
+        }
+
+        return new FlowEngineStats(
+                invocations,
+                timestamps,
+                maxInvocationsPerTimestamp,
+                immediateUpdates,
+                delayedUpdates,
+                totalSuppressedEnqueues,
+                timerQueue.size(),
+                timerQueueHighWaterMark,
+                futureInvocations.size(),
+                maxInvocationStackDepth,
+                classes);
+    }
+
+    /**
+     * Return the {@link FlowEngineGroup} this engine belongs to, or <code>null</code> if the engine runs on its own.
+     */
+    public FlowEngineGroup getGroup() {
+        return group;
+    }
+
+    /**
+     * Run a callback that leaves the flow network, such as the completion of a workload.
+     * <p>
+     * Engines that belong to a {@link FlowEngineGroup} may run concurrently with other engines, while the code outside
+     * of the flow network is not thread-safe. Therefore, the callback is deferred until all engines of the group have
+     * finished the current timestamp. Otherwise, the callback runs immediately.
+     */
+    public void runCallback(Runnable callback) {
+        if (deferCallbacks) {
+            deferredCallbacks.add(callback);
+        } else {
+            callback.run();
+        }
+    }
+
     /**
      * Return a new {@link FlowGraph} that can be used to build a flow network.
      */
@@ -83,6 +244,15 @@ public final class FlowEngine implements Runnable {
         return new FlowGraph(this);
     }
 
+    /**
+     * Return a new {@link FlowGraph} that can be used to build a flow network.
+     *
+     * @param trackEdges A flag to indicate that the graph should maintain a global list of its edges.
+     */
+    public FlowGraph newGraph(boolean trackEdges) {
+        return new FlowGraph(this, trackEdges);
+    }
+
     /**
      * Enqueue the specified {@link FlowNode} to be updated immediately during the active engine cycle.
      * <p>
@@ -108,8 +278,18 @@ public final class FlowEngine implements Runnable {
      * re-computed.
      * <p>
      * This method should only be invoked while inside an engine cycle.
+     * <p>
+     * A node that is already waiting in the queue is not added again, since its pending update will observe all
+     * changes made up to the moment it runs.
      */
     void scheduleImmediateInContext(FlowNode ctx) {
+        if (ctx.inQueue) {
+            suppressedEnqueues++;
+            totalSuppressedEnqueues++;
+            return;
+        }
+
+        ctx.inQueue = true;
         queue.add(ctx);
     }
 
@@ -138,7 +318,18 @@ public final class FlowEngine implements Runnable {
      */
     void scheduleDelayedInContext(FlowNode ctx) {
         FlowTimerQueue timerQueue = this.timerQueue;
+
+        final EventRecorder recorder = this.recorder;
+        if (recorder != null) {
+            recordTimer(recorder, ctx);
+        }
+
         timerQueue.enqueue(ctx);
+
+        final int size = timerQueue.size();
+        if (size > timerQueueHighWaterMark) {
+            timerQueueHighWaterMark = size;
+        }
     }
 
     /**
@@ -147,6 +338,21 @@ public final class FlowEngine implements Runnable {
     private void doRunEngine(long now) {
         final FlowNodeQueue queue = this.queue;
         final FlowTimerQueue timerQueue = this.timerQueue;
+        final FlowEngineCycleEvent event = new FlowEngineCycleEvent();
+        event.begin();
+
+        invocations++;
+        if (now != lastTimestamp) {
+            lastTimestamp = now;
+            timestamps++;
+            invocationsAtTimestamp = 0;
+        }
+        if (++invocationsAtTimestamp > maxInvocationsPerTimestamp) {
+            maxInvocationsPerTimestamp = invocationsAtTimestamp;
+        }
+
+        int delayed = 0;
+        int immediate = 0;
 
         try {
             // Mark the engine as active to prevent concurrent calls to this method
@@ -159,7 +365,8 @@ public final class FlowEngine implements Runnable {
                     break;
                 }
 
-                ctx.update(now);
+                delayed++;
+                runUpdate(ctx, now);
             }
 
             // Execute all immediate updates
@@ -169,10 +376,33 @@ public final class FlowEngine implements Runnable {
                     break;
                 }
 
-                ctx.update(now);
+                // Clear the flag before the update, such that invalidations during the update are not lost
+                ctx.inQueue = false;
+                immediate++;
+                runUpdate(ctx, now);
             }
         } finally {
             active = false;
+
+            lastSuppressedEnqueues = suppressedEnqueues;
+            suppressedEnqueues = 0;
+
+            delayedUpdates += delayed;
+            immediateUpdates += immediate;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.timestamp = now;
+            event.immediateUpdates = immediate;
+            event.delayedUpdates = delayed;
+            event.timerQueueSize = timerQueue.size();
+            event.commit();
+        }
+
+        // The group schedules the next invocation of its engines after all engines have finished
+        if (group != null) {
+            return;
         }
 
         // Schedule an engine invocation for the next update to occur.
@@ -182,11 +412,122 @@ public final class FlowEngine implements Runnable {
         }
     }
 
+    /**
+     * Update the specified node and account the update to the class of the node.
+     */
+    private void runUpdate(FlowNode ctx, long now) {
+        NodeClassCounters counters = ctx.counters;
+        if (counters == null) {
+            counters = nodeClasses.computeIfAbsent(ctx.getClass(), NodeClassCounters::new);
+            ctx.counters = counters;
+        }
+
+        final EventRecorder recorder = this.recorder;
+        if (recorder != null) {
+            runRecordedUpdate(recorder, counters, ctx, now);
+            return;
+        }
+
+        if ((counters.updates++ & SAMPLE_MASK) != 0) {
+            ctx.update(now);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        ctx.update(now);
+        counters.sampledNanos += System.nanoTime() - start;
+        counters.sampledUpdates++;
+    }
+
+    /**
+     * Update the specified node and record the update, which measures the wall-clock time of every update.
+     */
+    private void runRecordedUpdate(EventRecorder recorder, NodeClassCounters counters, FlowNode ctx, long now) {
+        counters.updates++;
+
+        final long start = recorder.nanoTime();
+        ctx.update(now);
+        final long duration = recorder.nanoTime() - start;
+
+        counters.sampledNanos += duration;
+        counters.sampledUpdates++;
+
+        recorder.record(
+                EventRecorder.KIND_UPDATE, recorder.typeOf(ctx.getClass()), traceId(recorder, ctx), now, start, duration);
+    }
+
+    /**
+     * Record the change to the timer of the specified node that is about to be applied to the timer queue.
+     */
+    private void recordTimer(EventRecorder recorder, FlowNode ctx) {
+        final long deadline = ctx.deadline;
+        final int kind;
+        if (deadline != Long.MAX_VALUE) {
+            kind = EventRecorder.KIND_TIMER_SCHEDULE;
+        } else if (ctx.timerIndex >= 0) {
+            kind = EventRecorder.KIND_TIMER_CANCEL;
+        } else {
+            return;
+        }
+
+        recorder.record(
+                kind,
+                recorder.typeOf(ctx.getClass()),
+                traceId(recorder, ctx),
+                clock.millis(),
+                recorder.nanoTime(),
+                deadline);
+    }
+
+    /**
+     * Return the identifier of the specified node in the trace, assigning one on first use.
+     */
+    private static int traceId(EventRecorder recorder, FlowNode ctx) {
+        int id = ctx.traceId;
+        if (id < 0) {
+            id = recorder.nextId();
+            ctx.traceId = id;
+        }
+        return id;
+    }
+
     @Override
     public void run() {
         doRunEngine(futureInvocations.poll());
     }
 
+    /**
+     * Run the engine for the specified timestamp on behalf of its group, deferring the callbacks of its nodes.
+     */
+    void runInGroup(long now) {
+        deferCallbacks = true;
+        try {
+            doRunEngine(now);
+        } finally {
+            deferCallbacks = false;
+        }
+    }
+
+    /**
+     * Run the callbacks that were deferred during the last run of the engine in its group.
+     */
+    void flushCallbacks() {
+        final ArrayList<Runnable> callbacks = this.deferredCallbacks;
+
+        // Callbacks run outside the engine cycle, so they are not deferred again
+        for (int i = 0; i < callbacks.size(); i++) {
+            callbacks.get(i).run();
+        }
+        callbacks.clear();
+    }
+
+    /**
+     * Return the earliest deadline of the timers of this engine.
+     */
+    long peekDeadline() {
+        return timerQueue.peekDeadline();
+    }
+
     /**
      * Try to schedule an engine invocation at the specified [target].
      *
@@ -195,10 +536,25 @@ public final class FlowEngine implements Runnable {
      * @param target The virtual timestamp at which the engine invocation should happen.
      */
     private void trySchedule(InvocationStack scheduled, long now, long target) {
+        if (group != null) {
+            group.request(this, now, target);
+            return;
+        }
+
         // Only schedule a new scheduler invocation in case the target is earlier than all other pending
         // scheduler invocations
         if (scheduled.tryAdd(target)) {
-            dispatcher.schedule(target - now, this);
+            final int depth = scheduled.size();
+            if (depth > maxInvocationStackDepth) {
+                maxInvocationStackDepth = depth;
+            }
+
+            if (target == now) {
+                // Coalesce the invalidations that occur at the current timestamp into a single invocation
+                dispatcher.scheduleDeferred(this);
+            } else {
+                dispatcher.schedule(target - now, this);
+            }
         }
     }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JDK Flight Recorder event that is emitted for every cycle of a {@link FlowEngine}.
+ * <p>
+ * The duration of the event is the wall-clock time of the cycle.
+ */
+@Name("org.opendc.simulator.engine.FlowEngineCycle")
+@Label("Flow Engine Cycle")
+@Category({"OpenDC", "Flow"})
+@Description("A cycle of the flow engine at a single virtual timestamp")
+final class FlowEngineCycleEvent extends Event {
+    @Label("Virtual Timestamp")
+    long timestamp;
+
+    @Label("Immediate Updates")
+    int immediateUpdates;
+
+    @Label("Delayed Updates")
+    int delayedUpdates;
+
+    @Label("Timer Queue Size")
+    int timerQueueSize;
+}
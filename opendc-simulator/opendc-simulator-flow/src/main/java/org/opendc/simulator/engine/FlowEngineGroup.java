@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.engine;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.opendc.common.Dispatcher;
+
+/**
+ * A group of {@link FlowEngine}s that simulate disconnected partitions of a flow network, such as the clusters of a
+ * datacenter, and that run in parallel for the same virtual timestamp.
+ * <p>
+ * Every engine of the group has its own node and timer queue, and its nodes must only be connected to nodes of the
+ * same engine. The group schedules a single dispatcher invocation per timestamp, in which all engines that are due run
+ * on a worker pool. Afterwards, the callbacks that the nodes deferred via {@link FlowEngine#runCallback(Runnable)} run
+ * on the dispatcher thread in the order in which the engines were created. Hence, the code outside of the flow network
+ * observes the same sequence of events regardless of the parallelism of the group, and results are deterministic.
+ */
+public final class FlowEngineGroup implements Runnable, AutoCloseable {
+    private final Dispatcher dispatcher;
+
+    /**
+     * The engines in this group, in order of creation.
+     */
+    private final ArrayList<FlowEngine> engines = new ArrayList<>();
+
+    /**
+     * The engines that are due in the active invocation.
+     */
+    private FlowEngine[] due = new FlowEngine[0];
+
+    /**
+     * The stack of group invocations to occur in the future.
+     */
+    private final InvocationStack futureInvocations = new InvocationStack(256);
+
+    /**
+     * The largest number of group invocations that were scheduled at the same time.
+     */
+    private int maxInvocationStackDepth;
+
+    /**
+     * The number of engines that may run at the same time.
+     */
+    private final int parallelism;
+
+    /**
+     * The worker pool, or <code>null</code> if the engines run sequentially.
+     */
+    private final ExecutorService executor;
+
+    private final ArrayList<Future<?>> futures = new ArrayList<>();
+
+    /**
+     * Create a new {@link FlowEngineGroup} whose engines run on the specified number of threads.
+     *
+     * @param dispatcher The {@link Dispatcher} to schedule the invocations of the group with.
+     * @param parallelism The number of engines that may run at the same time. A parallelism of one runs the engines
+     *                    sequentially on the dispatcher thread.
+     */
+    public static FlowEngineGroup create(Dispatcher dispatcher, int parallelism) {
+        return new FlowEngineGroup(dispatcher, parallelism);
+    }
+
+    private FlowEngineGroup(Dispatcher dispatcher, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+
+        this.dispatcher = dispatcher;
+        this.parallelism = parallelism;
+
+        if (parallelism > 1) {
+            final AtomicInteger count = new AtomicInteger();
+
+            // The dispatcher thread runs one of the engines itself
+            this.executor = Executors.newFixedThreadPool(parallelism - 1, r -> {
+                Thread thread = new Thread(r, "opendc-flow-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * Create a new {@link FlowEngine} for a partition of the flow network.
+     */
+    public FlowEngine newEngine() {
+        return newEngine(new HeapFlowTimerQueue(256));
+    }
+
+    /**
+     * Create a new {@link FlowEngine} for a partition of the flow network that uses the specified timer queue.
+     */
+    public FlowEngine newEngine(FlowTimerQueue timerQueue) {
+        FlowEngine engine = new FlowEngine(dispatcher, timerQueue, this);
+        engines.add(engine);
+        return engine;
+    }
+
+    /**
+     * Return the number of engines that may run at the same time.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Return the number of engines in this group.
+     */
+    public int getEngineCount() {
+        return engines.size();
+    }
+
+    /**
+     * Return the statistics of the engines in this group, combined into a single snapshot.
+     * <p>
+     * The engines of a group do not schedule invocations themselves, so the invocation stack depths in the snapshot
+     * are those of the group.
+     *
+     * @see FlowEngineStats#combine(java.util.List)
+     */
+    public FlowEngineStats getStats() {
+        final ArrayList<FlowEngineStats> stats = new ArrayList<>(engines.size());
+        for (FlowEngine engine : engines) {
+            stats.add(engine.getStats());
+        }
+
+        final FlowEngineStats combined = FlowEngineStats.combine(stats);
+        return new FlowEngineStats(
+                combined.invocations(),
+                combined.timestamps(),
+                combined.maxInvocationsPerTimestamp(),
+                combined.immediateUpdates(),
+                combined.delayedUpdates(),
+                combined.suppressedEnqueues(),
+                combined.timerQueueSize(),
+                combined.timerQueueHighWaterMark(),
+                futureInvocations.size(),
+                maxInvocationStackDepth,
+                combined.nodeClasses());
+    }
+
+    /**
+     * Request an invocation of the specified engine at <code>target</code>.
+     */
+    void request(FlowEngine engine, long now, long target) {
+        if (target < engine.requestedInvocation) {
+            engine.requestedInvocation = target;
+        }
+
+        trySchedule(now, target);
+    }
+
+    @Override
+    public void run() {
+        final long now = futureInvocations.poll();
+        final ArrayList<FlowEngine> engines = this.engines;
+        final int engineCount = engines.size();
+
+        FlowEngine[] due = this.due;
+        if (due.length < engineCount) {
+            due = this.due = new FlowEngine[engineCount];
+        }
+
+        int n = 0;
+        for (int i = 0; i < engineCount; i++) {
+            FlowEngine engine = engines.get(i);
+            if (engine.requestedInvocation <= now) {
+                engine.requestedInvocation = Long.MAX_VALUE;
+                due[n++] = engine;
+            }
+        }
+
+        try {
+            if (n > 1 && executor != null) {
+                runParallel(due, n, now);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    due[i].runInGroup(now);
+                }
+            }
+
+            // Run the deferred callbacks in a deterministic order
+            for (int i = 0; i < n; i++) {
+                due[i].flushCallbacks();
+            }
+        } finally {
+            for (int i = 0; i < n; i++) {
+                FlowEngine engine = due[i];
+                due[i] = null;
+
+                long deadline = engine.peekDeadline();
+                if (deadline != Long.MAX_VALUE && deadline >= now) {
+                    request(engine, now, deadline);
+                }
+            }
+        }
+
+        // Invocations of other engines may have been lost when they were not the earliest invocation of the group
+        long next = Long.MAX_VALUE;
+        for (int i = 0; i < engineCount; i++) {
+            next = Math.min(next, engines.get(i).requestedInvocation);
+        }
+
+        if (next != Long.MAX_VALUE) {
+            trySchedule(now, next);
+        }
+    }
+
+    /**
+     * Shut down the worker pool of this group.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run the specified engines on the worker pool and wait until all of them have finished.
+     */
+    private void runParallel(FlowEngine[] due, int n, long now) {
+        final ArrayList<Future<?>> futures = this.futures;
+
+        try {
+            for (int i = 1; i < n; i++) {
+                final FlowEngine engine = due[i];
+                futures.add(executor.submit(() -> engine.runInGroup(now)));
+            }
+
+            RuntimeException failure = null;
+            try {
+                due[0].runInGroup(now);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+
+            // Wait for all engines, such that no engine is still running when the failure propagates
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (failure == null) {
+                        failure = cause instanceof RuntimeException
+                                ? (RuntimeException) cause
+                                : new IllegalStateException("Flow engine failed", cause);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for flow engines", e);
+                }
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            futures.clear();
+        }
+    }
+
+    /**
+     * Try to schedule a group invocation at the specified <code>target</code>.
+     */
+    private void trySchedule(long now, long target) {
+        // Only schedule a new invocation in case the target is earlier than all other pending invocations
+        if (futureInvocations.tryAdd(target)) {
+            final int depth = futureInvocations.size();
+            if (depth > maxInvocationStackDepth) {
+                maxInvocationStackDepth = depth;
+            }
+
+            if (target == now) {
+                dispatcher.scheduleDeferred(this);
+            } else {
+                dispatcher.schedule(target - now, this);
+            }
+        }
+    }
+}
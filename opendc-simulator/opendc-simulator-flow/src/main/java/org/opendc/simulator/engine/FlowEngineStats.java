@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.engine;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A snapshot of the statistics of a {@link FlowEngine}.
+ *
+ * @param invocations The number of engine invocations.
+ * @param timestamps The number of distinct virtual timestamps at which the engine was invoked.
+ * @param maxInvocationsPerTimestamp The largest number of engine invocations at a single virtual timestamp.
+ * @param immediateUpdates The number of node updates caused by invalidations.
+ * @param delayedUpdates The number of node updates caused by expired timers.
+ * @param suppressedEnqueues The number of invalidations of nodes that were already waiting for an update.
+ * @param timerQueueSize The number of timers that are currently scheduled.
+ * @param timerQueueHighWaterMark The largest number of timers that were scheduled at the same time.
+ * @param invocationStackDepth The number of engine invocations that are currently scheduled.
+ * @param maxInvocationStackDepth The largest number of engine invocations that were scheduled at the same time.
+ * @param nodeClasses The statistics per {@link FlowNode} class, in order of their first update.
+ */
+public record FlowEngineStats(
+        long invocations,
+        long timestamps,
+        int maxInvocationsPerTimestamp,
+        long immediateUpdates,
+        long delayedUpdates,
+        long suppressedEnqueues,
+        int timerQueueSize,
+        int timerQueueHighWaterMark,
+        int invocationStackDepth,
+        int maxInvocationStackDepth,
+        List<NodeClassStats> nodeClasses) {
+
+    /**
+     * The statistics of the {@link FlowNode}s of a single class.
+     *
+     * @param className The name of the node class.
+     * @param updates The number of updates of nodes of this class.
+     * @param sampledUpdates The number of updates whose wall-clock time was measured.
+     * @param sampledNanos The wall-clock time of the measured updates in nanoseconds.
+     */
+    public record NodeClassStats(String className, long updates, long sampledUpdates, long sampledNanos) {
+        /**
+         * Estimate the total wall-clock time spent in the updates of this class in nanoseconds.
+         */
+        public long estimatedNanos() {
+            if (sampledUpdates == 0) {
+                return 0;
+            }
+
+            return (long) ((double) sampledNanos * updates / sampledUpdates);
+        }
+    }
+
+    /**
+     * Return the total number of node updates.
+     */
+    public long updates() {
+        return immediateUpdates + delayedUpdates;
+    }
+
+    /**
+     * Combine the statistics of multiple engines, such as the engines of a {@link FlowEngineGroup}. Counters are
+     * summed, whereas maxima are combined into the largest value of a single engine.
+     */
+    public static FlowEngineStats combine(List<FlowEngineStats> stats) {
+        long invocations = 0;
+        long timestamps = 0;
+        int maxInvocationsPerTimestamp = 0;
+        long immediateUpdates = 0;
+        long delayedUpdates = 0;
+        long suppressedEnqueues = 0;
+        int timerQueueSize = 0;
+        int timerQueueHighWaterMark = 0;
+        int invocationStackDepth = 0;
+        int maxInvocationStackDepth = 0;
+        final LinkedHashMap<String, NodeClassStats> nodeClasses = new LinkedHashMap<>();
+
+        for (FlowEngineStats s : stats) {
+            invocations += s.invocations;
+            timestamps += s.timestamps;
+            maxInvocationsPerTimestamp = Math.max(maxInvocationsPerTimestamp, s.maxInvocationsPerTimestamp);
+            immediateUpdates += s.immediateUpdates;
+            delayedUpdates += s.delayedUpdates;
+            suppressedEnqueues += s.suppressedEnqueues;
+            timerQueueSize += s.timerQueueSize;
+            timerQueueHighWaterMark = Math.max(timerQueueHighWaterMark, s.timerQueueHighWaterMark);
+            invocationStackDepth += s.invocationStackDepth;
+            maxInvocationStackDepth = Math.max(maxInvocationStackDepth, s.maxInvocationStackDepth);
+
+            for (NodeClassStats c : s.nodeClasses) {
+                nodeClasses.merge(
+                        c.className,
+                        c,
+                        (a, b) -> new NodeClassStats(
+                                a.className,
+                                a.updates + b.updates,
+                                a.sampledUpdates + b.sampledUpdates,
+                                a.sampledNanos + b.sampledNanos));
+            }
+        }
+
+        return new FlowEngineStats(
+                invocations,
+                timestamps,
+                maxInvocationsPerTimestamp,
+                immediateUpdates,
+                delayedUpdates,
+                suppressedEnqueues,
+                timerQueueSize,
+                timerQueueHighWaterMark,
+                invocationStackDepth,
+                maxInvocationStackDepth,
+                List.copyOf(nodeClasses.values()));
+    }
+
+    /**
+     * Commit this snapshot to JDK Flight Recorder as a {@link FlowEngineStatsEvent} and a {@link FlowNodeClassEvent}
+     * per node class, if these events are enabled.
+     */
+    public void commitEvents() {
+        final FlowEngineStatsEvent event = new FlowEngineStatsEvent();
+        if (event.isEnabled()) {
+            event.invocations = invocations;
+            event.timestamps = timestamps;
+            event.maxInvocationsPerTimestamp = maxInvocationsPerTimestamp;
+            event.immediateUpdates = immediateUpdates;
+            event.delayedUpdates = delayedUpdates;
+            event.suppressedEnqueues = suppressedEnqueues;
+            event.timerQueueHighWaterMark = timerQueueHighWaterMark;
+            event.maxInvocationStackDepth = maxInvocationStackDepth;
+            event.commit();
+        }
+
+        for (NodeClassStats c : nodeClasses) {
+            final FlowNodeClassEvent classEvent = new FlowNodeClassEvent();
+            if (!classEvent.isEnabled()) {
+                break;
+            }
+
+            classEvent.nodeClass = c.className;
+            classEvent.updates = c.updates;
+            classEvent.estimatedTime = c.estimatedNanos();
+            classEvent.commit();
+        }
+    }
+}
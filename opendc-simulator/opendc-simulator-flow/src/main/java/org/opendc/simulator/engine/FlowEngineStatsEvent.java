@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event containing a {@link FlowEngineStats} snapshot.
+ */
+@Name("org.opendc.simulator.engine.FlowEngineStats")
+@Label("Flow Engine Statistics")
+@Category({"OpenDC", "Flow"})
+@Description("The statistics of a flow engine")
+@StackTrace(false)
+final class FlowEngineStatsEvent extends Event {
+    @Label("Invocations")
+    long invocations;
+
+    @Label("Virtual Timestamps")
+    long timestamps;
+
+    @Label("Max Invocations per Timestamp")
+    int maxInvocationsPerTimestamp;
+
+    @Label("Immediate Updates")
+    long immediateUpdates;
+
+    @Label("Delayed Updates")
+    long delayedUpdates;
+
+    @Label("Suppressed Enqueues")
+    long suppressedEnqueues;
+
+    @Label("Timer Queue High-Water Mark")
+    int timerQueueHighWaterMark;
+
+    @Label("Max Invocation Stack Depth")
+    int maxInvocationStackDepth;
+}
@@ -22,17 +22,57 @@
 
 package org.opendc.simulator.engine;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
 
+/**
+ * A graph of {@link FlowNode}s connected by {@link FlowEdge}s.
+ * <p>
+ * Nodes and edges remember their slot in the graph, such that membership checks, insertion and removal take constant
+ * time. Removal moves the last element into the slot of the removed element.
+ * <p>
+ * The state of the edges whose supplier belongs to this graph is kept in a {@link FlowEdgeStore}, such that the
+ * demand, supply and capacity of the edges are stored in contiguous arrays instead of in the edge objects.
+ */
 public class FlowGraph {
     private final FlowEngine engine;
-    private final ArrayList<FlowNode> nodes = new ArrayList<>();
-    private final ArrayList<FlowEdge> edges = new ArrayList<>();
-    private final HashMap<FlowNode, ArrayList<FlowEdge>> nodeToEdge = new HashMap<>();
+
+    private FlowNode[] nodes = new FlowNode[256];
+    private int nodeCount = 0;
+
+    /**
+     * The edges of the graph, or <code>null</code> if the graph does not track its edges globally.
+     */
+    private FlowEdge[] edges;
+
+    private int edgeCount = 0;
+
+    /**
+     * The nodes that are shared by all users of the graph, by the key under which they were created.
+     */
+    private final HashMap<Object, FlowNode> sharedNodes = new HashMap<>();
+
+    /**
+     * The state of the edges whose supplier belongs to this graph.
+     */
+    final FlowEdgeStore edgeStore = new FlowEdgeStore(256);
 
     public FlowGraph(FlowEngine engine) {
+        this(engine, true);
+    }
+
+    /**
+     * Construct a new {@link FlowGraph}.
+     *
+     * @param engine The {@link FlowEngine} driving the simulation of the graph.
+     * @param trackEdges A flag to indicate that the graph should maintain a global list of its edges. Graphs that do
+     *                   not track their edges avoid the bookkeeping, but cannot answer {@link #getEdges()}.
+     */
+    public FlowGraph(FlowEngine engine, boolean trackEdges) {
         this.engine = engine;
+        this.edges = trackEdges ? new FlowEdge[256] : null;
     }
 
     /**
@@ -42,34 +82,130 @@ public class FlowGraph {
         return engine;
     }
 
+    /**
+     * Return the number of nodes in this graph.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Return the number of edges in this graph.
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Determine whether this graph tracks its edges globally.
+     */
+    public boolean isTrackingEdges() {
+        return edges != null;
+    }
+
+    /**
+     * Return a snapshot of the nodes in this graph.
+     */
+    public List<FlowNode> getNodes() {
+        return List.of(Arrays.copyOf(nodes, nodeCount));
+    }
+
+    /**
+     * Return a snapshot of the edges in this graph.
+     *
+     * @throws IllegalStateException if the graph does not track its edges.
+     */
+    public List<FlowEdge> getEdges() {
+        if (edges == null) {
+            throw new IllegalStateException("The graph does not track its edges");
+        }
+
+        return List.of(Arrays.copyOf(edges, edgeCount));
+    }
+
+    /**
+     * Determine whether the specified {@link FlowNode} is part of this graph.
+     */
+    public boolean contains(FlowNode node) {
+        int idx = node.graphIndex;
+        return idx >= 0 && idx < nodeCount && nodes[idx] == node;
+    }
+
     /**
      * Create a new {@link FlowNode} representing a node in the flow network.
      */
     public void addNode(FlowNode node) {
-        if (nodes.contains(node)) {
+        if (contains(node)) {
             System.out.println("Node already exists");
+            return;
         }
-        nodes.add(node);
-        nodeToEdge.put(node, new ArrayList<>());
+
+        int idx = nodeCount;
+        if (idx == nodes.length) {
+            nodes = Arrays.copyOf(nodes, idx + (idx >> 1));
+        }
+
+        nodes[idx] = node;
+        node.graphIndex = idx;
+        nodeCount = idx + 1;
+
         long now = this.engine.getClock().millis();
         node.invalidate(now);
     }
 
+    /**
+     * Return the node that is shared under the specified key in this graph, creating it with the specified factory if
+     * the graph does not contain such node yet.
+     * <p>
+     * Shared nodes allow components to subscribe to a single node that drives an input of the simulation, such as a
+     * trace, instead of creating a node with its own timer per component. The node is forgotten once it is removed
+     * from the graph.
+     *
+     * @param key The key that identifies the shared node, which must implement {@link Object#equals(Object)}.
+     * @param factory The function to construct the node in this graph.
+     */
+    public <T extends FlowNode> T getSharedNode(Object key, Function<FlowGraph, T> factory) {
+        @SuppressWarnings("unchecked")
+        T node = (T) sharedNodes.get(key);
+
+        if (node == null) {
+            node = factory.apply(this);
+            node.sharedKey = key;
+            sharedNodes.put(key, node);
+        }
+
+        return node;
+    }
+
     /**
      * Internal method to remove the specified {@link FlowNode} from the graph.
      */
     public void removeNode(FlowNode node) {
+        if (!contains(node)) {
+            return;
+        }
 
-        // Remove all edges connected to node
-        final ArrayList<FlowEdge> connectedEdges = nodeToEdge.get(node);
-        while (connectedEdges.size() > 0) {
-            removeEdge(connectedEdges.get(0));
+        if (node.sharedKey != null) {
+            sharedNodes.remove(node.sharedKey);
+            node.sharedKey = null;
         }
 
-        nodeToEdge.remove(node);
+        // Remove all edges connected to node
+        while (node.edgeCount > 0) {
+            removeEdge(node.edges[node.edgeCount - 1]);
+        }
 
         // remove the node
-        nodes.remove(node);
+        int idx = node.graphIndex;
+        int last = --nodeCount;
+        if (idx != last) {
+            FlowNode moved = nodes[last];
+            nodes[idx] = moved;
+            moved.graphIndex = idx;
+        }
+
+        nodes[last] = null;
+        node.graphIndex = -1;
     }
 
     /**
@@ -84,29 +220,110 @@ public class FlowGraph {
             throw new IllegalArgumentException("Flow consumer is not a FlowNode");
         }
 
+        final FlowNode consumerNode = (FlowNode) flowConsumer;
+        final FlowNode supplierNode = (FlowNode) flowSupplier;
+
         // Check of the consumer and supplier are present in this graph
-        if (!(this.nodes.contains((FlowNode) flowConsumer))) {
+        if (!contains(consumerNode)) {
             throw new IllegalArgumentException("The consumer is not a node in this graph");
         }
-        if (!(this.nodes.contains((FlowNode) flowSupplier))) {
+        if (!contains(supplierNode)) {
             throw new IllegalArgumentException("The consumer is not a node in this graph");
         }
 
         final FlowEdge flowEdge = new FlowEdge(flowConsumer, flowSupplier);
 
-        edges.add(flowEdge);
+        final FlowEdge[] edges = this.edges;
+        if (edges != null) {
+            int idx = edgeCount;
+            if (idx == edges.length) {
+                this.edges = Arrays.copyOf(edges, idx + (idx >> 1));
+            }
 
-        nodeToEdge.get((FlowNode) flowConsumer).add(flowEdge);
-        nodeToEdge.get((FlowNode) flowSupplier).add(flowEdge);
+            this.edges[idx] = flowEdge;
+            edgeStore.graphIndex[flowEdge.id] = idx;
+        }
+        edgeCount++;
+
+        final int id = flowEdge.id;
+        edgeStore.consumerNodeSlot[id] = attach(consumerNode, flowEdge);
+        edgeStore.supplierNodeSlot[id] = attach(supplierNode, flowEdge);
     }
 
     public void removeEdge(FlowEdge flowEdge) {
-        final FlowConsumer consumer = flowEdge.getConsumer();
-        final FlowSupplier supplier = flowEdge.getSupplier();
-        nodeToEdge.get((FlowNode) consumer).remove(flowEdge);
-        nodeToEdge.get((FlowNode) supplier).remove(flowEdge);
+        final FlowNode consumer = (FlowNode) flowEdge.getConsumer();
+        final FlowNode supplier = (FlowNode) flowEdge.getSupplier();
+
+        // The edge was not created through this graph or has already been removed
+        if (consumer == null
+                || supplier == null
+                || flowEdge.store != edgeStore
+                || edgeStore.consumerNodeSlot[flowEdge.id] < 0) {
+            flowEdge.close();
+            return;
+        }
+
+        final FlowEdgeStore store = this.edgeStore;
+        final int id = flowEdge.id;
+        detach(store, consumer, store.consumerNodeSlot[id]);
+        detach(store, supplier, store.supplierNodeSlot[id]);
+        store.consumerNodeSlot[id] = -1;
+        store.supplierNodeSlot[id] = -1;
+
+        final FlowEdge[] edges = this.edges;
+        if (edges != null) {
+            int idx = store.graphIndex[id];
+            int last = edgeCount - 1;
+            if (idx != last) {
+                FlowEdge moved = edges[last];
+                edges[idx] = moved;
+                store.graphIndex[moved.id] = idx;
+            }
+
+            edges[last] = null;
+            store.graphIndex[id] = -1;
+        }
+        edgeCount--;
 
-        edges.remove(flowEdge);
         flowEdge.close();
     }
+
+    /**
+     * Add the specified edge to the edges connected to <code>node</code>.
+     *
+     * @return The slot of the edge in the edges of the node.
+     */
+    private static int attach(FlowNode node, FlowEdge edge) {
+        FlowEdge[] nodeEdges = node.edges;
+        int idx = node.edgeCount;
+
+        if (idx == nodeEdges.length) {
+            nodeEdges = node.edges = Arrays.copyOf(nodeEdges, Math.max(4, idx << 1));
+        }
+
+        nodeEdges[idx] = edge;
+        node.edgeCount = idx + 1;
+        return idx;
+    }
+
+    /**
+     * Remove the edge in the specified slot from the edges connected to <code>node</code>.
+     */
+    private static void detach(FlowEdgeStore store, FlowNode node, int idx) {
+        final FlowEdge[] nodeEdges = node.edges;
+        int last = --node.edgeCount;
+
+        if (idx != last) {
+            FlowEdge moved = nodeEdges[last];
+            nodeEdges[idx] = moved;
+
+            if (moved.getConsumer() == node) {
+                store.consumerNodeSlot[moved.id] = idx;
+            } else {
+                store.supplierNodeSlot[moved.id] = idx;
+            }
+        }
+
+        nodeEdges[last] = null;
+    }
 }
@@ -48,10 +48,53 @@ public abstract class FlowNode {
     long deadline = Long.MAX_VALUE;
 
     /**
-     * The index of the timer in the {@link FlowTimerQueue}.
+     * The index of the timer in the {@link FlowTimerQueue}, or -1 if the node has no timer. Depending on the queue, this
+     * is either a slot in a heap or the bucket that holds the node.
      */
     int timerIndex = -1;
 
+    /**
+     * The neighbours of the node in the bucket of a bucketed {@link FlowTimerQueue}.
+     */
+    FlowNode timerPrev;
+
+    FlowNode timerNext;
+
+    /**
+     * A flag to indicate that the node is waiting in the immediate update queue of the {@link FlowEngine}.
+     */
+    boolean inQueue = false;
+
+    /**
+     * The slot of the node in its {@link FlowGraph}, or -1 if the node is not part of the graph.
+     */
+    int graphIndex = -1;
+
+    /**
+     * The edges of the {@link FlowGraph} connected to this node.
+     */
+    FlowEdge[] edges = EMPTY_EDGES;
+
+    int edgeCount = 0;
+
+    /**
+     * The update counters of the class of this node, which are resolved by the {@link FlowEngine} on the first update.
+     */
+    NodeClassCounters counters;
+
+    /**
+     * The identifier of the node in the trace of the {@link org.opendc.common.trace.EventRecorder}, or -1 if the node
+     * has not been recorded yet.
+     */
+    int traceId = -1;
+
+    /**
+     * The key under which the node is shared in its {@link FlowGraph}, or <code>null</code> if it is not shared.
+     */
+    Object sharedKey;
+
+    private static final FlowEdge[] EMPTY_EDGES = new FlowEdge[0];
+
     protected InstantSource clock;
     protected FlowGraph parentGraph;
     protected FlowEngine engine;
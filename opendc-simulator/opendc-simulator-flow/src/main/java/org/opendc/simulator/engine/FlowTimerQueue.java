@@ -22,184 +22,41 @@
 
 package org.opendc.simulator.engine;
 
-import java.util.Arrays;
-
 /**
- * A specialized priority queue for timers of {@link FlowNode}s.
+ * A priority queue for the timers of {@link FlowNode}s, keyed on the deadline of the node.
  * <p>
- * By using a specialized priority queue, we reduce the overhead caused by the default priority queue implementation
- * being generic.
+ * Implementations keep track of the position of a node in the queue using the package-private timer fields of
+ * {@link FlowNode}, such that updating or cancelling a timer does not require a search. A {@link FlowEngine} owns its
+ * timer queue, so a queue instance must not be shared between engines.
+ *
+ * @see HeapFlowTimerQueue
+ * @see TimingWheelFlowTimerQueue
  */
-public final class FlowTimerQueue {
-    /**
-     * Array representation of binary heap of {@link FlowNode} instances.
-     */
-    private FlowNode[] queue;
-
-    /**
-     * The number of elements in the priority queue.
-     */
-    private int size = 0;
-
-    /**
-     * Construct a {@link FlowTimerQueue} with the specified initial capacity.
-     *
-     * @param initialCapacity The initial capacity of the queue.
-     */
-    public FlowTimerQueue(int initialCapacity) {
-        this.queue = new FlowNode[initialCapacity];
-    }
-
+public interface FlowTimerQueue {
     /**
-     * Enqueue a timer for the specified context or update the existing timer.
+     * Enqueue a timer for the specified node or update the existing timer. A deadline of {@link Long#MAX_VALUE}
+     * removes the timer of the node from the queue.
      */
-    public void enqueue(FlowNode node) {
-        FlowNode[] es = queue;
-        int k = node.timerIndex;
-
-        if (node.deadline != Long.MAX_VALUE) {
-            if (k >= 0) {
-                update(es, node, k);
-            } else {
-                add(es, node);
-            }
-        } else if (k >= 0) {
-            delete(es, k);
-        }
-    }
+    void enqueue(FlowNode node);
 
     /**
-     * Retrieve the head of the queue if its deadline does not exceed <code>now</code>.
+     * Retrieve a node whose deadline does not exceed <code>now</code>.
+     * <p>
+     * The {@link FlowEngine} updates all due nodes at the same timestamp, so implementations may return due nodes in
+     * a different order than their deadlines.
      *
-     * @param now The timestamp that the deadline of the head of the queue should not exceed.
-     * @return The head of the queue if its deadline does not exceed <code>now</code>, otherwise <code>null</code>.
+     * @param now The timestamp that the deadline of the node should not exceed.
+     * @return A node whose deadline does not exceed <code>now</code>, or <code>null</code> if no such node exists.
      */
-    public FlowNode poll(long now) {
-        if (this.size == 0) {
-            return null;
-        }
-
-        final FlowNode[] es = queue;
-        final FlowNode head = es[0];
-
-        if (now < head.deadline) {
-            return null;
-        }
-
-        int n = size - 1;
-        this.size = n;
-        final FlowNode next = es[n];
-        es[n] = null; // Clear the last element of the queue
-
-        if (n > 0) {
-            siftDown(0, next, es, n);
-        }
-
-        head.timerIndex = -1;
-        return head;
-    }
+    FlowNode poll(long now);
 
     /**
      * Find the earliest deadline in the queue.
      */
-    public long peekDeadline() {
-        if (this.size > 0) {
-            return this.queue[0].deadline;
-        }
-
-        return Long.MAX_VALUE;
-    }
+    long peekDeadline();
 
     /**
-     * Add a new entry to the queue.
+     * Return the number of timers in the queue.
      */
-    private void add(FlowNode[] es, FlowNode node) {
-        if (this.size >= es.length) {
-            // Re-fetch the resized array
-            es = grow();
-        }
-
-        siftUp(this.size, node, es);
-
-        this.size++;
-    }
-
-    /**
-     * Update the deadline of an existing entry in the queue.
-     */
-    private void update(FlowNode[] es, FlowNode node, int k) {
-        if (k > 0) {
-            int parent = (k - 1) >>> 1;
-            if (es[parent].deadline > node.deadline) {
-                siftUp(k, node, es);
-                return;
-            }
-        }
-
-        siftDown(k, node, es, this.size);
-    }
-
-    /**
-     * Deadline an entry from the queue.
-     */
-    private void delete(FlowNode[] es, int k) {
-        int s = --this.size;
-        if (s == k) {
-            es[k] = null; // Element is last in the queue
-        } else {
-            FlowNode moved = es[s];
-            es[s] = null;
-
-            siftDown(k, moved, es, s);
-
-            if (es[k] == moved) {
-                siftUp(k, moved, es);
-            }
-        }
-    }
-
-    /**
-     * Increases the capacity of the array.
-     */
-    private FlowNode[] grow() {
-        FlowNode[] queue = this.queue;
-        int oldCapacity = queue.length;
-        int newCapacity = oldCapacity + (oldCapacity >> 1);
-
-        queue = Arrays.copyOf(queue, newCapacity);
-        this.queue = queue;
-        return queue;
-    }
-
-    private static void siftUp(int k, FlowNode key, FlowNode[] es) {
-        while (k > 0) {
-            int parent = (k - 1) >>> 1;
-            FlowNode e = es[parent];
-            if (key.deadline >= e.deadline) break;
-            es[k] = e;
-            e.timerIndex = k;
-            k = parent;
-        }
-        es[k] = key;
-        key.timerIndex = k;
-    }
-
-    private static void siftDown(int k, FlowNode key, FlowNode[] es, int n) {
-        int half = n >>> 1; // loop while a non-leaf
-        while (k < half) {
-            int child = (k << 1) + 1; // assume left child is least
-            FlowNode c = es[child];
-            int right = child + 1;
-            if (right < n && c.deadline > es[right].deadline) c = es[child = right];
-
-            if (key.deadline <= c.deadline) break;
-
-            es[k] = c;
-            c.timerIndex = k;
-            k = child;
-        }
-
-        es[k] = key;
-        key.timerIndex = k;
-    }
+    int size();
 }
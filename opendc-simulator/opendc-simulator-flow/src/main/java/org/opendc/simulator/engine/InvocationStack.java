@@ -70,15 +70,23 @@ public final class InvocationStack {
      * Remove the head invocation from the stack or return {@link Long#MAX_VALUE} if the stack is empty.
      */
     public long poll() {
-        int head = this.head--;
+        int head = this.head;
 
         if (head >= 0) {
+            this.head = head - 1;
             return this.elements[head];
         }
 
         return Long.MAX_VALUE;
     }
 
+    /**
+     * Return the number of invocations in the stack.
+     */
+    public int size() {
+        return head + 1;
+    }
+
     /**
      * Doubles the capacity of this deque
      */
@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.engine;
+
+/**
+ * A {@link FlowTimerQueue} implemented as a hierarchical timing wheel.
+ * <p>
+ * Deadlines are divided into ticks of a configurable length. The wheel consists of several levels of 64 buckets,
+ * where a bucket at level <code>L</code> spans <code>64^L</code> ticks. A timer is placed at the level of the most
+ * significant 6-bit group in which its tick differs from the current tick of the wheel, and moves down a level
+ * whenever the wheel reaches its bucket. Enqueueing, updating and cancelling a timer take constant time, and every
+ * timer moves down at most once per level. This suits trace-driven simulations, where many nodes share the same
+ * deadline, better than a binary heap.
+ * <p>
+ * Timers within a bucket are kept in insertion order, so nodes with equal deadlines are polled in the order in which
+ * they were enqueued. Timers that became due at different timestamps before the same call to {@link #poll(long)} are
+ * not necessarily polled in order of their deadline.
+ */
+public final class TimingWheelFlowTimerQueue implements FlowTimerQueue {
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = (Long.SIZE + BITS - 1) / BITS;
+
+    /**
+     * The bucket holding the timers that are already due at the last polled timestamp.
+     */
+    private static final int DUE = LEVELS * SLOTS;
+
+    /**
+     * The length of a tick in milliseconds.
+     */
+    private final long tick;
+
+    /**
+     * The first and last node of every bucket, followed by the due bucket.
+     */
+    private final FlowNode[] heads = new FlowNode[DUE + 1];
+
+    private final FlowNode[] tails = new FlowNode[DUE + 1];
+
+    /**
+     * A bitmap of the non-empty buckets per level.
+     */
+    private final long[] occupied = new long[LEVELS];
+
+    /**
+     * The current tick of the wheel, which never exceeds the tick of the last polled timestamp.
+     */
+    private long cursor;
+
+    /**
+     * The last timestamp passed to {@link #poll(long)}. Timers with a deadline at or before this timestamp are placed
+     * in the due bucket.
+     */
+    private long current = Long.MIN_VALUE;
+
+    /**
+     * The timestamp up to which the level-0 bucket of {@link #cursor} has been moved into the due bucket.
+     */
+    private long scanned = Long.MIN_VALUE;
+
+    /**
+     * The earliest deadline in the queue if {@link #peekValid} is set. Finding the earliest deadline requires a scan of
+     * a bucket, so the result is cached until a change might invalidate it.
+     */
+    private long peek;
+
+    private boolean peekValid;
+
+    /**
+     * The number of timers in the queue.
+     */
+    private int size;
+
+    /**
+     * Construct a {@link TimingWheelFlowTimerQueue} with a tick of one millisecond.
+     */
+    public TimingWheelFlowTimerQueue() {
+        this(1);
+    }
+
+    /**
+     * Construct a {@link TimingWheelFlowTimerQueue} with the specified tick.
+     * <p>
+     * A timer is only sorted up to the tick it falls in. A tick that is larger than the granularity of the deadlines
+     * therefore requires a scan of the bucket when the wheel arrives at it, but reduces the number of moves between
+     * levels.
+     *
+     * @param tick The length of a tick in milliseconds.
+     */
+    public TimingWheelFlowTimerQueue(long tick) {
+        if (tick <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+
+        this.tick = tick;
+    }
+
+    /**
+     * Return the length of a tick in milliseconds.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    @Override
+    public void enqueue(FlowNode node) {
+        final long deadline = node.deadline;
+        final boolean queued = node.timerIndex >= 0;
+
+        if (queued) {
+            unlink(node);
+            size--;
+        }
+
+        if (deadline != Long.MAX_VALUE) {
+            insert(node);
+            size++;
+        }
+
+        // The previous deadline of the node is unknown, so an update may have removed the earliest deadline
+        if (peekValid) {
+            if (deadline <= peek) {
+                peek = deadline;
+            } else if (queued) {
+                peekValid = false;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The timestamps passed to this method must be non-decreasing.
+     */
+    @Override
+    public FlowNode poll(long now) {
+        if (now != current) {
+            current = now;
+            scanned = Long.MIN_VALUE;
+        }
+
+        final FlowNode[] heads = this.heads;
+        if (heads[DUE] == null) {
+            final int slot = advance(Math.floorDiv(now, tick));
+
+            // Moving timers down the wheel may have placed them in the due bucket
+            if (heads[DUE] == null) {
+                if (slot < 0) {
+                    return null;
+                }
+
+                if ((cursor + 1) * tick - 1 <= now) {
+                    return pop(heads[slot]);
+                }
+
+                // Only part of the bucket is due, since the tick has not passed completely
+                if (scanned == now) {
+                    return null;
+                }
+
+                scanned = now;
+                collectDue(slot, now);
+
+                if (heads[DUE] == null) {
+                    return null;
+                }
+            }
+        }
+
+        return pop(heads[DUE]);
+    }
+
+    @Override
+    public long peekDeadline() {
+        if (!peekValid) {
+            peek = findDeadline();
+            peekValid = true;
+        }
+
+        return peek;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the earliest deadline in the queue, which is located in either the due bucket or the first non-empty bucket
+     * of the wheel.
+     */
+    private long findDeadline() {
+        final FlowNode[] heads = this.heads;
+        final long due = minDeadline(heads[DUE]);
+
+        final long[] occupied = this.occupied;
+        long bits = occupied[0] & (-1L << (cursor & MASK));
+        if (bits != 0) {
+            return Math.min(due, minDeadline(heads[Long.numberOfTrailingZeros(bits)]));
+        }
+
+        for (int level = 1; level < LEVELS; level++) {
+            bits = occupied[level];
+            if (bits != 0) {
+                return Math.min(due, minDeadline(heads[level * SLOTS + Long.numberOfTrailingZeros(bits)]));
+            }
+        }
+
+        return due;
+    }
+
+    /**
+     * Remove the specified timer from the queue and return it.
+     */
+    private FlowNode pop(FlowNode node) {
+        unlink(node);
+        size--;
+        peekValid = false;
+        return node;
+    }
+
+    /**
+     * Advance the cursor of the wheel towards <code>nowTick</code> and return the level-0 bucket of the cursor if it
+     * contains timers, otherwise -1.
+     */
+    private int advance(long nowTick) {
+        final long[] occupied = this.occupied;
+
+        while (true) {
+            long cursor = this.cursor;
+            long bits = occupied[0] & (-1L << (cursor & MASK));
+
+            if (bits != 0) {
+                long target = (cursor & ~MASK) | Long.numberOfTrailingZeros(bits);
+                if (target > nowTick) {
+                    return -1;
+                }
+
+                this.cursor = target;
+                return (int) (target & MASK);
+            }
+
+            int level = 1;
+            while (level < LEVELS && occupied[level] == 0) {
+                level++;
+            }
+
+            if (level == LEVELS) {
+                // The wheel is empty, so any position of the cursor is valid
+                this.cursor = Math.max(cursor, nowTick);
+                return -1;
+            }
+
+            int shift = level * BITS;
+            int slot = Long.numberOfTrailingZeros(occupied[level]);
+            long high = shift + BITS < Long.SIZE ? cursor & (-1L << (shift + BITS)) : 0;
+            long start = high | ((long) slot << shift);
+            if (start > nowTick) {
+                return -1;
+            }
+
+            // Move the timers in the bucket to the lower levels
+            this.cursor = start;
+            int index = level * SLOTS + slot;
+            FlowNode node = heads[index];
+            heads[index] = null;
+            tails[index] = null;
+            occupied[level] &= ~(1L << slot);
+
+            while (node != null) {
+                FlowNode next = node.timerNext;
+                insert(node);
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * Move the timers in the specified bucket whose deadline does not exceed <code>now</code> to the due bucket.
+     */
+    private void collectDue(int index, long now) {
+        FlowNode node = heads[index];
+        while (node != null) {
+            FlowNode next = node.timerNext;
+            if (node.deadline <= now) {
+                unlink(node);
+                append(DUE, node);
+            }
+            node = next;
+        }
+    }
+
+    /**
+     * Insert the specified node into the bucket that corresponds to its deadline.
+     */
+    private void insert(FlowNode node) {
+        long deadline = node.deadline;
+        if (deadline <= current) {
+            append(DUE, node);
+            return;
+        }
+
+        long cursor = this.cursor;
+        long t = Math.max(Math.floorDiv(deadline, tick), cursor);
+        long diff = t ^ cursor;
+        int level = diff == 0 ? 0 : (Long.SIZE - 1 - Long.numberOfLeadingZeros(diff)) / BITS;
+        int slot = (int) ((t >>> (level * BITS)) & MASK);
+
+        occupied[level] |= 1L << slot;
+        append(level * SLOTS + slot, node);
+    }
+
+    /**
+     * Append the specified node to the bucket at <code>index</code>.
+     */
+    private void append(int index, FlowNode node) {
+        FlowNode tail = tails[index];
+        node.timerIndex = index;
+        node.timerPrev = tail;
+        node.timerNext = null;
+
+        if (tail == null) {
+            heads[index] = node;
+        } else {
+            tail.timerNext = node;
+        }
+        tails[index] = node;
+    }
+
+    /**
+     * Remove the specified node from its bucket.
+     */
+    private void unlink(FlowNode node) {
+        int index = node.timerIndex;
+        FlowNode prev = node.timerPrev;
+        FlowNode next = node.timerNext;
+
+        if (prev == null) {
+            heads[index] = next;
+        } else {
+            prev.timerNext = next;
+        }
+
+        if (next == null) {
+            tails[index] = prev;
+        } else {
+            next.timerPrev = prev;
+        }
+
+        if (heads[index] == null && index != DUE) {
+            occupied[index / SLOTS] &= ~(1L << (index & MASK));
+        }
+
+        node.timerIndex = -1;
+        node.timerPrev = null;
+        node.timerNext = null;
+    }
+
+    /**
+     * Find the earliest deadline in the bucket starting at the specified node.
+     */
+    private static long minDeadline(FlowNode node) {
+        long min = Long.MAX_VALUE;
+        while (node != null) {
+            min = Math.min(min, node.deadline);
+            node = node.timerNext;
+        }
+        return min;
+    }
+}
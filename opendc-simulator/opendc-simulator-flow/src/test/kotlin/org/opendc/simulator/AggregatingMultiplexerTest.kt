@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.opendc.simulator.engine.FlowEdge
+import org.opendc.simulator.engine.FlowEngine
+import kotlin.random.Random
+
+/**
+ * Test suite for the [AggregatingMultiplexer] class.
+ */
+class AggregatingMultiplexerTest {
+    private val dispatcher = SimulationDispatcher()
+    private val graph = FlowEngine.create(dispatcher).newGraph()
+
+    @Test
+    fun testUndercommitted() {
+        val mux = createMux(10.0)
+        val consumers = List(3) { TestConsumer(graph).also { graph.addEdge(it, mux) } }
+        dispatcher.advanceUntilIdle()
+
+        consumers[0].setDemand(1.0)
+        consumers[1].setDemand(2.0)
+        consumers[2].setDemand(3.0)
+        dispatcher.advanceUntilIdle()
+
+        assertEquals(1.0, consumers[0].supply)
+        assertEquals(2.0, consumers[1].supply)
+        assertEquals(3.0, consumers[2].supply)
+        assertEquals(6.0, mux.totalSupply)
+
+        // Only the consumer whose demand changed receives new supply
+        val counts = consumers.map { it.supplyCount }
+        consumers[1].setDemand(4.0)
+        dispatcher.advanceUntilIdle()
+
+        assertEquals(counts[0], consumers[0].supplyCount)
+        assertEquals(counts[1] + 1, consumers[1].supplyCount)
+        assertEquals(counts[2], consumers[2].supplyCount)
+        assertEquals(8.0, mux.totalSupply)
+    }
+
+    @Test
+    fun testOvercommitted() {
+        val mux = createMux(10.0)
+        val consumers = List(3) { TestConsumer(graph).also { graph.addEdge(it, mux) } }
+        dispatcher.advanceUntilIdle()
+
+        consumers[0].setDemand(2.0)
+        consumers[1].setDemand(5.0)
+        consumers[2].setDemand(8.0)
+        dispatcher.advanceUntilIdle()
+
+        assertEquals(2.0, consumers[0].supply)
+        assertEquals(4.0, consumers[1].supply)
+        assertEquals(4.0, consumers[2].supply)
+        assertEquals(10.0, mux.totalSupply)
+
+        // All consumers receive their full demand again once the demand fits the capacity
+        consumers[2].setDemand(1.0)
+        dispatcher.advanceUntilIdle()
+
+        assertEquals(2.0, consumers[0].supply)
+        assertEquals(5.0, consumers[1].supply)
+        assertEquals(1.0, consumers[2].supply)
+        assertEquals(8.0, mux.totalSupply)
+    }
+
+    @Test
+    fun testRemoveConsumer() {
+        val mux = createMux(9.0)
+        val consumers = List(3) { TestConsumer(graph).also { graph.addEdge(it, mux) } }
+        dispatcher.advanceUntilIdle()
+
+        consumers.forEach { it.setDemand(6.0) }
+        dispatcher.advanceUntilIdle()
+        consumers.forEach { assertEquals(3.0, it.supply) }
+
+        // Removing the first consumer moves the last consumer into its slot
+        consumers[0].closeNode()
+        dispatcher.advanceUntilIdle()
+
+        assertEquals(2, mux.consumerCount)
+        assertEquals(4.5, consumers[1].supply)
+        assertEquals(4.5, consumers[2].supply)
+        assertEquals(12.0, mux.totalDemand)
+
+        consumers[2].setDemand(1.0)
+        dispatcher.advanceUntilIdle()
+
+        assertEquals(6.0, consumers[1].supply)
+        assertEquals(1.0, consumers[2].supply)
+    }
+
+    @Test
+    fun testIncrementalUpdates() {
+        val mux = createMux(500.0)
+        val consumers = List(50) { TestConsumer(graph).also { graph.addEdge(it, mux) } }
+        dispatcher.advanceUntilIdle()
+
+        val random = Random(0)
+        val demands = DoubleArray(consumers.size)
+
+        repeat(1000) {
+            // Change the demand of one or a few consumers, such that the total demand crosses the capacity
+            repeat(random.nextInt(1, 4)) {
+                val i = random.nextInt(consumers.size)
+                demands[i] = if (random.nextInt(10) == 0) 0.0 else random.nextDouble(0.0, 20.0)
+                consumers[i].setDemand(demands[i])
+            }
+            dispatcher.advanceUntilIdle()
+
+            val expected = fairShare(demands, 500.0)
+            consumers.forEachIndexed { i, consumer -> assertEquals(expected[i], consumer.supply, 1e-9) }
+            assertEquals(expected.sum(), mux.totalSupply, 1e-9)
+            assertEquals(demands.sum(), mux.totalDemand, 1e-9)
+        }
+    }
+
+    @Test
+    fun testUnknownConsumer() {
+        val mux = createMux(10.0)
+        graph.addEdge(TestConsumer(graph), mux)
+
+        // An edge that occupies the same slot at another multiplexer
+        val edge = FlowEdge(TestConsumer(graph), createMux(10.0))
+        dispatcher.advanceUntilIdle()
+
+        assertThrows<IllegalArgumentException> { mux.handleDemand(edge, 1.0) }
+        assertThrows<IllegalArgumentException> { mux.pushSupply(edge, 1.0) }
+    }
+
+    private fun createMux(capacity: Double): AggregatingMultiplexer {
+        val source = TestSupplier(graph, capacity)
+        val mux = AggregatingMultiplexer(graph)
+        graph.addEdge(mux, source)
+        return mux
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator
+
+import org.opendc.simulator.engine.FlowConsumer
+import org.opendc.simulator.engine.FlowEdge
+import org.opendc.simulator.engine.FlowGraph
+import org.opendc.simulator.engine.FlowNode
+import org.opendc.simulator.engine.FlowSupplier
+
+/**
+ * Reference implementation of max-min fair sharing.
+ */
+internal fun fairShare(
+    demands: DoubleArray,
+    capacity: Double,
+): DoubleArray {
+    val result = DoubleArray(demands.size)
+    var remaining = capacity
+    var left = demands.size
+
+    for (i in demands.indices.sortedBy { demands[it] }) {
+        val share = remaining / left--
+        result[i] = minOf(demands[i], share)
+        remaining -= result[i]
+    }
+
+    return result
+}
+
+/**
+ * A [FlowSupplier] that supplies whatever is demanded.
+ */
+internal class TestSupplier(graph: FlowGraph, private val capacity: Double) : FlowNode(graph), FlowSupplier {
+    private var consumerEdge: FlowEdge? = null
+    private var demand = 0.0
+
+    override fun onUpdate(now: Long): Long {
+        consumerEdge?.let { pushSupply(it, demand) }
+        return Long.MAX_VALUE
+    }
+
+    override fun handleDemand(
+        consumerEdge: FlowEdge,
+        newDemand: Double,
+    ) {
+        demand = newDemand
+        invalidate()
+    }
+
+    override fun pushSupply(
+        consumerEdge: FlowEdge,
+        newSupply: Double,
+    ) {
+        consumerEdge.pushSupply(newSupply)
+    }
+
+    override fun addConsumerEdge(consumerEdge: FlowEdge) {
+        this.consumerEdge = consumerEdge
+    }
+
+    override fun removeConsumerEdge(consumerEdge: FlowEdge) {
+        this.consumerEdge = null
+    }
+
+    override fun getCapacity(): Double = capacity
+}
+
+/**
+ * A [FlowConsumer] that records the supply it receives and how often it received supply.
+ */
+internal class TestConsumer(graph: FlowGraph) : FlowNode(graph), FlowConsumer {
+    private var supplierEdge: FlowEdge? = null
+    var supply = 0.0
+    var supplyCount = 0
+
+    fun setDemand(demand: Double) {
+        supplierEdge?.let { pushDemand(it, demand) }
+    }
+
+    override fun onUpdate(now: Long): Long = Long.MAX_VALUE
+
+    override fun handleSupply(
+        supplierEdge: FlowEdge,
+        newSupply: Double,
+    ) {
+        supply = newSupply
+        supplyCount++
+    }
+
+    override fun pushDemand(
+        supplierEdge: FlowEdge,
+        newDemand: Double,
+    ) {
+        supplierEdge.pushDemand(newDemand)
+    }
+
+    override fun addSupplierEdge(supplierEdge: FlowEdge) {
+        this.supplierEdge = supplierEdge
+    }
+
+    override fun removeSupplierEdge(supplierEdge: FlowEdge) {
+        this.supplierEdge = null
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.engine
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.opendc.simulator.SimulationDispatcher
+import org.opendc.simulator.TestConsumer
+import org.opendc.simulator.TestSupplier
+
+/**
+ * Test suite for the [FlowEdgeStore] class and the [FlowEdge]s that view it.
+ */
+class FlowEdgeStoreTest {
+    private val dispatcher = SimulationDispatcher()
+    private val graph = FlowEngine.create(dispatcher).newGraph()
+
+    @Test
+    fun testReadAfterClose() {
+        val consumer = TestConsumer(graph)
+        val edge = FlowEdge(consumer, TestSupplier(graph, 10.0))
+        consumer.setDemand(4.0)
+        dispatcher.advanceUntilIdle()
+
+        edge.close()
+
+        assertEquals(-1, edge.id)
+        assertEquals(10.0, edge.capacity)
+        assertEquals(4.0, edge.demand)
+        assertEquals(4.0, edge.supply)
+        assertEquals(-1, edge.consumerIndex)
+    }
+
+    @Test
+    fun testSlotReuse() {
+        val store = graph.edgeStore
+        val consumer = TestConsumer(graph)
+        val first = FlowEdge(consumer, TestSupplier(graph, 10.0))
+        consumer.setDemand(4.0)
+        dispatcher.advanceUntilIdle()
+
+        val id = first.id
+        first.close()
+        assertEquals(0, store.liveCount())
+
+        val other = TestConsumer(graph)
+        val second = FlowEdge(other, TestSupplier(graph, 20.0))
+        assertEquals(id, second.id)
+        assertEquals(1, store.liveCount())
+
+        // The new edge starts from a clean slot
+        assertEquals(20.0, second.capacity)
+        assertEquals(0.0, second.demand)
+        assertEquals(0.0, second.supply)
+
+        // Updates of the new edge do not leak into the closed edge that used the same slot
+        other.setDemand(7.0)
+        dispatcher.advanceUntilIdle()
+        assertEquals(7.0, second.supply)
+        assertEquals(4.0, first.demand)
+        assertEquals(4.0, first.supply)
+        assertEquals(10.0, first.capacity)
+    }
+}
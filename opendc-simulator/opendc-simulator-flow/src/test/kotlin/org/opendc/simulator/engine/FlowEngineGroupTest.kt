@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.engine
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.opendc.simulator.SimulationDispatcher
+
+/**
+ * Test suite for the [FlowEngineGroup] class.
+ */
+class FlowEngineGroupTest {
+    @Test
+    fun testIndependentPartitions() {
+        val dispatcher = SimulationDispatcher()
+        FlowEngineGroup.create(dispatcher, 2).use { group ->
+            val first = PeriodicNode(group.newEngine().newGraph(), period = 1000, end = 10_000)
+            val second = PeriodicNode(group.newEngine().newGraph(), period = 1500, end = 10_000)
+            dispatcher.advanceUntilIdle()
+
+            assertEquals(11, first.updates)
+            assertEquals(7, second.updates)
+            assertEquals(10_000, dispatcher.currentTime)
+        }
+    }
+
+    @Test
+    fun testDeferredCallbacks() {
+        val dispatcher = SimulationDispatcher()
+        val thread = Thread.currentThread()
+        val log = mutableListOf<String>()
+
+        FlowEngineGroup.create(dispatcher, 4).use { group ->
+            val engine = group.newEngine()
+            val graph = engine.newGraph()
+            PeriodicNode(graph, period = 1000, end = 3000) { node, now ->
+                engine.runCallback {
+                    assertEquals(thread, Thread.currentThread())
+                    log.add("callback at $now")
+                }
+                log.add("update ${node.updates} at $now")
+            }
+            dispatcher.advanceUntilIdle()
+        }
+
+        assertEquals(
+            listOf(
+                "update 1 at 0",
+                "callback at 0",
+                "update 2 at 1000",
+                "callback at 1000",
+                "update 3 at 2000",
+                "callback at 2000",
+                "update 4 at 3000",
+                "callback at 3000",
+            ),
+            log,
+        )
+    }
+
+    @Test
+    fun testStats() {
+        val dispatcher = SimulationDispatcher()
+        FlowEngineGroup.create(dispatcher, 2).use { group ->
+            val first = PeriodicNode(group.newEngine().newGraph(), period = 1000, end = 3000)
+            PeriodicNode(group.newEngine().newGraph(), period = 1000, end = 3000)
+
+            // Invalidate a node before the next group invocation, such that two invocations are pending
+            dispatcher.schedule(500) { first.invalidate() }
+            dispatcher.advanceUntilIdle()
+
+            val stats = group.stats
+            assertEquals(8, stats.updates())
+            assertEquals(0, stats.invocationStackDepth)
+            assertEquals(2, stats.maxInvocationStackDepth)
+        }
+    }
+
+    /**
+     * Test that the order of the callbacks does not depend on the parallelism of the group, even when callbacks
+     * interact with other partitions.
+     */
+    @Test
+    fun testDeterminism() {
+        val results = listOf(1, 2, 8).map { simulate(it) }
+
+        assertEquals(results[0], results[1])
+        assertEquals(results[0], results[2])
+    }
+
+    private fun simulate(parallelism: Int): List<String> {
+        val dispatcher = SimulationDispatcher()
+        val log = mutableListOf<String>()
+
+        FlowEngineGroup.create(dispatcher, parallelism).use { group ->
+            val nodes = mutableListOf<PeriodicNode>()
+            repeat(8) { i ->
+                val engine = group.newEngine()
+                val graph = engine.newGraph()
+                repeat(10) { j ->
+                    nodes +=
+                        PeriodicNode(graph, period = 100L * (1 + (i + j) % 4), end = 10_000) { node, now ->
+                            // Spin to let the engines overlap
+                            var x = 0.0
+                            repeat(1000) { x += Math.sqrt(it.toDouble()) }
+
+                            if (node.updates % 7 == 0) {
+                                engine.runCallback {
+                                    log.add("$i/$j at $now (${x > 0})")
+                                    nodes[(i * 10 + j + 13) % nodes.size].invalidate()
+                                }
+                            }
+                        }
+                }
+            }
+
+            dispatcher.advanceUntilIdle()
+            nodes.forEach { log.add("${it.updates}") }
+        }
+
+        return log
+    }
+
+    /**
+     * A [FlowNode] that updates itself periodically until the specified end time.
+     */
+    private class PeriodicNode(
+        graph: FlowGraph,
+        private val period: Long,
+        private val end: Long,
+        private val action: (PeriodicNode, Long) -> Unit = { _, _ -> },
+    ) : FlowNode(graph) {
+        var updates = 0
+
+        override fun onUpdate(now: Long): Long {
+            updates++
+            action(this, now)
+            return if (end - now < period) Long.MAX_VALUE else now + period
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.opendc.simulator.engine
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.opendc.simulator.SimulationDispatcher
+
+/**
+ * Test suite for the [FlowEngine] class.
+ */
+class FlowEngineTest {
+    private val dispatcher = SimulationDispatcher()
+    private val engine = FlowEngine.create(dispatcher)
+    private val graph = engine.newGraph()
+
+    @Test
+    fun testDuplicateInvalidations() {
+        val node = CountingNode(graph)
+        dispatcher.advanceUntilIdle()
+        assertEquals(1, node.updates)
+
+        dispatcher.schedule(10) {
+            node.invalidate()
+            node.invalidate()
+            node.invalidate()
+        }
+        dispatcher.advanceUntilIdle()
+
+        assertEquals(2, node.updates)
+        assertEquals(2, engine.suppressedEnqueues)
+        assertEquals(2, engine.totalSuppressedEnqueues)
+    }
+
+    @Test
+    fun testInvalidateDuringUpdate() {
+        var remaining = 2
+        val node = CountingNode(graph) { if (remaining-- > 0) it.invalidate() }
+        dispatcher.advanceUntilIdle()
+
+        assertEquals(3, node.updates)
+        assertEquals(0, engine.totalSuppressedEnqueues)
+    }
+
+    @Test
+    fun testStats() {
+        val node = CountingNode(graph)
+        val timed = CountingNode(graph, next = { now -> if (now < 30) now + 10 else Long.MAX_VALUE })
+        dispatcher.schedule(15) {
+            node.invalidate()
+            node.invalidate()
+        }
+        dispatcher.advanceUntilIdle()
+
+        val stats = engine.stats
+        assertEquals(3, stats.immediateUpdates)
+        assertEquals(3, stats.delayedUpdates)
+        assertEquals(node.updates + timed.updates.toLong(), stats.updates())
+        assertEquals(1, stats.suppressedEnqueues)
+        assertEquals(0, stats.timerQueueSize)
+        assertEquals(1, stats.timerQueueHighWaterMark)
+        assertEquals(5, stats.timestamps)
+        assertEquals(2, stats.maxInvocationStackDepth)
+
+        val nodeClass = stats.nodeClasses.single()
+        assertEquals(CountingNode::class.java.name, nodeClass.className)
+        assertEquals(6, nodeClass.updates)
+        assertEquals(1, nodeClass.sampledUpdates)
+    }
+
+    /**
+     * A [FlowNode] that counts its updates.
+     */
+    private class CountingNode(
+        graph: FlowGraph,
+        private val next: (Long) -> Long = { Long.MAX_VALUE },
+        private val action: (FlowNode) -> Unit = {},
+    ) : FlowNode(graph) {
+        var updates = 0
+
+        override fun onUpdate(now: Long): Long {
+            updates++
+            action(this)
+            return next(now)
+        }
+    }
+}
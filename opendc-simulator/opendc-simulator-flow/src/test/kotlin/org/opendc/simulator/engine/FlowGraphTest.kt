@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.engine
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.opendc.simulator.Multiplexer
+import org.opendc.simulator.SimulationDispatcher
+import org.opendc.simulator.TestConsumer
+import org.opendc.simulator.TestSupplier
+import kotlin.random.Random
+
+/**
+ * Test suite for the [FlowGraph] class.
+ */
+class FlowGraphTest {
+    private val dispatcher = SimulationDispatcher()
+    private val engine = FlowEngine.create(dispatcher)
+
+    @Test
+    fun testGraphChurn() {
+        val graph = engine.newGraph()
+        val mux = Multiplexer(graph)
+        graph.addEdge(mux, TestSupplier(graph, 100.0))
+        val consumers = MutableList(10) { TestConsumer(graph).also { graph.addEdge(it, mux) } }
+        dispatcher.advanceUntilIdle()
+
+        assertEquals(12, graph.nodeCount)
+        assertEquals(11, graph.edgeCount)
+
+        // Remove consumers from the middle, such that edges and nodes are moved into the freed slots
+        val random = Random(0)
+        repeat(5) { consumers.removeAt(random.nextInt(consumers.size)).closeNode() }
+        consumers.forEach { it.setDemand(5.0) }
+        dispatcher.advanceUntilIdle()
+
+        assertEquals(7, graph.nodeCount)
+        assertEquals(6, graph.edgeCount)
+        assertEquals(5, mux.consumerCount)
+        consumers.forEach { assertTrue(graph.contains(it)) }
+        assertEquals(graph.edgeCount, graph.edges.size)
+        consumers.forEach { assertEquals(5.0, it.supply) }
+    }
+
+    @Test
+    fun testUntrackedEdges() {
+        val graph = engine.newGraph(false)
+        val mux = Multiplexer(graph)
+        graph.addEdge(mux, TestSupplier(graph, 10.0))
+        val consumers = List(4) { TestConsumer(graph).also { graph.addEdge(it, mux) } }
+        dispatcher.advanceUntilIdle()
+
+        consumers[1].closeNode()
+        consumers.forEach { it.setDemand(4.0) }
+        dispatcher.advanceUntilIdle()
+
+        assertEquals(4, graph.edgeCount)
+        assertFalse(graph.contains(consumers[1]))
+        assertEquals(10.0 / 3, consumers[0].supply, 1e-12)
+        assertThrows<IllegalStateException> { graph.edges }
+    }
+
+    @Test
+    fun testSharedNodes() {
+        val graph = engine.newGraph()
+        val first = graph.getSharedNode("a") { TestSupplier(it, 10.0) }
+        val other = graph.getSharedNode("b") { TestSupplier(it, 10.0) }
+
+        assertSame(first, graph.getSharedNode("a") { TestSupplier(it, 10.0) })
+
+        // A removed node is forgotten, without affecting the other shared nodes
+        first.closeNode()
+        val second = graph.getSharedNode("a") { TestSupplier(it, 10.0) }
+        assertNotSame(first, second)
+        assertTrue(graph.contains(second))
+        assertSame(other, graph.getSharedNode("b") { TestSupplier(it, 10.0) })
+    }
+}
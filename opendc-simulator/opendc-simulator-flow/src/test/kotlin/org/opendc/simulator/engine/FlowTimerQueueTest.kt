@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2024 AtLarge Research
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.opendc.simulator.engine
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.opendc.simulator.SimulationDispatcher
+import kotlin.random.Random
+
+/**
+ * Test suite for the [FlowTimerQueue] implementations.
+ */
+class FlowTimerQueueTest {
+    private val graph = FlowEngine.create(SimulationDispatcher()).newGraph()
+
+    private val queues: List<() -> FlowTimerQueue> =
+        listOf(
+            { HeapFlowTimerQueue(4) },
+            { TimingWheelFlowTimerQueue() },
+            { TimingWheelFlowTimerQueue(1000) },
+        )
+
+    @Test
+    fun testEmpty() {
+        for (factory in queues) {
+            val queue = factory()
+            assertEquals(Long.MAX_VALUE, queue.peekDeadline())
+            assertNull(queue.poll(Long.MAX_VALUE - 1))
+        }
+    }
+
+    @Test
+    fun testUpdateAndCancel() {
+        for (factory in queues) {
+            val queue = factory()
+            val nodes = List(3) { TimerNode(graph) }
+
+            schedule(queue, nodes[0], 500)
+            schedule(queue, nodes[1], 100)
+            schedule(queue, nodes[2], 300)
+            assertEquals(100, queue.peekDeadline())
+
+            schedule(queue, nodes[1], 700)
+            assertEquals(300, queue.peekDeadline())
+
+            schedule(queue, nodes[2], Long.MAX_VALUE)
+            assertEquals(500, queue.peekDeadline())
+
+            assertNull(queue.poll(499))
+            assertEquals(nodes[0], queue.poll(500))
+            assertNull(queue.poll(500))
+            assertEquals(nodes[1], queue.poll(1000))
+            assertEquals(Long.MAX_VALUE, queue.peekDeadline())
+        }
+    }
+
+    @Test
+    fun testClusteredDeadlines() {
+        for (factory in queues) {
+            val queue = factory()
+            val nodes = List(1000) { TimerNode(graph) }
+            nodes.forEach { schedule(queue, it, 300_000) }
+
+            assertNull(queue.poll(299_999))
+            repeat(nodes.size) { assertNotNull(queue.poll(300_000)) }
+            assertNull(queue.poll(300_000))
+        }
+    }
+
+    /**
+     * Compare the queues against a reference on a random sequence of operations, where nodes are rescheduled both
+     * during and outside of polling.
+     */
+    @Test
+    fun testRandomOperations() {
+        for (factory in queues) {
+            val queue = factory()
+            val random = Random(1)
+            val nodes = List(200) { TimerNode(graph) }
+            val deadlines = HashMap<FlowNode, Long>()
+            var now = 0L
+
+            fun nextDeadline(): Long =
+                when (random.nextInt(4)) {
+                    0 -> now
+                    1 -> now + random.nextLong(10_000_000)
+                    else -> (now / 300_000 + 1 + random.nextInt(3)) * 300_000
+                }
+
+            repeat(5000) {
+                val node = nodes[random.nextInt(nodes.size)]
+                when (random.nextInt(5)) {
+                    0 -> {
+                        schedule(queue, node, Long.MAX_VALUE)
+                        deadlines.remove(node)
+                    }
+                    1, 2 -> {
+                        val deadline = nextDeadline()
+                        schedule(queue, node, deadline)
+                        deadlines[node] = deadline
+                    }
+                    else -> {
+                        now =
+                            if (deadlines.isNotEmpty() && random.nextBoolean()) {
+                                maxOf(now, deadlines.values.min())
+                            } else {
+                                now + random.nextLong(100_000)
+                            }
+                        while (true) {
+                            val expected = deadlines.values.minOrNull() ?: Long.MAX_VALUE
+                            assertEquals(expected, queue.peekDeadline())
+
+                            val polled = queue.poll(now)
+                            if (expected > now) {
+                                assertNull(polled)
+                                break
+                            }
+
+                            // Due nodes may be polled in any order
+                            val deadline = deadlines.remove(polled)
+                            assertNotNull(deadline)
+                            assertTrue(deadline!! <= now)
+
+                            // Some nodes are rescheduled while polling, possibly at the current timestamp
+                            if (random.nextInt(3) == 0) {
+                                val deadline = nextDeadline()
+                                schedule(queue, polled!!, deadline)
+                                deadlines[polled] = deadline
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    fun testEngine() {
+        val results =
+            queues.map { factory ->
+                val dispatcher = SimulationDispatcher()
+                val graph = FlowEngine.create(dispatcher, factory()).newGraph()
+                val nodes = List(50) { i -> TimerNode(graph, period = 1000L + (i % 5) * 250, end = 100_000) }
+                dispatcher.advanceUntilIdle()
+                nodes.map { it.updates }
+            }
+
+        results.forEach { assertEquals(results[0], it) }
+        assertEquals(101, results[0][0])
+    }
+
+    private fun schedule(
+        queue: FlowTimerQueue,
+        node: FlowNode,
+        deadline: Long,
+    ) {
+        node.deadline = deadline
+        queue.enqueue(node)
+    }
+
+    /**
+     * A [FlowNode] that updates itself periodically.
+     */
+    private class TimerNode(
+        graph: FlowGraph,
+        private val period: Long = Long.MAX_VALUE,
+        private val end: Long = Long.MAX_VALUE,
+    ) : FlowNode(graph) {
+        var updates = 0
+
+        override fun onUpdate(now: Long): Long {
+            updates++
+            return if (end - now < period) Long.MAX_VALUE else now + period
+        }
+    }
+}